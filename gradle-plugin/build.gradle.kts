@@ -268,6 +268,28 @@ sourceSets {
             srcDirs(layout.buildDirectory.dir("generated/sources/plugin-version"))
         }
     }
+
+    // Benchmarks are run on demand with the benchmark task, they are not part of the build
+    create("benchmark") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+}
+
+configurations.named("benchmarkImplementation") {
+    extendsFrom(configurations.implementation.get())
+}
+
+configurations.named("benchmarkRuntimeOnly") {
+    extendsFrom(configurations.runtimeOnly.get())
+}
+
+tasks.register<JavaExec>("benchmark") {
+    group = "verification"
+    description = "Compares locating test methods with JavaMethodScanner against a full JavaParser parse"
+
+    classpath = sourceSets.named("benchmark").get().runtimeClasspath
+    mainClass = "org.newtco.test.util.JavaMethodScannerBenchmark"
 }
 
 tasks.named("processResources") {
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.newtco.test.util;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Compares locating test methods with {@link JavaMethodScanner} against a full JavaParser parse, as used for line
+ * numbers of test failures. Run with the {@code benchmark} task, it is not part of the build.
+ */
+public class JavaMethodScannerBenchmark {
+
+    private static final int WARMUP     = 5;
+    private static final int ITERATIONS = 20;
+
+    public static void main(String[] args) {
+        var parser = new JavaParser(new ParserConfiguration()
+                .setLanguageLevel(ParserConfiguration.LanguageLevel.RAW));
+
+        for (int methods : new int[]{100, 1_000, 2_500}) {
+            var source = generateTestClass(methods);
+
+            long scanner = measure(() -> JavaMethodScanner.scan(source).size());
+            long javaParser = measure(() -> parser.parse(source).getResult()
+                    .map(unit -> unit.findAll(MethodDeclaration.class).size())
+                    .orElse(0));
+
+            System.out.printf("%,6d methods (%,9d chars): scanner %,9d us, JavaParser %,9d us (%.1fx)%n",
+                    methods,
+                    source.length(),
+                    scanner / 1_000,
+                    javaParser / 1_000,
+                    (double) javaParser / scanner);
+        }
+    }
+
+    private static long measure(IntSupplier task) {
+        int blackhole = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            blackhole += task.getAsInt();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            blackhole += task.getAsInt();
+        }
+        long elapsed = (System.nanoTime() - start) / ITERATIONS;
+
+        if (blackhole == 42) {
+            System.out.print("");
+        }
+        return elapsed;
+    }
+
+    private static String generateTestClass(int methods) {
+        var source = new StringBuilder("""
+                package example;
+
+                import org.junit.jupiter.api.Test;
+
+                import static org.junit.jupiter.api.Assertions.assertEquals;
+
+                /**
+                 * Generated test class
+                 */
+                public class GeneratedTest {
+                """);
+
+        for (int i = 0; i < methods; i++) {
+            source.append("""
+
+                        // Verifies case %1$d
+                        @Test
+                        public void testCase%1$d() throws Exception {
+                            var text = "value (%1$d) { }";
+                            var list = java.util.List.of(%1$d, %1$d + 1);
+                            assertEquals(list.get(0), helper(%1$d), () -> "Mismatch for " + text);
+                        }
+                    """.formatted(i));
+        }
+
+        return source.append("""
+
+                    private static int helper(int value) {
+                        return value;
+                    }
+                }
+                """).toString();
+    }
+}
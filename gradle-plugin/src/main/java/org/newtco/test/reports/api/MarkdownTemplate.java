@@ -34,6 +34,13 @@ import java.util.function.Consumer;
  * @param <T> The type parameter extending MarkdownTemplate
  */
 public abstract class MarkdownTemplate<T extends MarkdownTemplate<T>> extends Template<T> {
+    private static final int Ascii = 0x80;
+
+    // Escapes of ASCII characters, null for characters written unchanged. Other characters are written as numeric
+    // character references
+    private static final String[] MarkdownEscapes = markdownEscapes();
+    private static final String[] HtmlEscapes     = htmlEscapes();
+
     protected MarkdownTemplate(Writer writer) {
         super(writer);
     }
@@ -55,39 +62,61 @@ public abstract class MarkdownTemplate<T extends MarkdownTemplate<T>> extends Te
     }
 
     public T link(String title, String address) {
-        return out("[", title, "](", address, ")");
+        return out("[").out(title).out("](").out(address).out(")");
     }
 
     public T image(String title, String src) {
-        return out("![", title, "](", src, ")");
+        return out("![").out(title).out("](").out(src).out(")");
     }
 
     public T picture(String alt, String src) {
-        return text("<picture><img alt=\"", alt, "\" src=\"", src, "\"></picture>");
+        return out("<picture><img alt=\"").out(alt).out("\" src=\"").out(src).out("\"></picture>");
+    }
+
+    // The single text overloads of the helpers below are used by most templates and avoid creating varargs arrays
+
+    public T bold(String text) {
+        return out("<b>").out(text).out("</b>");
     }
 
     public T bold(String... texts) {
         return out("<b>").text(texts).out("</b>");
     }
 
+    public T italic(String text) {
+        return out("<i>").out(text).out("</i>");
+    }
+
     public T italic(String... texts) {
         return out("<i>").text(texts).out("</i>");
     }
 
+    public T code(String text) {
+        return out("<code>").escaped(text).out("</code>");
+    }
+
     public T code(String... texts) {
         //return out("````").text(texts).out("````");
         out("<code>");
         for (var text : texts) {
-            out(escape(text));
+            escaped(text);
         }
         out("</code>");
         return self();
     }
 
+    public T pre(String text) {
+        return out("<pre>").out(text).out("</pre>");
+    }
+
     public T pre(String... texts) {
         return out("<pre>").text(texts).out("</pre>");
     }
 
+    public T sup(String text) {
+        return out("<sup>").out(text).out("</sup>");
+    }
+
     public T sup(String... texts) {
         return out("<sup>").text(texts).out("</sup>");
     }
@@ -96,13 +125,31 @@ public abstract class MarkdownTemplate<T extends MarkdownTemplate<T>> extends Te
         return out("<br/>");
     }
 
+    public T sub(String text) {
+        return out("<sub>").out(text).out("</sub>");
+    }
+
     public T sub(String... texts) {
         return out("<sub>").text(texts).out("</sub>");
     }
 
+    public T details(String summary, String content) {
+        return out("<details>\n<summary>").out(summary).out("</summary>  \n")
+                .out(content)
+                .out("  \n</details>\n");
+    }
+
+    /**
+     * Writes a details block whose content is written by the given action, e.g. to escape it straight to the output.
+     */
+    public T details(String summary, Runnable content) {
+        out("<details>\n<summary>").out(summary).out("</summary>  \n");
+        content.run();
+        return out("  \n</details>\n");
+    }
+
     public T details(String summary, String... contents) {
-        out("<details>\n",
-                "<summary>", summary, "</summary>  \n");
+        out("<details>\n<summary>").out(summary).out("</summary>  \n");
         for (var content : contents) {
             out(content);
         }
@@ -113,19 +160,31 @@ public abstract class MarkdownTemplate<T extends MarkdownTemplate<T>> extends Te
         return out("<!-- ").text(comments).out(" -->");
     }
 
+    public T line() {
+        return eol();
+    }
+
+    public T line(String text) {
+        return out(text).eol();
+    }
+
     public T line(String... texts) {
         return text(texts).eol();
     }
 
     public T eol() {
-        out("  \n");
-        return self();
+        return out("  \n");
+    }
+
+    public T text(String text) {
+        return out(text);
     }
 
     public T text(String... texts) {
-        return texts.length == 1
-                ? out(texts[0])
-                : out((Object[]) texts);
+        for (var text : texts) {
+            out(text);
+        }
+        return self();
     }
 
     public <V> T repeat(Collection<V> values, Consumer<V> processor) {
@@ -142,134 +201,192 @@ public abstract class MarkdownTemplate<T extends MarkdownTemplate<T>> extends Te
         return self();
     }
 
+    /**
+     * Returns the value with HTML markup characters escaped. Prefer {@link #escapedHtml(String)}, which writes the
+     * escaped value to the output without creating a copy.
+     */
     public String escapeHtml(String value) {
         if (value == null || value.isEmpty()) {
             return value;
         }
+        return escape(value, HtmlEscapes);
+    }
 
+    /**
+     * Returns the value with each of the given characters prefixed by a backslash. Prefer
+     * {@link #escaped(String, char...)}, which writes the escaped value to the output without creating a copy.
+     */
+    public String escape(String value, char... chars) {
+        if (value == null || value.isEmpty()) {
+            return value;
+        }
 
-        var escaped = new StringBuilder();
-        for (int i = 0; i < value.length(); i++) {
-            int cp = value.codePointAt((i));
-            switch (cp) {
-                case '<':
-                    escaped.append("&lt;");
-                    break;
-                case '>':
-                    escaped.append("&gt;");
-                    break;
-                default:
-
-                    if (cp <= 31 || cp >= 127) {
-                        escaped.append("&#").append(cp).append(';');
-                    } else {
-                        escaped.append((char) cp);
-                    }
-            }
+        int next = nextEscape(value, 0, chars);
+        if (next == value.length()) {
+            return value;
         }
 
-        return escaped.toString();
+        var escaped = new StringBuilder(value.length() + 16);
+        int start   = 0;
+        for (; next < value.length(); next = nextEscape(value, next + 1, chars)) {
+            escaped.append(value, start, next).append('\\').append(value.charAt(next));
+            start = next + 1;
+        }
+        return escaped.append(value, start, value.length()).toString();
     }
 
-    public String escape(String value, char... chars) {
+    /**
+     * Returns the value with Markdown formatting characters escaped. Prefer {@link #escaped(String)}, which writes the
+     * escaped value to the output without creating a copy.
+     */
+    public String escape(String value) {
         if (value == null || value.isEmpty()) {
             return value;
         }
-        var escaped = new StringBuilder();
-        for (int i = 0; i < value.length(); i++) {
-            int cp = value.codePointAt((i));
-            for (var ch : chars) {
-                if (cp == ch) {
-                    escaped.append('\\');
-                    break;
-                }
+        return escape(value, MarkdownEscapes);
+    }
+
+    /**
+     * Writes the value with HTML markup characters escaped. Characters outside printable ASCII are written as numeric
+     * character references.
+     */
+    public T escapedHtml(String value) {
+        return escaped(value, HtmlEscapes);
+    }
+
+    /**
+     * Writes the value with Markdown formatting characters escaped. Characters outside printable ASCII are written as
+     * numeric character references.
+     */
+    public T escaped(String value) {
+        return escaped(value, MarkdownEscapes);
+    }
+
+    /**
+     * Writes the value with each of the given characters prefixed by a backslash.
+     */
+    public T escaped(String value, char... chars) {
+        if (value == null) {
+            return out((String) null);
+        }
+
+        int start = 0;
+        for (int next = nextEscape(value, 0, chars); next < value.length(); next = nextEscape(value, next + 1, chars)) {
+            write(value, start, next).out('\\').out(value.charAt(next));
+            start = next + 1;
+        }
+        return write(value, start, value.length());
+    }
+
+    /**
+     * Writes the value, replacing the characters that have an escape in the table. Runs of characters without escapes
+     * are copied to the output in bulk.
+     */
+    private T escaped(String value, String[] escapes) {
+        if (value == null) {
+            return out((String) null);
+        }
+
+        int length = value.length();
+        int start  = 0;
+        for (int next = nextEscape(value, 0, escapes); next < length; next = nextEscape(value, start, escapes)) {
+            write(value, start, next);
+
+            char ch = value.charAt(next);
+            if (ch < Ascii) {
+                out(escapes[ch]);
+                start = next + 1;
+            } else {
+                int cp = value.codePointAt(next);
+                out("&#").out(cp).out(';');
+                start = next + Character.charCount(cp);
             }
-            escaped.appendCodePoint(cp);
         }
-        return escaped.toString();
+        return write(value, start, length);
     }
 
-    public String escape(String value) {
-        if (value == null || value.isEmpty()) {
+    private static String escape(String value, String[] escapes) {
+        int length = value.length();
+        int next   = nextEscape(value, 0, escapes);
+        if (next == length) {
             return value;
         }
 
-        var escaped = new StringBuilder();
-        for (int i = 0; i < value.length(); i++) {
-            int cp = value.codePointAt((i));
-            switch (cp) {
-                case '\\':
-                    escaped.append("\\\\");
-                    break;
-                case '`':
-                    escaped.append("\\`");
-                    break;
-                case '*':
-                    escaped.append("\\*");
-                    break;
-                case '_':
-                    escaped.append("\\_");
-                    break;
-                case '{':
-                    escaped.append("\\{");
-                    break;
-                case '}':
-                    escaped.append("\\}");
-                    break;
-                case '[':
-                    escaped.append("\\[");
-                    break;
-                case ']':
-                    escaped.append("\\]");
-                    break;
-                case '<':
-                    escaped.append("\\<");
-                    break;
-                case '>':
-                    escaped.append("\\>");
-                    break;
-                case '(':
-                    escaped.append("\\(");
-                    break;
-                case ')':
-                    escaped.append("\\)");
-                    break;
-                case '#':
-                    escaped.append("\\#");
-                    break;
-                case '+':
-                    escaped.append("\\+");
-                    break;
-                case '-':
-                    escaped.append("\\-");
-                    break;
-                case '.':
-                    escaped.append("\\.");
-                    break;
-                case '!':
-                    escaped.append("\\!");
-                    break;
-                case '|':
-                    escaped.append("\\|");
-                    break;
-                case '\n':
-                    escaped.append("\\n");
-                    break;
-                case '\r':
-                    escaped.append("\\r");
-                    break;
-                case '\t':
-                    escaped.append("\\t");
-                    break;
-                default:
-                    if (cp <= 31 || cp >= 127) {
-                        escaped.append("&#").append(cp).append(';');
-                    } else {
-                        escaped.append((char) cp);
-                    }
+        var escaped = new StringBuilder(length + 16);
+        int start   = 0;
+        for (; next < length; next = nextEscape(value, start, escapes)) {
+            escaped.append(value, start, next);
+
+            char ch = value.charAt(next);
+            if (ch < Ascii) {
+                escaped.append(escapes[ch]);
+                start = next + 1;
+            } else {
+                int cp = value.codePointAt(next);
+                escaped.append("&#").append(cp).append(';');
+                start = next + Character.charCount(cp);
+            }
+        }
+        return escaped.append(value, start, length).toString();
+    }
+
+    /**
+     * Returns the index of the next character from {@code from} that has an escape in the table or is not ASCII, or
+     * the length of the value when there is none.
+     */
+    private static int nextEscape(String value, int from, String[] escapes) {
+        int length = value.length();
+        for (int i = from; i < length; i++) {
+            char ch = value.charAt(i);
+            if (ch >= Ascii || escapes[ch] != null) {
+                return i;
             }
         }
-        return escaped.toString();
+        return length;
+    }
+
+    private static int nextEscape(String value, int from, char[] chars) {
+        int length = value.length();
+        for (int i = from; i < length; i++) {
+            char ch = value.charAt(i);
+            for (var escaped : chars) {
+                if (ch == escaped) {
+                    return i;
+                }
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Creates a table of escapes for the ASCII characters. Control characters and DEL are written as numeric character
+     * references, characters without an entry are written unchanged.
+     */
+    private static String[] asciiEscapes() {
+        var escapes = new String[Ascii];
+        for (int ch = 0; ch < 0x20; ch++) {
+            escapes[ch] = "&#" + ch + ";";
+        }
+        escapes[0x7F] = "&#127;";
+        return escapes;
+    }
+
+    private static String[] markdownEscapes() {
+        var escapes = asciiEscapes();
+        for (var ch : "\\`*_{}[]<>()#+-.!|".toCharArray()) {
+            escapes[ch] = "\\" + ch;
+        }
+        escapes['\n'] = "\\n";
+        escapes['\r'] = "\\r";
+        escapes['\t'] = "\\t";
+        return escapes;
+    }
+
+    private static String[] htmlEscapes() {
+        var escapes = asciiEscapes();
+        escapes['<'] = "&lt;";
+        escapes['>'] = "&gt;";
+        return escapes;
     }
 
     public static class Format {
@@ -22,19 +22,42 @@ import java.io.Writer;
 
 /**
  * An abstract base class for templates that provides methods for writing text to a {@code Writer}.
+ * <p>
+ * Output is collected in a reusable character buffer and written to the {@code Writer} when the buffer is full, when
+ * {@link #getWriter()} is called, and on {@link #flush()}. Whoever renders a template must call {@code flush()} after
+ * {@link #render()}.
  *
  * @param <T> the type of the template extending this class
  */
 public abstract class Template<T extends Template<T>> {
+    private static final int BufferSize = 8192;
+
+    // Longest decimal representation of a long, including the sign
+    private static final int MaxLongLength = 20;
+
     protected final Writer writer;
+    // Characters written to the writer so far, excluding those still buffered
     protected       long   written;
 
+    // Rendered output that has not been written to the writer yet
+    private final char[] buffer;
+    private       int    count;
+
     protected Template(Writer writer) {
         this.writer  = writer;
         this.written = 0;
+        this.buffer  = new char[BufferSize];
+        this.count   = 0;
     }
 
+    /**
+     * Returns the writer the template renders to. Buffered output is written to it first, so content written directly
+     * to the writer stays in order.
+     *
+     * @return the writer of the template
+     */
     public Writer getWriter() {
+        flushBuffer();
         return writer;
     }
 
@@ -47,57 +70,183 @@ public abstract class Template<T extends Template<T>> {
      */
     public abstract void render() throws Exception;
 
+    /**
+     * Writes the buffered output to the writer. The writer itself is neither flushed nor closed, it is owned by the
+     * caller.
+     *
+     * @return this template
+     */
+    public T flush() {
+        flushBuffer();
+        return self();
+    }
+
     public T out(String text) {
-        try {
-            getWriter().write(text);
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+        append(text != null ? text : "null", 0, text != null ? text.length() : 4);
+        return self();
+    }
+
+    /**
+     * Writes a single value. Generated templates call this for {@code <%= %>} expressions of reference types, so no
+     * varargs array is created.
+     */
+    public T out(Object value) {
+        if (value instanceof CharSequence text) {
+            append(text, 0, text.length());
+            return self();
         }
+        return out(String.valueOf(value));
+    }
+
+    /**
+     * Writes an int value without boxing. The typed overloads are selected for {@code <%= %>} expressions of primitive
+     * types.
+     */
+    public T out(int value) {
+        return out((long) value);
+    }
+
+    public T out(long value) {
+        if (buffer.length - count < MaxLongLength) {
+            flushBuffer();
+        }
+
+        // Digits are produced from the negated value, which also covers Long.MIN_VALUE
+        int  length   = value < 0 ? 2 : 1;
+        long negative = value < 0 ? value : -value;
+        for (long rest = negative / 10; rest != 0; rest /= 10) {
+            length++;
+        }
+
+        int pos = count + length;
+        do {
+            buffer[--pos] = (char) ('0' - negative % 10);
+            negative /= 10;
+        } while (negative != 0);
+        if (value < 0) {
+            buffer[--pos] = '-';
+        }
+        count += length;
         return self();
     }
 
-    public T outln(String text) {
-        try {
-            var writer = getWriter();
-            writer.write(text);
-            writer.write("\n");
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+    public T out(double value) {
+        return out(Double.toString(value));
+    }
+
+    public T out(float value) {
+        return out(Float.toString(value));
+    }
+
+    public T out(char value) {
+        if (count == buffer.length) {
+            flushBuffer();
         }
+        buffer[count++] = value;
         return self();
     }
 
-    public T out(Object... values) {
-        try {
-            var out = getWriter();
-            for (var value : values) {
-                out.write(String.valueOf(value));
+    public T out(boolean value) {
+        return out(value ? "true" : "false");
+    }
+
+    /**
+     * Writes the characters {@code [start, end)} of a character sequence without creating a substring.
+     *
+     * @return this template
+     */
+    public T write(CharSequence text, int start, int end) {
+        append(text, start, end);
+        return self();
+    }
+
+    /**
+     * Writes {@code length} characters of an array starting at {@code offset}.
+     *
+     * @return this template
+     */
+    public T write(char[] chars, int offset, int length) {
+        if (length >= buffer.length) {
+            flushBuffer();
+            try {
+                writer.write(chars, offset, length);
+                written += length;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+        } else {
+            if (buffer.length - count < length) {
+                flushBuffer();
+            }
+            System.arraycopy(chars, offset, buffer, count, length);
+            count += length;
         }
         return self();
     }
 
-    public T outln(Object... values) {
-        try {
-            var out = getWriter();
-            for (var value : values) {
-                out.write(String.valueOf(value));
-            }
-            out.write("\n");
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+    public T outln(String text) {
+        return out(text).out('\n');
+    }
+
+    public T out(Object... values) {
+        for (var value : values) {
+            out(value);
         }
         return self();
     }
 
+    public T outln(Object... values) {
+        return out(values).out('\n');
+    }
+
     public T outf(String format, Object... args) {
+        return out(format.formatted(args));
+    }
+
+    /**
+     * Copies a range of characters into the buffer. Ranges longer than the buffer are written to the writer directly.
+     */
+    private void append(CharSequence text, int start, int end) {
+        int length = end - start;
+        if (length >= buffer.length) {
+            flushBuffer();
+            try {
+                if (text instanceof String string) {
+                    writer.write(string, start, length);
+                } else {
+                    writer.append(text, start, end);
+                }
+                written += length;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+
+        if (buffer.length - count < length) {
+            flushBuffer();
+        }
+        if (text instanceof String string) {
+            string.getChars(start, end, buffer, count);
+        } else {
+            for (int i = start; i < end; i++) {
+                buffer[count + i - start] = text.charAt(i);
+            }
+        }
+        count += length;
+    }
+
+    private void flushBuffer() {
+        if (count == 0) {
+            return;
+        }
+
         try {
-            getWriter().write(format.formatted(args));
+            writer.write(buffer, 0, count);
+            written += count;
+            count = 0;
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
-        return self();
     }
 }
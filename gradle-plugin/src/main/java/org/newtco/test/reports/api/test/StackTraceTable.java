@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.newtco.test.reports.api.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Table of the distinct stack traces of a report. Failures sharing the same stack trace, which is common when many
+ * tests fail for the same reason, reference a single entry rather than repeating it.
+ * <p>
+ * Entries are keyed by the content of the stack trace, and numbered in the order they are first added.
+ */
+public class StackTraceTable {
+
+    private final Map<String, Entry> entries;
+    private final List<String>       stackTraces;
+    private       int                failures;
+
+    public StackTraceTable() {
+        this.entries     = new HashMap<>();
+        this.stackTraces = new ArrayList<>();
+    }
+
+    /**
+     * Adds the stack trace of the next failure of the report to the table.
+     *
+     * @param stackTrace the stack trace of the failure
+     * @return the entry of the stack trace, which is a duplicate if an earlier failure had the same stack trace
+     */
+    public Entry add(String stackTrace) {
+        int failure  = ++failures;
+        var existing = entries.get(stackTrace);
+        if (existing != null) {
+            return new Entry(existing.index, existing.failure, true);
+        }
+
+        var entry = new Entry(stackTraces.size(), failure, false);
+        entries.put(stackTrace, entry);
+        stackTraces.add(stackTrace);
+        return entry;
+    }
+
+    /**
+     * The distinct stack traces, in the order of their entry indexes
+     */
+    public List<String> getStackTraces() {
+        return Collections.unmodifiableList(stackTraces);
+    }
+
+    /**
+     * Number of failures added to the table
+     */
+    public int getFailureCount() {
+        return failures;
+    }
+
+    /**
+     * An entry of the table
+     *
+     * @param index     the index of the stack trace within the table
+     * @param failure   the number, starting from 1, of the failure which first added the stack trace
+     * @param duplicate whether the stack trace was added by an earlier failure
+     */
+    public record Entry(int index, int failure, boolean duplicate) {
+    }
+}
@@ -25,5 +25,6 @@ public class TestSettings {
     public boolean     includeSystemErrLog;
     public boolean     includeSystemOutLog;
     public boolean     outputPerTestCase;
+    public boolean     deduplicateStackTraces;
     public Set<Status> statuses;
 }
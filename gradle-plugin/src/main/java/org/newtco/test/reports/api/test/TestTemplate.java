@@ -28,15 +28,17 @@ public abstract class TestTemplate<T extends TestTemplate<T>> extends MarkdownTe
     protected final String          title;
     protected final List<TestSuite> suites;
     protected final Stats           stats;
+    protected final StackTraceTable stackTraces;
 
 
     public TestTemplate(Writer writer, String title, Stats stats, List<TestSuite> suites, TestSettings settings) {
         super(writer);
 
-        this.settings = settings;
-        this.stats    = stats;
-        this.title    = title;
-        this.suites   = suites;
+        this.settings    = settings;
+        this.stats       = stats;
+        this.title       = title;
+        this.suites      = suites;
+        this.stackTraces = new StackTraceTable();
     }
 
     protected String getTitle() {
@@ -63,6 +65,14 @@ public abstract class TestTemplate<T extends TestTemplate<T>> extends MarkdownTe
         return stats;
     }
 
+    /**
+     * Table of the stack traces of the failures rendered by this template, used to refer to an earlier failure with
+     * the same stack trace when {@link TestSettings#deduplicateStackTraces} is set
+     */
+    protected StackTraceTable getStackTraces() {
+        return stackTraces;
+    }
+
     protected interface Icons {
         // Test outcomes
         String Passed  = "&#9989;";
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.newtco.test.reports.api.test.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Output written to stdout or stderr by a test case or suite. Each attempt of a test, such as a retry, adds one chunk
+ * of output, earlier chunks are never copied when output is added. The combined output is only joined when requested,
+ * use {@link #writeTo(Appendable)} to write it without joining.
+ */
+public class Output {
+
+    public List<String> attempts;
+
+    private String joined;
+
+    public Output() {
+        this.attempts = new ArrayList<>(1);
+    }
+
+    /**
+     * Creates the output of a single attempt
+     *
+     * @param output the output of the attempt, may be {@code null} for no output
+     */
+    public static Output of(String output) {
+        var result = new Output();
+        result.add(output);
+        return result;
+    }
+
+    /**
+     * Adds the output of the next attempt
+     *
+     * @param chunk the output of the attempt, may be empty
+     */
+    public void add(String chunk) {
+        attempts.add(chunk == null ? "" : chunk);
+        joined = null;
+    }
+
+    /**
+     * Returns the output of each attempt, in order of the attempts
+     */
+    public List<String> getAttempts() {
+        return Collections.unmodifiableList(attempts);
+    }
+
+    public int getAttemptCount() {
+        return attempts.size();
+    }
+
+    public int length() {
+        int length = 0;
+        for (var chunk : attempts) {
+            length += chunk.length();
+        }
+        return length;
+    }
+
+    public boolean isEmpty() {
+        for (var chunk : attempts) {
+            if (!chunk.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the output of all attempts to the given appendable
+     */
+    public void writeTo(Appendable appendable) {
+        try {
+            for (var chunk : attempts) {
+                appendable.append(chunk);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Returns the output of all attempts joined together
+     */
+    @Override
+    public String toString() {
+        if (joined == null) {
+            joined = attempts.size() == 1 ? attempts.get(0) : String.join("", attempts);
+        }
+        return joined;
+    }
+}
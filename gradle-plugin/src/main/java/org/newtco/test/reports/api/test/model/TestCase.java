@@ -30,6 +30,9 @@ public class TestCase extends Stats {
     public String        stdOut;
     public List<Failure> failures;
 
+    private Output stdErrOutput;
+    private Output stdOutOutput;
+
     public String getName() {
         return name;
     }
@@ -63,6 +66,29 @@ public class TestCase extends Stats {
         return stdOut;
     }
 
+    /**
+     * Returns the stderr output of each attempt, or {@link #stdErr} as a single attempt if the attempts are unknown
+     */
+    public Output getStdErrOutput() {
+        return stdErrOutput != null ? stdErrOutput : Output.of(stdErr);
+    }
+
+    /**
+     * Returns the stdout output of each attempt, or {@link #stdOut} as a single attempt if the attempts are unknown
+     */
+    public Output getStdOutOutput() {
+        return stdOutOutput != null ? stdOutOutput : Output.of(stdOut);
+    }
+
+    /**
+     * Sets the output of each attempt. The combined {@link #stdErr} and {@link #stdOut} are not updated, assign them
+     * once all attempts have been added.
+     */
+    public void setOutputs(Output stdErr, Output stdOut) {
+        this.stdErrOutput = stdErr;
+        this.stdOutOutput = stdOut;
+    }
+
     public List<Failure> getFailures() {
         return failures;
     }
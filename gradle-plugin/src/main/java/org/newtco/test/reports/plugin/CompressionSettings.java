@@ -0,0 +1,74 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.newtco.test.reports.plugin;
+
+import org.newtco.test.util.Compression;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+
+import javax.inject.Inject;
+import java.util.zip.Deflater;
+
+/**
+ * Settings controlling the compression of report files. When enabled, reports are compressed with GZIP as they are
+ * written and their file names get the ".gz" extension, such as TEST-Summary.md.gz.
+ */
+public abstract class CompressionSettings {
+
+    @Inject
+    public CompressionSettings() {
+        getEnabled().convention(false);
+        getLevel().convention(Deflater.DEFAULT_COMPRESSION);
+        getBufferSize().convention(64 * 1024);
+    }
+
+    /**
+     * Whether reports are compressed.
+     * <p>
+     * Default value: false
+     */
+    @Input
+    public abstract Property<Boolean> getEnabled();
+
+    /**
+     * Compression level, from 0 (no compression) to 9 (best compression), or -1 for the default level of GZIP.
+     * <p>
+     * Default value: -1
+     */
+    @Input
+    public abstract Property<Integer> getLevel();
+
+    /**
+     * Size in bytes of the buffer of the compressor.
+     * <p>
+     * Default value: 64 KiB
+     */
+    @Input
+    public abstract Property<Integer> getBufferSize();
+
+    /**
+     * Creates the compression of report files from the settings
+     */
+    public Compression createCompression() {
+        if (!getEnabled().get()) {
+            return Compression.NONE;
+        }
+
+        return Compression.gzip(getLevel().get(), getBufferSize().get());
+    }
+}
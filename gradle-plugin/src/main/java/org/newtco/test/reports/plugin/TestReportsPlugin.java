@@ -18,14 +18,17 @@ package org.newtco.test.reports.plugin;
 
 import org.newtco.test.reports.plugin.coverage.CoverageReportsExtension;
 import org.newtco.test.reports.plugin.coverage.CoverageReportGenerator;
+import org.newtco.test.reports.plugin.test.TestEventJournal;
 import org.newtco.test.reports.plugin.test.TestReportGenerator;
 import org.newtco.test.reports.plugin.test.TestReportsExtension;
+import org.newtco.test.reports.plugin.test.TestResultsService;
 import org.newtco.test.reports.plugin.test.TestSuiteCollector;
 import org.newtco.test.reports.plugin.transform.PluginApiJarTransform;
 import org.newtco.test.reports.plugin.transform.PluginJarType;
 import org.newtco.test.templates.TemplateInstantiator;
 import org.newtco.test.templates.tasks.ProcessReportTemplatesTask;
 import org.newtco.test.util.GradleUtils.Actions;
+import org.gradle.api.GradleException;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.ModuleDependency;
@@ -41,12 +44,12 @@ import org.gradle.testing.jacoco.tasks.JacocoReport;
 import org.jetbrains.annotations.NotNull;
 
 import javax.inject.Inject;
+import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
 
 import static org.newtco.test.reports.plugin.transform.PluginJarType.PLUGIN_JAR_TYPE_ATTRIBUTE;
 import static org.newtco.test.util.GradleUtils.Extensions.extensionOf;
@@ -280,6 +283,10 @@ public abstract class TestReportsPlugin implements Plugin<Project> {
      * @param project the project to which test reporting should be configured
      */
     private void configureTestReports(Project project) {
+        var results = project.getGradle().getSharedServices()
+                .registerIfAbsent(TestResultsService.NAME, TestResultsService.class, spec -> {
+                });
+
         project.getTasks().withType(Test.class).configureEach(test -> {
             var extension = test.getExtensions().create("additionalReports",
                     TestReportsExtension.class,
@@ -287,23 +294,34 @@ public abstract class TestReportsPlugin implements Plugin<Project> {
                     test
             );
 
-            AtomicReference<TestSuiteCollector> collector = new AtomicReference<>();
+            // As an output of the test task, the journal is restored along with test results from the build cache
+            test.getOutputs().file(extension.getJournalFile())
+                    .withPropertyName("additionalReportsJournal")
+                    .optional();
+
+            // Collected results are held by the shared service, partitioned by task
+            test.usesService(results);
 
             test.doFirst(task -> {
+                // Remove the journal of a previous run, replaced if the journal is enabled
+                project.delete(extension.getJournalFile());
+
                 if (extension.getJson().getEnabled().get()
                         || extension.getSummaryMarkdown().getEnabled().get()
                         || extension.getSummaryMarkdown().getEnabled().get()) {
 
-                    collector.set( new TestSuiteCollector(
-                            extension.getStackFilters(),
-                            extension.getGitLinkRepository(),
-                            extension.getGitLinkCommit(),
-                            extension.getGitLinkUrlTemplate()
-                    ));
+                    var collector = createTestSuiteCollector(test, extension);
+                    var generator = new TestReportGenerator(templateInstantiator, test, collector);
+                    var journal = extension.getJournal().get()
+                            ? new TestEventJournal(extension.getJournalFile().get().getAsFile().toPath())
+                            : null;
 
                     // Only collect test data if a report is enabled
-                    test.addTestListener(collector.get());
-                    test.addTestOutputListener(collector.get());
+                    var partition = results.get().open(test.getPath(), collector, generator, journal);
+                    test.addTestListener(partition);
+                    test.addTestOutputListener(partition);
+
+                    generator.streamTestReports();
                 }
             });
 
@@ -312,10 +330,61 @@ public abstract class TestReportsPlugin implements Plugin<Project> {
                         || extension.getSummaryMarkdown().getEnabled().get()
                         || extension.getSummaryMarkdown().getEnabled().get()) {
 
-                    generateTestReports(test, collector.get());
+                    try (var partition = results.get().remove(test.getPath())) {
+                        if (partition != null) {
+                            // The generator which streamed reports generates the remaining ones
+                            partition.getGenerator().generateTestReports();
+                        }
+                    }
                 }
             });
         });
+
+        // Tasks can't be registered while the test tasks are configured
+        project.afterEvaluate(this::configureRegenerateTestReports);
+    }
+
+    /**
+     * Registers a regenerate{Test}Reports task for each test task, generating its reports from the test event journal
+     * of its last run without running the tests again.
+     *
+     * @param project the project whose test tasks get a regenerate task
+     */
+    private void configureRegenerateTestReports(Project project) {
+        var templatesClasses = extensionOf(project, SourceSetContainer.class)
+                .getByName(REPORT_SOURCESET_NAME)
+                .getClassesTaskName();
+
+        for (var testName : project.getTasks().withType(Test.class).getNames()) {
+            var taskName = "regenerate" + Character.toUpperCase(testName.charAt(0)) + testName.substring(1) + "Reports";
+            if (project.getTasks().getNames().contains(taskName)) {
+                continue;
+            }
+
+            var testTask = project.getTasks().named(testName, Test.class);
+            project.getTasks().register(taskName, task -> {
+                task.setGroup("verification");
+                task.setDescription("Regenerates the reports of task " + testName + " from its test event journal");
+                task.dependsOn(templatesClasses);
+                task.mustRunAfter(testTask);
+                task.doLast(unused -> regenerateTestReports(testTask.get()));
+            });
+        }
+    }
+
+    private TestSuiteCollector createTestSuiteCollector(Test test, TestReportsExtension extension) {
+        // Remove output spilled by a previous run which did not complete
+        var spillDir = new File(test.getTemporaryDir(), "output");
+        test.getProject().delete(spillDir);
+
+        return new TestSuiteCollector(
+                extension.getStackFilters(),
+                extension.getGitLinkRepository(),
+                extension.getGitLinkCommit(),
+                extension.getGitLinkUrlTemplate(),
+                extension.getOutputCapture().createAllocator(spillDir.toPath()),
+                extension.getParallelism().get()
+        );
     }
 
     /**
@@ -352,13 +421,25 @@ public abstract class TestReportsPlugin implements Plugin<Project> {
     }
 
     /**
-     * Generates test reports for the given test task using a specified test graph collector.
+     * Regenerates test reports for the given test task by replaying its test event journal.
      *
-     * @param testTask  the test task for which the reports are generated
-     * @param collector the collector used to gather test outputs and results
+     * @param testTask the test task for which the reports are generated
      */
-    private void generateTestReports(Test testTask, TestSuiteCollector collector) {
-        new TestReportGenerator(templateInstantiator, testTask, collector).generateTestReports();
+    private void regenerateTestReports(Test testTask) {
+        var extension   = extensionOf(testTask, TestReportsExtension.class);
+        var journalFile = extension.getJournalFile().get().getAsFile().toPath();
+        if (!Files.exists(journalFile)) {
+            throw new GradleException("No test event journal found at " + journalFile + ", run task "
+                    + testTask.getName() + " with additionalReports.journal enabled first");
+        }
+
+        try (var collector = createTestSuiteCollector(testTask, extension)) {
+            if (!TestEventJournal.replay(journalFile, collector)) {
+                logger.warn("Test event journal {} is incomplete, tests which did not complete are reported as failed",
+                        journalFile);
+            }
+            new TestReportGenerator(templateInstantiator, testTask, collector).regenerateTestReports();
+        }
     }
 
     /**
@@ -17,6 +17,7 @@
 package org.newtco.test.reports.plugin.coverage;
 
 import org.newtco.test.templates.TemplateInstantiator;
+import org.newtco.test.util.Compression;
 import org.newtco.test.util.GitExecutor;
 import org.newtco.test.util.JdepsDependencyCollector;
 import org.newtco.test.util.SourceSetCollectors;
@@ -52,6 +53,7 @@ public class CoverageReportGenerator {
     private final Logger                   log;
     private final CoverageReportsExtension extension;
     private final TemplateInstantiator     instantiator;
+    private final Compression              compression;
 
     public CoverageReportGenerator(TemplateInstantiator templateInstantiator, JacocoReport jacocoReport) {
         this.jacocoReport = jacocoReport;
@@ -59,6 +61,7 @@ public class CoverageReportGenerator {
         this.project      = jacocoReport.getProject();
         this.log          = jacocoReport.getLogger();
         this.instantiator = templateInstantiator;
+        this.compression  = extension.getCompression().createCompression();
     }
 
     public void generateCoverageReports() {
@@ -111,11 +114,14 @@ public class CoverageReportGenerator {
         }
     }
 
+    /**
+     * Deletes the reports, both compressed and uncompressed in case compression was changed
+     */
     private void deleteReports() {
-        project.delete(
-                extension.getJson().getReportFile().get().getAsFile(),
-                extension.getSummaryMarkdown().getReportFile().get().getAsFile(),
-                extension.getDetailedMarkdown().getReportFile().get().getAsFile());
+        for (var settings : List.of(extension.getJson(), extension.getSummaryMarkdown(), extension.getDetailedMarkdown())) {
+            var reportFile = settings.getReportFile().get().getAsFile();
+            project.delete(reportFile, new File(reportFile.getPath() + ".gz"));
+        }
     }
 
     private Set<File> getCoverageTargets() {
@@ -185,19 +191,19 @@ public class CoverageReportGenerator {
     private void generateMarkdownReports(IBundleCoverage bundle) {
         var settings = extension.getSummaryMarkdown();
         if (Boolean.TRUE.equals(settings.getEnabled().get())) {
-            new MarkdownCoverageReport(instantiator, settings).generateReport(project, jacocoReport, bundle);
+            new MarkdownCoverageReport(instantiator, settings, compression).generateReport(project, jacocoReport, bundle);
         }
 
         settings = extension.getDetailedMarkdown();
         if (Boolean.TRUE.equals(settings.getEnabled().get())) {
-            new MarkdownCoverageReport(instantiator, settings).generateReport(project, jacocoReport, bundle);
+            new MarkdownCoverageReport(instantiator, settings, compression).generateReport(project, jacocoReport, bundle);
         }
     }
 
     private void generateJsonReport(IBundleCoverage bundle) {
         var settings = extension.getJson();
         if (Boolean.TRUE.equals(settings.getEnabled().get())) {
-            new JsonCoverageReport(settings).generateReport(project, jacocoReport, bundle);
+            new JsonCoverageReport(settings, compression).generateReport(project, jacocoReport, bundle);
         }
     }
 }
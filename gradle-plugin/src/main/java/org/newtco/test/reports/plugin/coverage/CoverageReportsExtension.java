@@ -16,6 +16,7 @@
 
 package org.newtco.test.reports.plugin.coverage;
 
+import org.newtco.test.reports.plugin.CompressionSettings;
 import org.newtco.test.util.GradleUtils;
 import groovy.lang.Closure;
 import org.gradle.api.Action;
@@ -38,6 +39,7 @@ public class CoverageReportsExtension implements Configurable<CoverageReportsExt
     private final JsonReportSettings     json;
     private final MarkdownReportSettings summaryMarkdown;
     private final MarkdownReportSettings detailedMarkdown;
+    private final CompressionSettings    compression;
 
     @Inject
     public CoverageReportsExtension(Project project, JacocoReport report) {
@@ -61,6 +63,8 @@ public class CoverageReportsExtension implements Configurable<CoverageReportsExt
         detailedMarkdown = objects.newInstance(MarkdownReportSettings.class,
                 "Detailed",
                 reportsDir.file(report.getName() + ".md"));
+
+        compression = objects.newInstance(CompressionSettings.class);
     }
 
     /**
@@ -137,6 +141,22 @@ public class CoverageReportsExtension implements Configurable<CoverageReportsExt
         action.execute(getDetailedMarkdown());
     }
 
+    /**
+     * Configuration for the compression of the reports, adding the ".gz" extension to their report files
+     */
+    @Input
+    @Nested
+    public CompressionSettings getCompression() {
+        return compression;
+    }
+
+    /**
+     * For closure configuration support
+     */
+    public void compression(Action<? super CompressionSettings> action) {
+        action.execute(getCompression());
+    }
+
     /**
      * To work around extensions.configure not using the extension as the delegate
      */
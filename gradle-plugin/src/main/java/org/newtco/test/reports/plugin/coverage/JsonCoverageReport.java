@@ -17,6 +17,7 @@
 package org.newtco.test.reports.plugin.coverage;
 
 import org.newtco.test.reports.api.coverage.model.Names;
+import org.newtco.test.util.Compression;
 import org.newtco.test.util.JsonWriter;
 import org.newtco.test.util.Text;
 import org.gradle.api.GradleException;
@@ -28,7 +29,6 @@ import java.io.IOException;
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.nio.file.Files;
 import java.time.Instant;
 import java.util.Iterator;
 import java.util.List;
@@ -41,9 +41,11 @@ import java.util.List;
  */
 public class JsonCoverageReport implements CoverageReport {
     private final JsonReportSettings settings;
+    private final Compression        compression;
 
-    public JsonCoverageReport(JsonReportSettings settings) {
-        this.settings = settings;
+    public JsonCoverageReport(JsonReportSettings settings, Compression compression) {
+        this.settings    = settings;
+        this.compression = compression;
     }
 
     @Override
@@ -52,9 +54,9 @@ public class JsonCoverageReport implements CoverageReport {
     }
 
     private void generateReport(Project project, IBundleCoverage bundle) {
-        var reportFile = settings.getReportFile().getAsFile().get().toPath();
+        var reportFile = compression.resolve(settings.getReportFile().getAsFile().get().toPath());
 
-        try (var writer = Files.newBufferedWriter(reportFile)) {
+        try (var writer = compression.newWriter(reportFile)) {
             var start = Instant.now();
             new JsonReportGenerator(writer, settings).generate(bundle);
             var end = Instant.now();
@@ -147,6 +149,7 @@ public class JsonCoverageReport implements CoverageReport {
                     .field("lines").array(
                             includeLines ? new LineIterator(sourceFile) : new LineIterator(),
                             sourceFile,
+                            (file, lineNumber) -> file.getLine(lineNumber).getStatus() != ICounter.EMPTY,
                             this::writeLine);
             json.raw('}');
         }
@@ -154,13 +157,11 @@ public class JsonCoverageReport implements CoverageReport {
         private void writeLine(ISourceFileCoverage sourceFile, int lineNumber) {
             var line = sourceFile.getLine(lineNumber);
 
-            if (line.getStatus() != ICounter.EMPTY) {
-                json.raw('{')
-                        .field("number").value(lineNumber).comma()
-                        .field("instructions").value(line.getInstructionCounter(), this::writeCounter).comma()
-                        .field("branches").value(line.getBranchCounter(), this::writeCounter).comma();
-                json.raw('}');
-            }
+            json.raw('{')
+                    .field("number").value(lineNumber).comma()
+                    .field("instructions").value(line.getInstructionCounter(), this::writeCounter).comma()
+                    .field("branches").value(line.getBranchCounter(), this::writeCounter);
+            json.raw('}');
         }
 
         private void writeCounters(ICoverageNode coverage) {
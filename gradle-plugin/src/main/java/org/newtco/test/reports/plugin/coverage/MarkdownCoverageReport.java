@@ -20,13 +20,13 @@ import org.newtco.test.reports.api.coverage.Badge;
 import org.newtco.test.reports.api.coverage.CoverageSettings;
 import org.newtco.test.reports.api.coverage.model.Bundle;
 import org.newtco.test.templates.TemplateInstantiator;
+import org.newtco.test.util.Compression;
 import org.newtco.test.util.Text;
 import org.gradle.api.GradleException;
 import org.gradle.api.Project;
 import org.gradle.testing.jacoco.tasks.JacocoReport;
 import org.jacoco.core.analysis.IBundleCoverage;
 
-import java.nio.file.Files;
 import java.time.Instant;
 
 /**
@@ -40,10 +40,15 @@ public class MarkdownCoverageReport implements CoverageReport {
 
     private final MarkdownReportSettings settings;
     private final TemplateInstantiator   instantiator;
+    private final Compression            compression;
 
-    public MarkdownCoverageReport(TemplateInstantiator instantiator, MarkdownReportSettings settings) {
+    public MarkdownCoverageReport(
+            TemplateInstantiator instantiator,
+            MarkdownReportSettings settings,
+            Compression compression) {
         this.instantiator = instantiator;
         this.settings     = settings;
+        this.compression  = compression;
     }
 
     private String getTemplateName() {
@@ -58,9 +63,9 @@ public class MarkdownCoverageReport implements CoverageReport {
 
         log.debug("Generating Markdown coverage report for {}:{}", project.getName(), report.getName());
 
-        var outputFile = settings.getReportFile().getAsFile().get().toPath();
+        var outputFile = compression.resolve(settings.getReportFile().getAsFile().get().toPath());
 
-        try (var writer = Files.newBufferedWriter(outputFile)) {
+        try (var writer = compression.newWriter(outputFile)) {
             var start = Instant.now();
             var template = instantiator.createTemplate(getTemplateName(),
                     writer,
@@ -70,6 +75,7 @@ public class MarkdownCoverageReport implements CoverageReport {
                             settings.getCurrentColorScheme().getColors())
             );
             template.render();
+            template.flush();
             var end = Instant.now();
 
             log.lifecycle("Finished generating Markdown coverage report ({}) to: file:///{}",
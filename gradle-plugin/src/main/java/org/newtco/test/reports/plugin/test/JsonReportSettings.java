@@ -34,6 +34,7 @@ public abstract class JsonReportSettings extends ReportSettings {
         super("Json", project, convention);
 
         getAggregateJsonReports().convention(true);
+        getNdjson().convention(false);
     }
 
     /**
@@ -43,4 +44,15 @@ public abstract class JsonReportSettings extends ReportSettings {
      */
     @Input
     public abstract Property<Boolean> getAggregateJsonReports();
+
+    /**
+     * Whether test results are also written as newline-delimited JSON to TEST.ndjson. Each reportable test case is a
+     * self-contained line including the context of its suite, followed by a line for its suite, and a trailer line
+     * carries the totals once all tests have run. Lines are appended as each suite completes, so the file can be read
+     * while tests run.
+     *
+     * @return a property that holds a boolean value indicating if the NDJSON report is written
+     */
+    @Input
+    public abstract Property<Boolean> getNdjson();
 }
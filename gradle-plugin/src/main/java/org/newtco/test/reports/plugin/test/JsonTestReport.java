@@ -16,21 +16,19 @@
 
 package org.newtco.test.reports.plugin.test;
 
+import org.newtco.test.reports.api.test.StackTraceTable;
 import org.newtco.test.reports.api.test.model.*;
+import org.newtco.test.util.Compression;
 import org.newtco.test.util.JsonWriter;
 import org.newtco.test.util.Text.Format;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.tasks.testing.Test;
 
-import java.io.IOException;
 import java.io.Writer;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
 import java.util.Base64;
-import java.util.Date;
 import java.util.List;
 import java.util.Objects;
 
@@ -44,130 +42,184 @@ public class JsonTestReport extends TestReport {
     private final JsonOptions options;
     private final Logger      logger;
 
-    public JsonTestReport(Test test, JsonReportSettings settings, DirectoryProperty outputDir) {
-        this.options = new JsonOptions(settings, outputDir);
+    public JsonTestReport(Test test, JsonReportSettings settings, DirectoryProperty outputDir, Compression compression) {
+        this.options = new JsonOptions(settings, outputDir, compression);
         this.logger  = test.getLogger();
     }
 
     @Override
-    public void generateReport(List<TestSuite> suites) {
-        if (options.aggregated) {
-            createAggregatedReports(suites);
-        } else {
-            createIndividualReports(suites);
-        }
+    Options getOptions() {
+        return options;
+    }
+
+    @Override
+    boolean isAggregated() {
+        return options.aggregated;
     }
 
-    private void createAggregatedReports(List<TestSuite> suites) {
+    @Override
+    void writeAggregatedReport(TestReportData data, ReportFiles files) {
         var reportFile = options.resolveReportFile("");
-        try (var writer = Files.newBufferedWriter(reportFile)) {
+        try {
             var start = Instant.now();
-            new JsonReportGenerator(writer, options).generate(suites);
+            files.write(reportFile, writer -> new JsonReportGenerator(writer, options, data)
+                    .generate(data.getMetrics(), data.getSuites()));
             var end = Instant.now();
 
             logger.info("Finished generating aggregated JSON results ({}) to: file:///{}",
                     Format.duration(start, end),
                     reportFile.toString().replace('\\', '/'));
 
-        } catch (IOException ex) {
+        } catch (Exception ex) {
             logger.error("Failed to write report {}",
                     reportFile,
                     ex);
         }
     }
 
-    private void createIndividualReports(List<TestSuite> suites) {
-        for (var suite : suites) {
-            var suiteName  = Objects.requireNonNullElse(suite.getClassName(), suite.getName());
-            var reportFile = options.resolveReportFile(suiteName);
-
-            try (var writer = Files.newBufferedWriter(reportFile)) {
-                var start = Instant.now();
-                new JsonReportGenerator(writer, options).generate(List.of(suite));
-                var end = Instant.now();
+    @Override
+    Path resolveSuiteReportFile(TestSuite suite) {
+        return options.resolveReportFile(Objects.requireNonNullElse(suite.getClassName(), suite.getName()));
+    }
 
-                logger.info("Finished generating individual JSON results ({}) to: file:///{}",
-                        Format.duration(start, end),
-                        reportFile.toString().replace('\\', '/'));
+    @Override
+    void writeSuiteReport(TestSuite suite, TestReportData data, Path reportFile, ReportFiles files) throws Exception {
+        // The metrics of a single suite are those of the suite itself. Timings and the host name differ between runs,
+        // so the report is compared without them
+        files.write(reportFile,
+                writer -> new JsonReportGenerator(writer, options, data)
+                        .generate(suite, List.of(suite)),
+                writer -> {
+                    var canonical = withoutTimings(suite);
+                    new JsonReportGenerator(writer, options, data, options.deduplicateStackTraces, "")
+                            .generate(canonical, List.of(canonical));
+                });
+    }
 
-            } catch (IOException ex) {
+    @Override
+    RuntimeException completeSuiteReports(List<ReportOutcome> outcomes) {
+        for (var outcome : outcomes) {
+            if (outcome.failed()) {
                 logger.error("Failed to write report {}",
-                        suiteName,
-                        ex);
+                        outcome.file(),
+                        outcome.failure());
+            } else {
+                logger.info("Finished generating individual JSON results ({}) to: file:///{}",
+                        Format.duration(outcome.start(), outcome.end()),
+                        outcome.file().toString().replace('\\', '/'));
             }
         }
+        return null;
     }
 
     /**
      * JsonReportGenerator is responsible for generating test reports in JSON format. It extends the abstract
      * ReportGenerator class.
      */
-    private static class JsonReportGenerator {
+    static class JsonReportGenerator {
+
+        private final JsonOptions     options;
+        private final TestReportData  data;
+        private final JsonWriter      json;
+        private final StackTraceTable stackTraces;
+        private final String          hostname;
 
-        private final JsonOptions options;
-        private final JsonWriter  json;
+        public JsonReportGenerator(Writer writer, JsonOptions options, TestReportData data) {
+            this(writer, options, data, options.deduplicateStackTraces);
+        }
 
-        public JsonReportGenerator(Writer writer, JsonOptions options) {
-            this.json    = new JsonWriter(writer);
-            this.options = options;
+        public JsonReportGenerator(Writer writer, JsonOptions options, TestReportData data, boolean deduplicate) {
+            this(writer, options, data, deduplicate, HOSTNAME);
         }
 
-        public void generate(List<TestSuite> suites) {
-            var metrics = accumulatedMetrics(suites);
+        JsonReportGenerator(Writer writer, JsonOptions options, TestReportData data, boolean deduplicate, String hostname) {
+            this.json        = new JsonWriter(writer);
+            this.options     = options;
+            this.data        = data;
+            this.stackTraces = deduplicate ? new StackTraceTable() : null;
+            this.hostname    = hostname;
+        }
 
+        public void generate(Stats metrics, List<TestSuite> suites) {
             json.raw('{')
                     .field("tests").value(metrics.total).comma()
                     .field("skipped").value(metrics.skipped).comma()
                     .field("failures").value(metrics.failed).comma()
-                    .field("timestamp").value(timestamp(metrics.startTime)).comma()
-                    .field("time").raw(seconds(metrics.duration)).comma()
+                    .field("timestamp").timestamp(metrics.startTime).comma()
+                    .field("time").decimal(metrics.duration, 3).comma()
                     .field("testSuites").array(suites, this::writeTestSuite);
+            if (stackTraces != null) {
+                // Referenced by the stackTraceIndex of failures
+                json.comma()
+                        .field("stackTraces").array(stackTraces.getStackTraces(), json::value);
+            }
             json.raw('}');
         }
 
-        private void writeTestSuite(TestSuite suite) {
+        /**
+         * Generates the NDJSON lines of a suite: a line for each reportable test case, including the context of its
+         * suite, followed by a line for the suite itself.
+         */
+        public void generateLines(TestSuite suite) {
+            for (var test : data.getReportableTests(suite, options.statuses)) {
+                json.raw('{')
+                        .field("type").value("testCase").comma()
+                        .field("testSuite").value(suite, this::writeTestSuiteContext).comma()
+                        .field("testCase").value(test, this::writeTestCase);
+                json.raw("}\n");
+            }
+
             json.raw('{')
-                    .field("name").value(suite.getName()).comma()
-                    .field("displayName").value(suite.getDisplayName()).comma()
-                    .field("className").value(suite.getClassName()).comma()
-                    .field("tests").value(suite.getTotal()).comma()
-                    .field("skipped").value(suite.getSkipped()).comma()
-                    .field("failures").value(suite.getFailed()).comma()
-                    .field("timestamp").value(timestamp(suite.getStartTime())).comma()
-                    .field("time").raw(seconds(suite.getDuration())).comma()
-                    .field("hostname").value(HOSTNAME).comma()
-                    .field("stderr").value(suite.getStdErr()).comma()
-                    .field("stdout").value(suite.getStdOut()).comma()
-                    .field("testCases").array(suite.getTests().stream()
-                            .filter(this::isReportable).toList(), this::writeTestCase);
-            json.raw('}');
+                    .field("type").value("testSuite").comma()
+                    .field("testSuite").raw('{').value(suite, this::writeTestSuiteFields).raw('}');
+            json.raw("}\n");
         }
 
-        private String timestamp(long result) {
-            return new Date(result)
-                    .toInstant()
-                    .atOffset(ZoneOffset.of("Z"))
-                    .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        /**
+         * Generates the NDJSON trailer line carrying the totals of all suites
+         */
+        public void generateTrailer(Stats metrics, int suites) {
+            json.raw('{')
+                    .field("type").value("summary").comma()
+                    .field("tests").value(metrics.total).comma()
+                    .field("skipped").value(metrics.skipped).comma()
+                    .field("failures").value(metrics.failed).comma()
+                    .field("timestamp").timestamp(metrics.startTime).comma()
+                    .field("time").decimal(metrics.duration, 3).comma()
+                    .field("testSuites").value(suites);
+            json.raw("}\n");
         }
 
-        private String seconds(long duration) {
-            long seconds = duration / 1000;
-            long millis  = duration % 1000;
-
-            var output = new StringBuilder(19 + 4);
-            output.append(seconds).append('.');
-            if (millis < 10) {
-                output.append("00");
-            } else if (millis < 100) {
-                output.append("0");
-            }
-            output.append(millis);
+        private void writeTestSuite(TestSuite suite) {
+            json.raw('{');
+            writeTestSuiteFields(suite);
+            json.comma()
+                    .field("testCases").array(data.getReportableTests(suite, options.statuses), this::writeTestCase);
+            json.raw('}');
+        }
 
-            return output.toString();
+        private void writeTestSuiteFields(TestSuite suite) {
+            json.field("name").value(suite.getName()).comma()
+                    .field("displayName").value(suite.getDisplayName()).comma()
+                    .field("className").value(suite.getClassName()).comma()
+                    .field("tests").value(suite.getTotal()).comma()
+                    .field("skipped").value(suite.getSkipped()).comma()
+                    .field("failures").value(suite.getFailed()).comma()
+                    .field("timestamp").timestamp(suite.startTime).comma()
+                    .field("time").decimal(suite.getDuration(), 3).comma()
+                    .field("hostname").value(hostname).comma()
+                    .field("stderr").joined(suite.getStdErrOutput().getAttempts()).comma()
+                    .field("stdout").joined(suite.getStdOutOutput().getAttempts());
         }
 
-        private boolean isReportable(TestCase test) {
-            return options.isReportable(test.getStatus());
+        private void writeTestSuiteContext(TestSuite suite) {
+            json.raw('{')
+                    .field("name").value(suite.getName()).comma()
+                    .field("displayName").value(suite.getDisplayName()).comma()
+                    .field("className").value(suite.getClassName()).comma()
+                    .field("timestamp").timestamp(suite.startTime).comma()
+                    .field("hostname").value(hostname);
+            json.raw('}');
         }
 
         private void writeTestCase(TestCase test) {
@@ -178,9 +230,9 @@ public class JsonTestReport extends TestReport {
                     .field("className").value(test.getClassName()).comma()
                     .field("file").value(test.getSourceFile()).comma()
                     .field("url").value(test.getUrl()).comma()
-                    .field("time").raw(seconds(test.getDuration())).comma()
-                    .field("stderr").value(test.getStdErr()).comma()
-                    .field("stdout").value(test.getStdOut()).comma()
+                    .field("time").decimal(test.getDuration(), 3).comma()
+                    .field("stderr").joined(test.getStdErrOutput().getAttempts()).comma()
+                    .field("stdout").joined(test.getStdOutOutput().getAttempts()).comma()
                     .field("failures").array(test.getFailures(), test, this::writeFailure);
             json.raw('}');
         }
@@ -189,9 +241,13 @@ public class JsonTestReport extends TestReport {
             json.raw('{')
                     .field("message").value(failure.getMessage()).comma()
                     .field("className").value(test.getClassName()).comma()
-                    .field("line").value(failure.getLineNumber()).comma()
-                    .field("stackTrace").value(failure.getStackTrace()).comma()
-                    .field("type").value(failure.getType().name().toLowerCase()).comma()
+                    .field("line").value(failure.getLineNumber()).comma();
+            if (stackTraces != null) {
+                json.field("stackTraceIndex").value(stackTraces.add(failure.getStackTrace()).index()).comma();
+            } else {
+                json.field("stackTrace").value(failure.getStackTrace()).comma();
+            }
+            json.field("type").value(failure.getType().name().toLowerCase()).comma()
                     .field("expected").value(getExpected(failure)).comma()
                     .field("actual").value(getActual(failure)).comma()
                     .field("causes").array(failure.getCauses(), test, this::writeFailure);
@@ -230,13 +286,18 @@ public class JsonTestReport extends TestReport {
     static class JsonOptions extends Options {
 
         boolean aggregated;
+        boolean deduplicateStackTraces;
+        boolean ndjson;
 
         JsonOptions(
                 JsonReportSettings settings,
-                DirectoryProperty outputDir) {
-            super(settings, ".json", outputDir.getAsFile().get().toPath());
+                DirectoryProperty outputDir,
+                Compression compression) {
+            super(settings, ".json" + compression.getFileExtension(), outputDir.getAsFile().get().toPath());
 
-            this.aggregated = settings.getAggregateJsonReports().get();
+            this.aggregated             = settings.getAggregateJsonReports().get();
+            this.deduplicateStackTraces = settings.getDeduplicateStackTraces().get();
+            this.ndjson                 = settings.getNdjson().get();
         }
     }
 
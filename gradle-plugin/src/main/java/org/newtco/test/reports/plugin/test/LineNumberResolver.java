@@ -0,0 +1,386 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.newtco.test.reports.plugin.test;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import org.newtco.test.util.JavaMethodScanner;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Resolves the line numbers of failing tests, either from the stack trace of the failure or from the declaration of
+ * the test method in its source file.
+ * <p>
+ * Each source file is indexed once per test task by {@link JavaMethodScanner}, mapping method names to their
+ * declaration lines. Indexes are also persisted to a cache file keyed by the hash of the source content, so that
+ * unchanged sources are not scanned again by later builds. JavaParser is only used when the index cannot tell apart
+ * overloads of a test method.
+ */
+class LineNumberResolver {
+
+    private static final String CACHE_HEADER      = "line-numbers-v2";
+    private static final int    MAX_CACHE_ENTRIES = 4096;
+    private static final int    AMBIGUOUS         = -2;
+
+    private final Path                     cacheFile;
+    private final Map<String, SourceIndex> cached;
+    private final Map<String, SourceIndex> used;
+    private final Map<Path, SourceIndex>   sources;
+
+    /**
+     * @param cacheFile the file persisting source indexes across builds, or null to not persist them
+     */
+    LineNumberResolver(@Nullable Path cacheFile) {
+        this.cacheFile = cacheFile;
+        this.cached    = loadCache(cacheFile);
+        this.used      = new ConcurrentHashMap<>();
+        this.sources   = new ConcurrentHashMap<>();
+    }
+
+    public int getFailureLineNumber(String className, String testName, String stackTrace,
+                                    Path sourceFile) {
+        // Test names may include parameter types and an invocation index, such as "test(int, String)[1]"
+        var methodName     = testName;
+        var parameterTypes = (List<String>) null;
+
+        int open  = testName.indexOf('(');
+        int close = testName.indexOf(')', open + 1);
+        if (open > 0 && close != -1) {
+            methodName     = testName.substring(0, open);
+            parameterTypes = getParameterTypes(testName.substring(open + 1, close));
+        }
+
+        int line = -1;
+
+        if (!stackTrace.isEmpty()) {
+            line = getLineNumberFromStackTrace(className + "." + methodName, stackTrace);
+        }
+
+        if (line == -1 && sourceFile != null) {
+            line = getLineNumberFromSourceFile(methodName, parameterTypes, sourceFile);
+        }
+
+        return line;
+    }
+
+    private static List<String> getParameterTypes(String parameters) {
+        var types = new ArrayList<String>();
+        for (var type : parameters.split(",")) {
+            type = type.trim();
+            if (!type.isEmpty()) {
+                types.add(type.substring(type.lastIndexOf('.') + 1));
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Writes the indexes of the source files used by this build to the cache file, followed by previously cached
+     * indexes up to the cache size limit.
+     */
+    public void saveCache() {
+        if (cacheFile == null || cached.keySet().containsAll(used.keySet())) {
+            return;
+        }
+
+        var entries = new LinkedHashMap<String, SourceIndex>(used);
+        for (var entry : cached.entrySet()) {
+            if (entries.size() >= MAX_CACHE_ENTRIES) {
+                break;
+            }
+            entries.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            try (var writer = Files.newBufferedWriter(cacheFile)) {
+                writer.write(CACHE_HEADER);
+                writer.write('\n');
+                for (var entry : entries.entrySet()) {
+                    writer.write(entry.getKey());
+                    writer.write(' ');
+                    entry.getValue().write(writer);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException ex) {
+            // The cache is only an optimization
+        }
+    }
+
+    private static int getLineNumberFromStackTrace(String className, String stackTrace) {
+        int start = stackTrace.indexOf(className);
+        if (start != -1) {
+            // Next we have (filename.java:X)
+            start = stackTrace.indexOf(":", start);
+            if (start != -1) {
+                int term = stackTrace.indexOf(")", start + 1);
+                if (term != -1) {
+                    return Integer.parseInt(stackTrace, start + 1, term, 10);
+                }
+            }
+        }
+        return -1;
+    }
+
+    private int getLineNumberFromSourceFile(String methodName, List<String> parameterTypes, Path sourceFile) {
+        int line = sources.computeIfAbsent(sourceFile, this::indexSourceFile)
+                .getLineNumber(methodName, parameterTypes);
+
+        if (line == AMBIGUOUS) {
+            try {
+                line = ParserFallback.getLineNumber(Files.readString(sourceFile), methodName, parameterTypes);
+            } catch (IOException e) {
+                line = -1;
+            }
+        }
+
+        return line;
+    }
+
+    private SourceIndex indexSourceFile(Path sourceFile) {
+        try {
+            var content = Files.readAllBytes(sourceFile);
+            var hash    = hash(content);
+
+            var index = cached.get(hash);
+            if (index == null) {
+                index = SourceIndex.scan(new String(content, StandardCharsets.UTF_8));
+            }
+            used.put(hash, index);
+
+            return index;
+        } catch (IOException e) {
+            return SourceIndex.EMPTY;
+        }
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", ex);
+        }
+    }
+
+    private static Map<String, SourceIndex> loadCache(@Nullable Path cacheFile) {
+        var cache = new HashMap<String, SourceIndex>();
+        if (cacheFile == null || !Files.isRegularFile(cacheFile)) {
+            return cache;
+        }
+
+        try (var reader = Files.newBufferedReader(cacheFile)) {
+            if (!CACHE_HEADER.equals(reader.readLine())) {
+                return cache;
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ');
+                if (space != -1) {
+                    cache.put(line.substring(0, space), SourceIndex.read(line.substring(space + 1)));
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            // Ignore a corrupt or unreadable cache, it is rewritten once the build completes
+            cache.clear();
+        }
+
+        return cache;
+    }
+
+    /**
+     * Declaration lines of the methods within a source file
+     */
+    static class SourceIndex {
+
+        static final SourceIndex EMPTY = new SourceIndex(Map.of());
+
+        private final Map<String, List<Declaration>> methods;
+
+        SourceIndex(Map<String, List<Declaration>> methods) {
+            this.methods = methods;
+        }
+
+        /**
+         * Returns the line of the only method with the given name, else of the only such method with the given
+         * parameter types, else of the only such method annotated with {@code @Test}. Returns {@link #AMBIGUOUS} if
+         * overloads can not be told apart and -1 if there is no such method.
+         *
+         * @param methodName     the name of the method
+         * @param parameterTypes the simple names of the parameter types, or null if unknown
+         */
+        int getLineNumber(String methodName, @Nullable List<String> parameterTypes) {
+            var declarations = methods.get(methodName);
+            if (declarations == null) {
+                return -1;
+            }
+            if (declarations.size() == 1) {
+                return declarations.get(0).line();
+            }
+
+            int line = parameterTypes != null
+                    ? getOnlyLine(declarations, declaration -> declaration.parameterTypes().equals(parameterTypes))
+                    : AMBIGUOUS;
+            if (line == AMBIGUOUS) {
+                line = getOnlyLine(declarations, Declaration::test);
+            }
+            return line;
+        }
+
+        private static int getOnlyLine(List<Declaration> declarations, Predicate<Declaration> filter) {
+            int line = AMBIGUOUS;
+            for (var declaration : declarations) {
+                if (filter.test(declaration)) {
+                    if (line != AMBIGUOUS) {
+                        return AMBIGUOUS;
+                    }
+                    line = declaration.line();
+                }
+            }
+            return line;
+        }
+
+        static SourceIndex scan(String source) {
+            var methods = new HashMap<String, List<Declaration>>();
+            for (var method : JavaMethodScanner.scan(source)) {
+                methods.computeIfAbsent(method.name(), unused -> new ArrayList<>())
+                        .add(new Declaration(method.line(), method.test(), method.parameterTypes()));
+            }
+            return new SourceIndex(methods);
+        }
+
+        /**
+         * Reads an index in the format {@code name=line,@line:type|type;name=line} where test methods are prefixed
+         * with '@'
+         */
+        static SourceIndex read(String text) {
+            var methods = new HashMap<String, List<Declaration>>();
+            for (var method : text.split(";")) {
+                int equals = method.indexOf('=');
+                if (equals == -1) {
+                    continue;
+                }
+
+                var declarations = new ArrayList<Declaration>();
+                for (var declaration : method.substring(equals + 1).split(",")) {
+                    var test  = declaration.startsWith("@");
+                    int colon = declaration.indexOf(':');
+                    var line  = declaration.substring(test ? 1 : 0, colon == -1 ? declaration.length() : colon);
+                    var types = colon == -1
+                            ? List.<String>of()
+                            : List.of(declaration.substring(colon + 1).split("\\|"));
+                    declarations.add(new Declaration(Integer.parseInt(line), test, types));
+                }
+                methods.put(method.substring(0, equals), declarations);
+            }
+            return new SourceIndex(methods);
+        }
+
+        void write(Appendable out) throws IOException {
+            var separator = "";
+            for (var method : methods.entrySet()) {
+                out.append(separator).append(method.getKey()).append('=');
+                var comma = "";
+                for (var declaration : method.getValue()) {
+                    out.append(comma);
+                    if (declaration.test()) {
+                        out.append('@');
+                    }
+                    out.append(Integer.toString(declaration.line()));
+                    if (!declaration.parameterTypes().isEmpty()) {
+                        out.append(':').append(String.join("|", declaration.parameterTypes()));
+                    }
+                    comma = ",";
+                }
+                separator = ";";
+            }
+        }
+    }
+
+    record Declaration(int line, boolean test, List<String> parameterTypes) {
+    }
+
+    /**
+     * Locates overloaded methods with a full parse of the source, which is only loaded when needed
+     */
+    private static class ParserFallback {
+
+        // JavaParser instances are not thread-safe, and suites may be finalized in parallel
+        private static final ThreadLocal<JavaParser> PARSER = ThreadLocal.withInitial(() -> new JavaParser(
+                new ParserConfiguration().setLanguageLevel(ParserConfiguration.LanguageLevel.RAW)));
+
+        static int getLineNumber(String source, String methodName, @Nullable List<String> parameterTypes) {
+            var compilationUnit = PARSER.get().parse(source).getResult().orElse(null);
+            if (null == compilationUnit) {
+                return -1;
+            }
+
+            var methods = compilationUnit.findAll(MethodDeclaration.class,
+                    method -> method.getNameAsString().equals(methodName));
+            if (parameterTypes != null) {
+                var matching = methods.stream()
+                        .filter(method -> parameterTypes.equals(getParameterTypes(method)))
+                        .toList();
+                if (matching.size() == 1) {
+                    return getLine(matching.get(0));
+                }
+            }
+
+            var tests = methods.stream()
+                    .filter(method -> method.isAnnotationPresent("Test"))
+                    .toList();
+            return tests.size() == 1 ? getLine(tests.get(0)) : -1;
+        }
+
+        private static List<String> getParameterTypes(MethodDeclaration method) {
+            var types = new ArrayList<String>();
+            for (Parameter parameter : method.getParameters()) {
+                var type        = parameter.getType();
+                var elementType = type.getElementType();
+                var name        = elementType instanceof ClassOrInterfaceType classType
+                        ? classType.getNameAsString()
+                        : elementType.asString();
+                types.add(name + "[]".repeat(type.getArrayLevel() + (parameter.isVarArgs() ? 1 : 0)));
+            }
+            return types;
+        }
+
+        private static int getLine(MethodDeclaration method) {
+            return method.getName().getBegin().map(p -> p.line).orElse(-1);
+        }
+    }
+}
@@ -19,14 +19,15 @@ package org.newtco.test.reports.plugin.test;
 import org.newtco.test.reports.api.test.TestSettings;
 import org.newtco.test.reports.api.test.model.TestSuite;
 import org.newtco.test.templates.TemplateInstantiator;
+import org.newtco.test.util.Compression;
 import org.newtco.test.util.Text;
 import org.gradle.api.GradleException;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.tasks.testing.Test;
 
-import java.nio.file.Files;
-import java.nio.file.StandardOpenOption;
+import java.io.Writer;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.List;
 import java.util.Objects;
@@ -41,18 +42,22 @@ public class MarkdownTestReport extends TestReport {
     private final Logger                 logger;
     private final String                 projectName;
     private final String                 taskName;
+    private final TestSettings           templateSettings;
 
     public MarkdownTestReport(
             TemplateInstantiator instantiator,
             Test test,
             MarkdownReportSettings settings,
-            DirectoryProperty outputDir) {
-        this.settings     = settings;
-        this.instantiator = instantiator;
-        this.options      = new MarkdownOptions(settings, outputDir);
-        this.logger       = test.getLogger();
-        this.projectName  = test.getProject().getName();
-        this.taskName     = test.getName();
+            DirectoryProperty outputDir,
+            Compression compression) {
+        this.settings         = settings;
+        this.instantiator     = instantiator;
+        this.options          = new MarkdownOptions(settings, outputDir, compression);
+        this.logger           = test.getLogger();
+        this.projectName      = test.getProject().getName();
+        this.taskName         = test.getName();
+        // Only read by templates, so shared by the reports of all suites
+        this.templateSettings = getTemplateSettings();
     }
 
     private String getTemplateName() {
@@ -61,31 +66,34 @@ public class MarkdownTestReport extends TestReport {
     }
 
     @Override
-    public void generateReport(List<TestSuite> suites) {
-        logger.debug("Generating Markdown test report for {}:{}", projectName, taskName);
+    Options getOptions() {
+        return options;
+    }
 
-        if (settings.getAggregateReports().getOrElse(false)) {
-            // Merges all suites into a single report
-            createAggregatedReports(suites);
-        } else {
-            // Creates individual reports per test suite
-            createIndividualReports(suites);
-        }
+    @Override
+    boolean isAggregated() {
+        return settings.getAggregateReports().getOrElse(false);
     }
 
-    private void createAggregatedReports(List<TestSuite> suites) {
+    @Override
+    void writeAggregatedReport(TestReportData data, ReportFiles files) {
+        logger.debug("Generating Markdown test report for {}:{}", projectName, taskName);
+
         // TEST-(Summary|Detailed).md
         var reportFile = options.resolveReportFile(options.getName().toLowerCase());
 
-        try (var writer = Files.newBufferedWriter(reportFile, StandardOpenOption.CREATE)) {
+        try {
             var start = Instant.now();
-            var template = instantiator.createTemplate(getTemplateName(),
-                    writer,
-                    projectName + ":" + taskName,
-                    accumulatedMetrics(suites),
-                    suites,
-                    getTemplateSettings());
-            template.render();
+            files.write(reportFile, writer -> {
+                var template = instantiator.createTemplate(getTemplateName(),
+                        writer,
+                        projectName + ":" + taskName,
+                        data.getMetrics(),
+                        data.getSuites(),
+                        templateSettings);
+                template.render();
+                template.flush();
+            });
 
             var end = Instant.now();
 
@@ -99,31 +107,51 @@ public class MarkdownTestReport extends TestReport {
         }
     }
 
-    private void createIndividualReports(List<TestSuite> suites) {
-        for (var suite : suites) {
-            var suiteName  = Objects.requireNonNullElse(suite.getClassName(), suite.getName());
-            var reportFile = options.resolveReportFile(options.getName().toLowerCase() + "-" + suiteName);
+    @Override
+    Path resolveSuiteReportFile(TestSuite suite) {
+        var suiteName = Objects.requireNonNullElse(suite.getClassName(), suite.getName());
+        return options.resolveReportFile(options.getName().toLowerCase() + "-" + suiteName);
+    }
+
+    @Override
+    void writeSuiteReport(TestSuite suite, TestReportData data, Path reportFile, ReportFiles files) throws Exception {
+        // Durations differ between runs, so the report is compared without them
+        files.write(reportFile,
+                writer -> renderSuiteReport(suite, writer),
+                writer -> renderSuiteReport(withoutTimings(suite), writer));
+    }
 
-            try (var writer = Files.newBufferedWriter(reportFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
-                var start = Instant.now();
-                var template = instantiator.createTemplate(getTemplateName(),
-                        writer,
-                        projectName + ":" + taskName + " - " + suite.getName(),
-                        suite,
-                        List.of(suite),
-                        getTemplateSettings());
-                template.render();
-                var end = Instant.now();
+    private void renderSuiteReport(TestSuite suite, Writer writer) throws Exception {
+        var template = instantiator.createTemplate(getTemplateName(),
+                writer,
+                projectName + ":" + taskName + " - " + suite.getName(),
+                suite,
+                List.of(suite),
+                templateSettings);
+        template.render();
+        template.flush();
+    }
 
+    @Override
+    RuntimeException completeSuiteReports(List<ReportOutcome> outcomes) {
+        Exception failure = null;
+        int       failed  = 0;
+        for (var outcome : outcomes) {
+            if (outcome.failed()) {
+                logger.error("Failed to write Markdown test report {}", outcome.file(), outcome.failure());
+                failure = failure != null ? failure : outcome.failure();
+                failed++;
+            } else {
                 logger.info("Finished generating individual {} markdown results ({}) to: file:///{}",
                         options.name.toLowerCase(),
-                        Text.Format.duration(start, end),
-                        reportFile.toString().replace('\\', '/'));
-
-            } catch (Exception ex) {
-                throw new GradleException("Failed to write Markdown test report", ex);
+                        Text.Format.duration(outcome.start(), outcome.end()),
+                        outcome.file().toString().replace('\\', '/'));
             }
         }
+
+        return failure != null
+                ? new GradleException("Failed to write " + failed + " Markdown test report(s)", failure)
+                : null;
     }
 
     /**
@@ -131,11 +159,12 @@ public class MarkdownTestReport extends TestReport {
      */
     private TestSettings getTemplateSettings() {
         var markdown = new TestSettings();
-        markdown.aggregateReport     = settings.getAggregateReports().get();
-        markdown.includeSystemErrLog = settings.getIncludeSystemErrLog().get();
-        markdown.includeSystemOutLog = settings.getIncludeSystemOutLog().get();
-        markdown.outputPerTestCase   = settings.getOutputPerTestCase().get();
-        markdown.statuses            = Set.copyOf(settings.getTestOutcomes().get());
+        markdown.aggregateReport        = settings.getAggregateReports().get();
+        markdown.includeSystemErrLog    = settings.getIncludeSystemErrLog().get();
+        markdown.includeSystemOutLog    = settings.getIncludeSystemOutLog().get();
+        markdown.outputPerTestCase      = settings.getOutputPerTestCase().get();
+        markdown.deduplicateStackTraces = settings.getDeduplicateStackTraces().get();
+        markdown.statuses               = Set.copyOf(settings.getTestOutcomes().get());
         return markdown;
     }
 
@@ -148,9 +177,10 @@ public class MarkdownTestReport extends TestReport {
 
         MarkdownOptions(
                 MarkdownReportSettings settings,
-                DirectoryProperty outputDir) {
+                DirectoryProperty outputDir,
+                Compression compression) {
 
-            super(settings, ".md", outputDir.getAsFile().get().toPath());
+            super(settings, ".md" + compression.getFileExtension(), outputDir.getAsFile().get().toPath());
 
             this.name = settings.getName();
         }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.newtco.test.reports.plugin.test;
+
+import org.newtco.test.reports.api.test.model.Stats;
+import org.newtco.test.reports.api.test.model.TestSuite;
+import org.newtco.test.reports.plugin.test.JsonTestReport.JsonOptions;
+import org.newtco.test.reports.plugin.test.JsonTestReport.JsonReportGenerator;
+import org.newtco.test.util.Compression;
+import org.newtco.test.util.Utf8ChannelWriter;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.tasks.testing.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * NdjsonTestReport writes test results as newline-delimited JSON to TEST.ndjson. Unlike the other reports, the file is
+ * written progressively: the lines of each suite are appended as the suite completes and a trailer line carrying the
+ * totals is appended once all tests have run. A file without a trailer is the report of a run which did not complete.
+ * <p>
+ * Lines are self-contained, so stack traces are never deduplicated. A suite whose class runs again, such as when its
+ * failed tests are retried, is appended again with the results of all runs: its later lines supersede the earlier ones
+ * and it is counted once in the trailer.
+ */
+public class NdjsonTestReport {
+
+    private final JsonOptions         options;
+    private final Path                reportFile;
+    private final Logger              logger;
+    // Metrics of each appended suite by suite id, the last appended lines of a suite replace its earlier ones
+    private final Map<Integer, Stats> appended;
+
+    public NdjsonTestReport(Test test, JsonReportSettings settings, DirectoryProperty outputDir) {
+        // Never compressed, so the report can be read while tests run
+        this.options    = new JsonOptions(settings, outputDir, Compression.NONE);
+        this.reportFile = options.outputDir.resolve("TEST.ndjson");
+        this.logger     = test.getLogger();
+        this.appended   = new LinkedHashMap<>();
+    }
+
+    /**
+     * Replaces the report of a previous run with an empty report
+     */
+    public synchronized void start() {
+        appended.clear();
+        write(List.of(), generator -> {
+        }, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Appends the lines of completed suites to the report
+     */
+    public synchronized void append(List<TestSuite> completed) {
+        if (completed.isEmpty()) {
+            return;
+        }
+
+        write(completed, generator -> {
+            for (var suite : completed) {
+                generator.generateLines(suite);
+            }
+        }, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Appends the trailer line with the totals of all appended suites
+     */
+    public synchronized void complete() {
+        var metrics = TestReport.accumulatedMetrics(List.copyOf(appended.values()));
+        write(List.of(), generator -> generator.generateTrailer(metrics, appended.size()),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        logger.info("Finished generating NDJSON results of {} suites to: file:///{}",
+                appended.size(),
+                reportFile.toString().replace('\\', '/'));
+    }
+
+    private void write(List<TestSuite> completed, Consumer<JsonReportGenerator> lines, StandardOpenOption... openOptions) {
+        var data = TestReportData.of(completed, List.of(options.statuses));
+        try (var writer = Utf8ChannelWriter.open(reportFile, openOptions)) {
+            lines.accept(new JsonReportGenerator(writer, options, data, false));
+        } catch (IOException | UncheckedIOException ex) {
+            logger.error("Failed to write report {}",
+                    reportFile,
+                    ex);
+            return;
+        }
+
+        for (var suite : completed) {
+            // Copied, as a suite streamed again is updated in place
+            appended.put(suite.id, TestReport.accumulatedMetrics(List.of(suite)));
+        }
+    }
+}
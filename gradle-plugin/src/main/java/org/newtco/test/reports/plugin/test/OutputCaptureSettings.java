@@ -0,0 +1,104 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.newtco.test.reports.plugin.test;
+
+import org.newtco.test.util.SpillBuffer;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+
+import javax.inject.Inject;
+import java.nio.file.Path;
+
+/**
+ * Settings controlling how much test output is held in memory while tests are running.
+ * <p>
+ * When bounded capture is enabled, output of a single test or suite exceeding {@link #getMaxTestCaptureSize()}, or
+ * output exceeding {@link #getMaxTaskCaptureSize()} across the whole test task, is moved to temporary files. Reports
+ * then include only the first {@link #getHeadSize()} and last {@link #getTailSize()} bytes of such output.
+ */
+public abstract class OutputCaptureSettings {
+
+    @Inject
+    public OutputCaptureSettings() {
+        getBounded().convention(false);
+        getMaxTestCaptureSize().convention(1024L * 1024L);
+        getMaxTaskCaptureSize().convention(64L * 1024L * 1024L);
+        getHeadSize().convention(16 * 1024);
+        getTailSize().convention(16 * 1024);
+    }
+
+    /**
+     * Whether the captured output is bounded in memory. When disabled, all output is held in memory until the reports
+     * are generated.
+     * <p>
+     * Default value: false
+     */
+    @Input
+    public abstract Property<Boolean> getBounded();
+
+    /**
+     * Number of characters of output a single test or suite holds in memory before spilling to disk.
+     * <p>
+     * Default value: 1 MiB
+     */
+    @Input
+    public abstract Property<Long> getMaxTestCaptureSize();
+
+    /**
+     * Number of characters of output held in memory across all tests of the task before spilling to disk.
+     * <p>
+     * Default value: 64 MiB
+     */
+    @Input
+    public abstract Property<Long> getMaxTaskCaptureSize();
+
+    /**
+     * Number of bytes from the start of spilled output included in the reports.
+     * <p>
+     * Default value: 16 KiB
+     */
+    @Input
+    public abstract Property<Integer> getHeadSize();
+
+    /**
+     * Number of bytes from the end of spilled output included in the reports.
+     * <p>
+     * Default value: 16 KiB
+     */
+    @Input
+    public abstract Property<Integer> getTailSize();
+
+    /**
+     * Creates the allocator for output buffers according to these settings.
+     *
+     * @param spillDirectory the directory where spilled output is written
+     * @return the allocator for a test task
+     */
+    public SpillBuffer.Allocator createAllocator(Path spillDirectory) {
+        if (!getBounded().get()) {
+            return SpillBuffer.Allocator.unbounded();
+        }
+
+        return new SpillBuffer.Allocator(
+                getMaxTaskCaptureSize().get(),
+                getMaxTestCaptureSize().get(),
+                getHeadSize().get(),
+                getTailSize().get(),
+                spillDirectory);
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.newtco.test.reports.plugin.test;
+
+import org.newtco.test.util.Compression;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Writes report files, either directly or incrementally.
+ * <p>
+ * Incrementally, the content hash of each report is kept in a manifest next to the reports. A report is rendered to a
+ * temporary file in the reports directory and only moved in place if its hash differs from the manifest, leaving the
+ * reports of unchanged suites untouched. Reports holding values which change on every run, such as timings, are hashed
+ * by their canonical content rendered without those values instead. Once all reports are written,
+ * {@link #complete(Predicate)} deletes the reports not written by this run and saves the manifest.
+ * <p>
+ * Either way, a report file is always replaced as a whole.
+ */
+final class ReportFiles {
+
+    /**
+     * Name of the manifest in the reports directory, not matching the names of report files
+     */
+    static final String MANIFEST_NAME = ".test-reports.manifest";
+
+    private static final Logger LOGGER = Logging.getLogger(ReportFiles.class);
+
+    private final Path                reportsDir;
+    private final Compression         compression;
+    private final Map<String, String> previous;
+    private final Map<String, String> current;
+    private final AtomicInteger       changed;
+    private final AtomicInteger       unchanged;
+
+    private ReportFiles(Path reportsDir, Compression compression, Map<String, String> previous) {
+        this.reportsDir  = reportsDir;
+        this.compression = compression;
+        this.previous    = previous;
+        this.current     = new ConcurrentHashMap<>();
+        this.changed     = new AtomicInteger();
+        this.unchanged   = new AtomicInteger();
+    }
+
+    /**
+     * Writes each report file directly, replacing any existing file
+     *
+     * @param compression the compression of the report files
+     */
+    static ReportFiles direct(Compression compression) {
+        return new ReportFiles(null, compression, Map.of());
+    }
+
+    /**
+     * Writes only the report files whose content changed since the manifest of the reports directory was saved
+     *
+     * @param reportsDir  the directory of the reports and the manifest
+     * @param compression the compression of the report files, the hashes being those of the compressed content unless
+     *                    a report has canonical content
+     */
+    static ReportFiles incremental(Path reportsDir, Compression compression) {
+        return new ReportFiles(reportsDir, compression, readManifest(reportsDir.resolve(MANIFEST_NAME)));
+    }
+
+    boolean isIncremental() {
+        return reportsDir != null;
+    }
+
+    /**
+     * Writes a report file, called concurrently for different files.
+     *
+     * @param file    the report file
+     * @param content writes the content of the report
+     * @return whether the file was written, false if incrementally its content did not change
+     */
+    boolean write(Path file, ReportContent content) throws Exception {
+        return write(file, content, null);
+    }
+
+    /**
+     * Writes a report file, called concurrently for different files. Incrementally, the report is compared by the hash
+     * of its canonical content if given, which is only rendered to compute the hash, and the content is only rendered
+     * if the canonical content changed.
+     *
+     * @param file      the report file
+     * @param content   writes the content of the report
+     * @param canonical writes the content of the report without the values which change on every run, such as timings
+     * @return whether the file was written, false if incrementally its content did not change
+     */
+    boolean write(Path file, ReportContent content, @Nullable ReportContent canonical) throws Exception {
+        if (!isIncremental()) {
+            try (var writer = compression.newWriter(file)) {
+                content.writeTo(writer);
+            }
+            return true;
+        }
+
+        var name = file.getFileName().toString();
+        var hash = (String) null;
+        if (canonical != null) {
+            var digest = sha256();
+            try (var writer = Compression.NONE.newWriter(new DigestOutputStream(OutputStream.nullOutputStream(), digest))) {
+                canonical.writeTo(writer);
+            }
+            hash = HexFormat.of().formatHex(digest.digest());
+            if (isUnchanged(file, name, hash)) {
+                return false;
+            }
+        }
+
+        var digest = sha256();
+        var temp   = Files.createTempFile(file.getParent(), ".TEST-", ".tmp");
+        try {
+            var out = Files.newOutputStream(temp);
+            try (var writer = compression.newWriter(hash == null ? new DigestOutputStream(out, digest) : out)) {
+                content.writeTo(writer);
+            }
+
+            if (hash == null) {
+                hash = HexFormat.of().formatHex(digest.digest());
+                if (isUnchanged(file, name, hash)) {
+                    return false;
+                }
+            }
+
+            move(temp, file);
+            current.put(name, hash);
+            changed.incrementAndGet();
+            return true;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Whether the report file exists with the given hash, in which case it is kept by this run
+     */
+    private boolean isUnchanged(Path file, String name, String hash) {
+        // A report written again by this run, such as that of a retried suite, is compared with its last content
+        var existing = current.get(name);
+        if (existing == null) {
+            existing = previous.get(name);
+        }
+
+        if (hash.equals(existing) && Files.exists(file)) {
+            current.put(name, hash);
+            unchanged.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Completes incremental writing, deleting the reports matching the filter which were not written by this run, such
+     * as the reports of removed suites, and saving the manifest of the reports which were.
+     *
+     * @param isReport whether a file name is the name of a report
+     */
+    void complete(Predicate<String> isReport) {
+        if (!isIncremental()) {
+            return;
+        }
+
+        int deleted = 0;
+        try (var files = Files.list(reportsDir)) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                var name = file.getFileName().toString();
+                if (isReport.test(name) && !current.containsKey(name) && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        } catch (NoSuchFileException ex) {
+            return;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        writeManifest(reportsDir.resolve(MANIFEST_NAME), current);
+
+        LOGGER.info("Incremental reports in {}: {} written, {} unchanged, {} deleted",
+                reportsDir, changed.get(), unchanged.get(), deleted);
+    }
+
+    private static Map<String, String> readManifest(Path manifest) {
+        var entries = new HashMap<String, String>();
+        try {
+            for (var line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                // <sha-256 hex> <file name>
+                var separator = line.indexOf(' ');
+                if (separator > 0) {
+                    entries.put(line.substring(separator + 1), line.substring(0, separator));
+                }
+            }
+        } catch (NoSuchFileException ex) {
+            // First incremental run
+        } catch (IOException ex) {
+            // All reports are written again, which also replaces the manifest
+            LOGGER.warn("Failed to read report manifest {}", manifest, ex);
+            entries.clear();
+        }
+        return entries;
+    }
+
+    private static void writeManifest(Path manifest, Map<String, String> entries) {
+        try {
+            var temp = Files.createTempFile(manifest.getParent(), ".TEST-", ".tmp");
+            try {
+                try (var writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                    for (var entry : new TreeMap<>(entries).entrySet()) {
+                        writer.append(entry.getValue()).append(' ').append(entry.getKey()).append('\n');
+                    }
+                }
+                move(temp, manifest);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Moves a file in place atomically, so readers of the target never see partially written content
+     */
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Content of a report file
+     */
+    @FunctionalInterface
+    interface ReportContent {
+
+        void writeTo(Writer writer) throws Exception;
+    }
+}
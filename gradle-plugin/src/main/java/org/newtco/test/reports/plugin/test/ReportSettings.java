@@ -49,6 +49,7 @@ public abstract class ReportSettings implements Named {
         }
         getOutputPerTestCase().convention(jUnitXmlReport.isOutputPerTestCase());
         getTestOutcomes().convention(Set.of(Status.FAILED));
+        getDeduplicateStackTraces().convention(false);
     }
 
     @Nonnull
@@ -89,6 +90,13 @@ public abstract class ReportSettings implements Named {
     @Input
     public abstract Property<Boolean> getOutputPerTestCase();
 
+    /**
+     * Whether failures with identical stack traces reference a single copy of the stack trace rather than each
+     * including it in the report.
+     */
+    @Input
+    public abstract Property<Boolean> getDeduplicateStackTraces();
+
     /**
      * Set of test outcomes to be included in the report.
      */
@@ -0,0 +1,790 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.newtco.test.reports.plugin.test;
+
+import org.newtco.test.reports.plugin.PluginVersion;
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.tasks.testing.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Append-only binary journal of the events received by test and output listeners, written as tests run so the results
+ * of a test task can be recreated without running the tests again, see {@link #replay(Path, TestListener)}.
+ * <p>
+ * The journal starts with a header of a magic number and the format version, followed by records. Each record is the
+ * length of the record, its type and its content. Descriptors are written once, on first use, and referenced by id
+ * afterwards. Strings are written as their UTF-8 length followed by the bytes, with a length of -1 for null.
+ * <p>
+ * Records are buffered and written to the journal file each time a suite completes, so a journal of a run that was
+ * interrupted holds the events up to the last completed suite. A record truncated by the interruption is ignored when
+ * the journal is replayed. If writing to the journal fails, the journal is closed and tests continue unaffected.
+ */
+public class TestEventJournal implements TestListener, TestOutputListener, Closeable {
+
+    private static final Logger LOGGER = Logging.getLogger(TestEventJournal.class);
+
+    private static final int MAGIC       = 0x544A524E;
+    private static final int VERSION     = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte DESCRIPTOR   = 1;
+    private static final byte BEFORE_SUITE = 2;
+    private static final byte AFTER_SUITE  = 3;
+    private static final byte BEFORE_TEST  = 4;
+    private static final byte AFTER_TEST   = 5;
+    private static final byte OUTPUT       = 6;
+
+    private static final byte ASSERTION_FAILURE       = 1;
+    private static final byte FILE_COMPARISON_FAILURE = 2;
+
+    private final Path                         path;
+    private final Map<TestDescriptor, Integer> ids;
+    private final ByteBuffer                   buffer;
+    private       ByteBuffer                   record;
+    private       FileChannel                  channel;
+    private       int                          nextId;
+
+    /**
+     * Creates the journal, replacing any previous journal at the given path
+     *
+     * @param path the path of the journal file
+     */
+    public TestEventJournal(Path path) {
+        this.path   = path;
+        this.ids    = new HashMap<>();
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.record = ByteBuffer.allocate(1024);
+
+        try {
+            Files.createDirectories(path.getParent());
+            channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to create test event journal " + path, ex);
+        }
+
+        buffer.putInt(MAGIC).putInt(VERSION);
+    }
+
+    @Override
+    public synchronized void beforeSuite(TestDescriptor descriptor) {
+        if (channel != null) {
+            int id = idOf(descriptor);
+            begin(BEFORE_SUITE);
+            putInt(id);
+            end();
+        }
+    }
+
+    @Override
+    public synchronized void afterSuite(TestDescriptor descriptor, TestResult result) {
+        if (channel != null) {
+            int id = idOf(descriptor);
+            begin(AFTER_SUITE);
+            putInt(id);
+            putResult(result);
+            end();
+            ids.remove(descriptor);
+
+            if (descriptor.getParent() == null) {
+                // The root suite completes last, nothing else is reported afterwards
+                close();
+            } else {
+                flush();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void beforeTest(TestDescriptor descriptor) {
+        if (channel != null) {
+            int id = idOf(descriptor);
+            begin(BEFORE_TEST);
+            putInt(id);
+            end();
+        }
+    }
+
+    @Override
+    public synchronized void afterTest(TestDescriptor descriptor, TestResult result) {
+        if (channel != null) {
+            int id = idOf(descriptor);
+            begin(AFTER_TEST);
+            putInt(id);
+            putResult(result);
+            end();
+            ids.remove(descriptor);
+        }
+    }
+
+    @Override
+    public synchronized void onOutput(TestDescriptor descriptor, TestOutputEvent event) {
+        if (channel != null) {
+            int id = idOf(descriptor);
+            begin(OUTPUT);
+            putInt(id);
+            putByte(event.getDestination().ordinal());
+            putString(event.getMessage());
+            end();
+        }
+    }
+
+    /**
+     * Writes any buffered records and closes the journal file
+     */
+    @Override
+    public synchronized void close() {
+        if (channel != null) {
+            flush();
+            try {
+                // Closed already if the flush failed
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (IOException ex) {
+                LOGGER.warn("Failed to close test event journal {}: {}", path, ex.getMessage());
+            } finally {
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * Replays the events of a journal to the given listener, in the order in which they were recorded. Tests and
+     * suites which did not complete, because the run was interrupted, are completed with a failed result.
+     *
+     * @param path     the path of the journal file
+     * @param listener the listener receiving the events
+     * @return true if the journal is complete, false if the run was interrupted
+     */
+    public static <T extends TestListener & TestOutputListener> boolean replay(Path path, T listener) {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var reader = new Reader(channel);
+            if (!reader.fill(8) || reader.buffer.getInt() != MAGIC) {
+                throw new GradleException("File " + path + " is not a test event journal");
+            }
+            int version = reader.buffer.getInt();
+            if (version != VERSION) {
+                throw new GradleException("Unsupported version " + version + " of test event journal " + path);
+            }
+
+            var replay = new Replay(listener);
+            while (reader.fill(4)) {
+                int length = reader.buffer.getInt(reader.buffer.position());
+                if (length <= 0 || !reader.fill(4 + length)) {
+                    // Truncated by an interrupted run
+                    break;
+                }
+
+                int start = reader.buffer.position() + 4;
+                replay.apply(reader.buffer.slice(start, length));
+                reader.buffer.position(start + length);
+            }
+
+            return replay.complete();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to read test event journal " + path, ex);
+        }
+    }
+
+    private int idOf(TestDescriptor descriptor) {
+        if (descriptor == null) {
+            return -1;
+        }
+
+        var id = ids.get(descriptor);
+        if (id == null) {
+            // Parents are written before their children, so they are known when the descriptor is replayed
+            int parentId = idOf(descriptor.getParent());
+
+            id = nextId++;
+            ids.put(descriptor, id);
+
+            begin(DESCRIPTOR);
+            putInt(id);
+            putInt(parentId);
+            putByte(descriptor.isComposite() ? 1 : 0);
+            putString(descriptor.getName());
+            putString(descriptor.getDisplayName());
+            putString(descriptor.getClassName());
+            end();
+        }
+        return id;
+    }
+
+    // meets minimum gradle version 7.6
+    @SuppressWarnings("UnstableApiUsage")
+    private void putResult(TestResult result) {
+        putByte(result.getResultType().ordinal());
+        putLong(result.getStartTime());
+        putLong(result.getEndTime());
+        putLong(result.getTestCount());
+        putLong(result.getSuccessfulTestCount());
+        putLong(result.getFailedTestCount());
+        putLong(result.getSkippedTestCount());
+        putFailures(result.getFailures());
+    }
+
+    // meets minimum gradle version 7.6
+    @SuppressWarnings("UnstableApiUsage")
+    private void putFailures(List<TestFailure> failures) {
+        putInt(failures.size());
+        for (var failure : failures) {
+            var details = failure.getDetails();
+            var file    = PluginVersion.isGradleVersionAtLeast("8.3") && details.isFileComparisonFailure();
+
+            putString(details.getMessage());
+            putString(details.getClassName());
+            putString(details.getStacktrace());
+            putByte(file ? FILE_COMPARISON_FAILURE : details.isAssertionFailure() ? ASSERTION_FAILURE : 0);
+            putString(details.getExpected());
+            putString(details.getActual());
+            if (file) {
+                putBytes(details.getExpectedContent());
+                putBytes(details.getActualContent());
+            }
+            putFailures(failure.getCauses());
+        }
+    }
+
+    private void begin(byte type) {
+        record.clear();
+        // Length is assigned once the record is complete
+        record.putInt(0).put(type);
+    }
+
+    private void end() {
+        record.putInt(0, record.position() - 4);
+        record.flip();
+
+        if (record.remaining() > buffer.remaining()) {
+            flush();
+        }
+        if (channel == null) {
+            return;
+        }
+
+        if (record.remaining() > buffer.remaining()) {
+            // Larger than the buffer, such as large output, written directly
+            write(record);
+        } else {
+            buffer.put(record);
+        }
+    }
+
+    private void flush() {
+        buffer.flip();
+        if (channel != null) {
+            write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void write(ByteBuffer source) {
+        try {
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to write test event journal {}, journal is incomplete: {}", path, ex.getMessage());
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Already failed
+            }
+            channel = null;
+        }
+    }
+
+    private void ensure(int size) {
+        if (record.remaining() < size) {
+            var grown = ByteBuffer.allocate(Math.max(record.capacity() * 2, record.position() + size));
+            grown.put(record.flip());
+            record = grown;
+        }
+    }
+
+    private void putByte(int value) {
+        ensure(1);
+        record.put((byte) value);
+    }
+
+    private void putInt(int value) {
+        ensure(4);
+        record.putInt(value);
+    }
+
+    private void putLong(long value) {
+        ensure(8);
+        record.putLong(value);
+    }
+
+    private void putString(String value) {
+        putBytes(value != null ? value.getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    private void putBytes(byte[] value) {
+        if (value == null) {
+            putInt(-1);
+        } else {
+            ensure(4 + value.length);
+            record.putInt(value.length).put(value);
+        }
+    }
+
+    private static String getString(ByteBuffer body) {
+        var bytes = getBytes(body);
+        return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
+
+    private static byte[] getBytes(ByteBuffer body) {
+        int length = body.getInt();
+        if (length < 0) {
+            return null;
+        }
+
+        var bytes = new byte[length];
+        body.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Buffered reading of the journal file, with records available from the position of the buffer
+     */
+    private static final class Reader {
+
+        final FileChannel channel;
+        ByteBuffer        buffer;
+
+        Reader(FileChannel channel) {
+            this.channel = channel;
+            this.buffer  = ByteBuffer.allocate(BUFFER_SIZE).flip();
+        }
+
+        /**
+         * Ensures the given number of bytes are available in the buffer, returning false if the end of the file is
+         * reached first
+         */
+        boolean fill(int size) throws IOException {
+            if (buffer.remaining() >= size) {
+                return true;
+            }
+
+            if (size > buffer.capacity()) {
+                buffer = ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2)).put(buffer);
+            } else {
+                buffer.compact();
+            }
+
+            while (buffer.position() < size) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+
+            return buffer.remaining() >= size;
+        }
+    }
+
+    /**
+     * Recreates the listener events from the journal records
+     */
+    private static final class Replay {
+
+        final TestListener                    listener;
+        final TestOutputListener              outputListener;
+        final Map<Integer, JournalDescriptor> descriptors;
+        final Set<JournalDescriptor>          running;
+        long                                  lastTime;
+
+        <T extends TestListener & TestOutputListener> Replay(T listener) {
+            this.listener       = listener;
+            this.outputListener = listener;
+            this.descriptors    = new HashMap<>();
+            this.running        = new LinkedHashSet<>();
+        }
+
+        void apply(ByteBuffer body) {
+            byte type = body.get();
+            switch (type) {
+                case DESCRIPTOR -> {
+                    int id        = body.getInt();
+                    int parentId  = body.getInt();
+                    var composite = body.get() != 0;
+                    descriptors.put(id, new JournalDescriptor(
+                            getString(body),
+                            getString(body),
+                            getString(body),
+                            composite,
+                            descriptors.get(parentId)));
+                }
+                case BEFORE_SUITE -> {
+                    var descriptor = descriptors.get(body.getInt());
+                    running.add(descriptor);
+                    listener.beforeSuite(descriptor);
+                }
+                case AFTER_SUITE -> {
+                    var descriptor = descriptors.remove(body.getInt());
+                    var result     = getResult(body);
+                    running.remove(descriptor);
+                    listener.afterSuite(descriptor, result);
+                }
+                case BEFORE_TEST -> {
+                    var descriptor = descriptors.get(body.getInt());
+                    running.add(descriptor);
+                    listener.beforeTest(descriptor);
+                }
+                case AFTER_TEST -> {
+                    var descriptor = descriptors.remove(body.getInt());
+                    var result     = getResult(body);
+                    completeTest(descriptor, result);
+                }
+                case OUTPUT -> {
+                    var descriptor  = descriptors.get(body.getInt());
+                    var destination = TestOutputEvent.Destination.values()[body.get()];
+                    outputListener.onOutput(descriptor, new JournalOutputEvent(destination, getString(body)));
+                }
+                default -> {
+                    // Unknown record, skipped
+                }
+            }
+        }
+
+        /**
+         * Completes the tests and suites which were still running when the journal ended
+         *
+         * @return true if all tests and suites had completed
+         */
+        boolean complete() {
+            if (running.isEmpty()) {
+                return true;
+            }
+
+            // Children start after their parents, so completing in reverse completes children first
+            var incomplete = new ArrayList<>(running);
+            Collections.reverse(incomplete);
+            for (var descriptor : incomplete) {
+                if (descriptor.isComposite()) {
+                    running.remove(descriptor);
+                    listener.afterSuite(descriptor, new JournalResult(
+                            TestResult.ResultType.FAILURE,
+                            descriptor.startTime > 0 ? descriptor.startTime : lastTime,
+                            lastTime,
+                            descriptor.tests,
+                            descriptor.tests - descriptor.failed - descriptor.skipped,
+                            descriptor.failed,
+                            descriptor.skipped,
+                            List.of()));
+                } else {
+                    completeTest(descriptor, new JournalResult(
+                            TestResult.ResultType.FAILURE,
+                            lastTime,
+                            lastTime,
+                            1, 0, 1, 0,
+                            List.of(new JournalFailure(
+                                    new JournalFailureDetails("The test did not complete, the test run was interrupted",
+                                            null, "", false, false, null, null, null, null),
+                                    List.of()))));
+                }
+            }
+            return false;
+        }
+
+        private void completeTest(JournalDescriptor descriptor, TestResult result) {
+            running.remove(descriptor);
+            lastTime = Math.max(lastTime, result.getEndTime());
+
+            // Tallied for suites which may need to be completed if the run was interrupted
+            for (var parent = descriptor.parent; parent != null; parent = parent.parent) {
+                parent.tests += result.getTestCount();
+                parent.failed += result.getFailedTestCount();
+                parent.skipped += result.getSkippedTestCount();
+                parent.startTime = parent.startTime > 0
+                        ? Math.min(parent.startTime, result.getStartTime())
+                        : result.getStartTime();
+            }
+
+            listener.afterTest(descriptor, result);
+        }
+
+        private JournalResult getResult(ByteBuffer body) {
+            return new JournalResult(
+                    TestResult.ResultType.values()[body.get()],
+                    body.getLong(),
+                    body.getLong(),
+                    body.getLong(),
+                    body.getLong(),
+                    body.getLong(),
+                    body.getLong(),
+                    getFailures(body));
+        }
+
+        private List<TestFailure> getFailures(ByteBuffer body) {
+            int count    = body.getInt();
+            var failures = new ArrayList<TestFailure>(count);
+            for (int i = 0; i < count; i++) {
+                var message    = getString(body);
+                var className  = getString(body);
+                var stackTrace = getString(body);
+                var type       = body.get();
+                var expected   = getString(body);
+                var actual     = getString(body);
+                var file       = type == FILE_COMPARISON_FAILURE;
+
+                failures.add(new JournalFailure(
+                        new JournalFailureDetails(message, className, stackTrace,
+                                type == ASSERTION_FAILURE,
+                                file,
+                                expected,
+                                actual,
+                                file ? getBytes(body) : null,
+                                file ? getBytes(body) : null),
+                        getFailures(body)));
+            }
+            return failures;
+        }
+    }
+
+    private static final class JournalDescriptor implements TestDescriptor {
+
+        final String            name;
+        final String            displayName;
+        final String            className;
+        final boolean           composite;
+        final JournalDescriptor parent;
+        long                    tests;
+        long                    failed;
+        long                    skipped;
+        long                    startTime;
+
+        JournalDescriptor(String name, String displayName, String className, boolean composite,
+                          JournalDescriptor parent) {
+            this.name        = name;
+            this.displayName = displayName;
+            this.className   = className;
+            this.composite   = composite;
+            this.parent      = parent;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        @Override
+        public String getClassName() {
+            return className;
+        }
+
+        @Override
+        public boolean isComposite() {
+            return composite;
+        }
+
+        @Override
+        public TestDescriptor getParent() {
+            return parent;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    private record JournalResult(ResultType resultType, long startTime, long endTime, long testCount,
+                                 long successfulTestCount, long failedTestCount, long skippedTestCount,
+                                 List<TestFailure> failures) implements TestResult {
+
+        @Override
+        public ResultType getResultType() {
+            return resultType;
+        }
+
+        @Override
+        public Throwable getException() {
+            return null;
+        }
+
+        @Override
+        public List<Throwable> getExceptions() {
+            return List.of();
+        }
+
+        @Override
+        public List<TestFailure> getFailures() {
+            return failures;
+        }
+
+        // Not available in all supported Gradle versions
+        public TestFailure getAssumptionFailure() {
+            return null;
+        }
+
+        @Override
+        public long getStartTime() {
+            return startTime;
+        }
+
+        @Override
+        public long getEndTime() {
+            return endTime;
+        }
+
+        @Override
+        public long getTestCount() {
+            return testCount;
+        }
+
+        @Override
+        public long getSuccessfulTestCount() {
+            return successfulTestCount;
+        }
+
+        @Override
+        public long getFailedTestCount() {
+            return failedTestCount;
+        }
+
+        @Override
+        public long getSkippedTestCount() {
+            return skippedTestCount;
+        }
+    }
+
+    private static final class JournalFailure extends TestFailure {
+
+        private final TestFailureDetails details;
+        private final List<TestFailure>  causes;
+
+        JournalFailure(TestFailureDetails details, List<TestFailure> causes) {
+            this.details = details;
+            this.causes  = causes;
+        }
+
+        @Override
+        public List<TestFailure> getCauses() {
+            return causes;
+        }
+
+        @Override
+        public Throwable getRawFailure() {
+            // Not recorded, only the details are used by the reports
+            return null;
+        }
+
+        @Override
+        public TestFailureDetails getDetails() {
+            return details;
+        }
+    }
+
+    private record JournalFailureDetails(String message, String className, String stacktrace,
+                                         boolean assertionFailure, boolean fileComparisonFailure,
+                                         String expected, String actual,
+                                         byte[] expectedContent, byte[] actualContent) implements TestFailureDetails {
+
+        @Override
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String getClassName() {
+            return className;
+        }
+
+        @Override
+        public String getStacktrace() {
+            return stacktrace;
+        }
+
+        @Override
+        public boolean isAssertionFailure() {
+            return assertionFailure;
+        }
+
+        @Override
+        public boolean isFileComparisonFailure() {
+            return fileComparisonFailure;
+        }
+
+        @Override
+        public byte[] getExpectedContent() {
+            return expectedContent;
+        }
+
+        @Override
+        public byte[] getActualContent() {
+            return actualContent;
+        }
+
+        @Override
+        public String getExpected() {
+            return expected;
+        }
+
+        @Override
+        public String getActual() {
+            return actual;
+        }
+
+        // Not available in all supported Gradle versions
+        public boolean isAssumptionFailure() {
+            return false;
+        }
+    }
+
+    private record JournalOutputEvent(Destination destination, String message) implements TestOutputEvent {
+
+        @Override
+        public Destination getDestination() {
+            return destination;
+        }
+
+        @Override
+        public String getMessage() {
+            return message;
+        }
+
+        // Not available in all supported Gradle versions
+        public long getLogTime() {
+            return 0;
+        }
+    }
+}
@@ -18,11 +18,16 @@ package org.newtco.test.reports.plugin.test;
 
 import org.newtco.test.reports.api.test.model.Stats;
 import org.newtco.test.reports.api.test.model.Status;
+import org.newtco.test.reports.api.test.model.TestCase;
 import org.newtco.test.reports.api.test.model.TestSuite;
+import org.newtco.test.util.Parallel;
 
+import javax.annotation.Nullable;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
@@ -39,7 +44,7 @@ public abstract class TestReport {
         }
     }
 
-    protected static Stats accumulatedMetrics(List<TestSuite> suites) {
+    protected static Stats accumulatedMetrics(List<? extends Stats> suites) {
         var metrics = new Stats();
         for (var suite : suites) {
             metrics.total     = metrics.total + suite.total;
@@ -55,7 +60,152 @@ public abstract class TestReport {
         return metrics;
     }
 
-    public abstract void generateReport(List<TestSuite> suites);
+    /**
+     * Copies the suite and its test cases without the timings, which change on every run, for hashing the canonical
+     * content of reports written incrementally. Outputs and failures are shared with the suite.
+     */
+    static TestSuite withoutTimings(TestSuite suite) {
+        var copy = new TestSuite();
+        copyCounts(suite, copy);
+        copy.id          = suite.id;
+        copy.name        = suite.name;
+        copy.displayName = suite.displayName;
+        copy.className   = suite.className;
+        copy.stdErr      = suite.stdErr;
+        copy.stdOut      = suite.stdOut;
+        copy.setOutputs(suite.getStdErrOutput(), suite.getStdOutOutput());
+
+        copy.tests = new ArrayList<>(suite.tests.size());
+        for (var test : suite.tests) {
+            var testCopy = new TestCase();
+            copyCounts(test, testCopy);
+            testCopy.id          = test.id;
+            testCopy.name        = test.name;
+            testCopy.displayName = test.displayName;
+            testCopy.className   = test.className;
+            testCopy.sourceFile  = test.sourceFile;
+            testCopy.url         = test.url;
+            testCopy.stdErr      = test.stdErr;
+            testCopy.stdOut      = test.stdOut;
+            testCopy.failures    = test.failures;
+            testCopy.setOutputs(test.getStdErrOutput(), test.getStdOutOutput());
+            copy.tests.add(testCopy);
+        }
+        return copy;
+    }
+
+    private static void copyCounts(Stats stats, Stats copy) {
+        copy.status  = stats.status;
+        copy.total   = stats.total;
+        copy.passed  = stats.passed;
+        copy.skipped = stats.skipped;
+        copy.failed  = stats.failed;
+    }
+
+    /**
+     * Generates the given reports of the suites. The values shared by the reports are computed once, and the suites are
+     * traversed once for all reports written per suite, with each suite written to every such report on one of up to
+     * {@code parallelism} threads. Aggregated reports are written one after the other.
+     * <p>
+     * Each report file is written independently, a failure to write one file does not affect the others. Outcomes are
+     * logged once all files are written, per report in the order of the suites, and the first failure to be rethrown
+     * is thrown afterwards.
+     *
+     * @param reports     the reports to generate
+     * @param suites      the suites to report
+     * @param parallelism the maximum number of threads used to write reports per suite
+     * @param files       writes the report files
+     */
+    static void generateReports(List<TestReport> reports, List<TestSuite> suites, int parallelism, ReportFiles files) {
+        var outcomes = new ArrayList<Set<Status>>(reports.size());
+        for (var report : reports) {
+            outcomes.add(report.getOptions().statuses);
+        }
+        var data = TestReportData.of(suites, outcomes);
+
+        var individual = new ArrayList<TestReport>(reports.size());
+        for (var report : reports) {
+            if (report.isAggregated()) {
+                report.writeAggregatedReport(data, files);
+            } else {
+                individual.add(report);
+            }
+        }
+        if (individual.isEmpty()) {
+            return;
+        }
+
+        var results = Parallel.map(data.getSuites(), parallelism, suite -> {
+            var suiteOutcomes = new ArrayList<ReportOutcome>(individual.size());
+            for (var report : individual) {
+                suiteOutcomes.add(report.writeSuiteReport(suite, data, files));
+            }
+            return suiteOutcomes;
+        });
+
+        RuntimeException failure = null;
+        for (int i = 0; i < individual.size(); i++) {
+            var reportOutcomes = new ArrayList<ReportOutcome>(results.size());
+            for (var suiteOutcomes : results) {
+                reportOutcomes.add(suiteOutcomes.get(i));
+            }
+
+            var reportFailure = individual.get(i).completeSuiteReports(reportOutcomes);
+            if (failure == null) {
+                failure = reportFailure;
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private ReportOutcome writeSuiteReport(TestSuite suite, TestReportData data, ReportFiles files) {
+        var file  = resolveSuiteReportFile(suite);
+        var start = Instant.now();
+        try {
+            writeSuiteReport(suite, data, file, files);
+            return new ReportOutcome(file, start, Instant.now(), null);
+        } catch (Exception ex) {
+            return new ReportOutcome(file, start, Instant.now(), ex);
+        }
+    }
+
+    abstract Options getOptions();
+
+    /**
+     * Whether all suites are written to a single report file, rather than a file per suite
+     */
+    abstract boolean isAggregated();
+
+    abstract void writeAggregatedReport(TestReportData data, ReportFiles files);
+
+    abstract Path resolveSuiteReportFile(TestSuite suite);
+
+    /**
+     * Writes the report of a single suite, called concurrently for different suites
+     */
+    abstract void writeSuiteReport(TestSuite suite, TestReportData data, Path file, ReportFiles files) throws Exception;
+
+    /**
+     * Logs the outcomes of the reports written per suite
+     *
+     * @param outcomes the outcomes, in the order of the suites
+     * @return the failure to rethrow, or null if none
+     */
+    @Nullable
+    abstract RuntimeException completeSuiteReports(List<ReportOutcome> outcomes);
+
+    /**
+     * Outcome of writing a report file, with the failure if it could not be written
+     */
+    protected record ReportOutcome(Path file, Instant start, Instant end, Exception failure) {
+
+        public boolean failed() {
+            return failure != null;
+        }
+    }
 
     protected static class Options {
 
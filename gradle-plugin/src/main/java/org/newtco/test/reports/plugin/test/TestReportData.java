@@ -0,0 +1,100 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.newtco.test.reports.plugin.test;
+
+import org.newtco.test.reports.api.test.model.Stats;
+import org.newtco.test.reports.api.test.model.Status;
+import org.newtco.test.reports.api.test.model.TestCase;
+import org.newtco.test.reports.api.test.model.TestSuite;
+
+import java.util.*;
+
+/**
+ * Values derived from the test suites which are shared by all reports, computed in a single pass over the suites and
+ * their test cases: the accumulated metrics and the test cases of each suite reportable for each set of test outcomes
+ * used by the enabled reports.
+ */
+final class TestReportData {
+
+    private final List<TestSuite>                                     suites;
+    private final Stats                                               metrics;
+    private final Map<Set<Status>, Map<TestSuite, List<TestCase>>>    reportable;
+
+    private TestReportData(List<TestSuite> suites, Collection<Set<Status>> outcomes) {
+        this.suites     = suites;
+        this.metrics    = TestReport.accumulatedMetrics(suites);
+        this.reportable = new HashMap<>();
+
+        for (var statuses : outcomes) {
+            reportable.putIfAbsent(statuses, new IdentityHashMap<>(suites.size()));
+        }
+
+        for (var suite : suites) {
+            var subsets = new ArrayList<Map.Entry<Set<Status>, List<TestCase>>>(reportable.size());
+            for (var entry : reportable.entrySet()) {
+                var subset = new ArrayList<TestCase>();
+                entry.getValue().put(suite, subset);
+                subsets.add(Map.entry(entry.getKey(), subset));
+            }
+
+            for (var test : suite.tests) {
+                for (var subset : subsets) {
+                    if (subset.getKey().contains(test.status)) {
+                        subset.getValue().add(test);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the data of the given suites
+     *
+     * @param suites   the suites of the reports
+     * @param outcomes the sets of test outcomes reported by the enabled reports
+     */
+    static TestReportData of(List<TestSuite> suites, Collection<Set<Status>> outcomes) {
+        return new TestReportData(suites, outcomes);
+    }
+
+    List<TestSuite> getSuites() {
+        return suites;
+    }
+
+    /**
+     * Metrics accumulated over all suites
+     */
+    Stats getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Test cases of the suite with one of the given outcomes, in the order of the suite
+     */
+    List<TestCase> getReportableTests(TestSuite suite, Set<Status> statuses) {
+        var subsets = reportable.get(statuses);
+        var subset  = subsets != null ? subsets.get(suite) : null;
+        if (subset != null) {
+            return subset;
+        }
+
+        return suite.tests.stream()
+                .filter(test -> statuses.contains(test.status))
+                .toList();
+    }
+}
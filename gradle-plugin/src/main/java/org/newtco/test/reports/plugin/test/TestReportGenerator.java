@@ -18,10 +18,13 @@ package org.newtco.test.reports.plugin.test;
 
 import org.newtco.test.reports.api.test.model.TestSuite;
 import org.newtco.test.templates.TemplateInstantiator;
+import org.newtco.test.util.Compression;
 import org.gradle.api.Project;
 import org.gradle.api.tasks.testing.Test;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Predicate;
 
 import static org.newtco.test.util.GradleUtils.Extensions.extensionOf;
 
@@ -39,6 +42,9 @@ public class TestReportGenerator {
     private final TestReportsExtension extension;
     private final TestSuiteCollector   collector;
     private final TemplateInstantiator instantiator;
+    private final Compression          compression;
+    private final ReportFiles          files;
+    private final NdjsonTestReport     ndjson;
 
 
     public TestReportGenerator(TemplateInstantiator templateInstantiator, Test testTask, TestSuiteCollector collector) {
@@ -47,50 +53,144 @@ public class TestReportGenerator {
         this.extension    = extensionOf(testTask, TestReportsExtension.class);
         this.collector    = collector;
         this.instantiator = templateInstantiator;
+        this.compression  = extension.getCompression().createCompression();
+        // Incremental writing spans the streamed and the remaining reports, so it is shared by all reports of a run
+        this.files        = extension.getIncrementalReports().get()
+                ? ReportFiles.incremental(extension.getOutputLocation().get().getAsFile().toPath(), compression)
+                : ReportFiles.direct(compression);
+        this.ndjson       = createNdjsonReport();
     }
 
+    /**
+     * Generates the reports once all tests have run. When streaming, only aggregated reports remain to be generated.
+     */
     public void generateTestReports() {
-        deleteReports();
+        var streaming = extension.getStreamingReports().get();
+        if (!streaming) {
+            deleteReports();
+        }
+
+        var reports = createReports(settings -> !streaming || isAggregated(settings));
+        if (!reports.isEmpty()) {
+            generateReports(reports, collector.getTestSuites(test));
+        }
+        files.complete(TestReportGenerator::isReportFile);
 
+        if (ndjson != null) {
+            ndjson.complete();
+        }
+    }
+
+    /**
+     * Generates all enabled reports regardless of streaming, such as for suites replayed from the test event journal.
+     */
+    public void regenerateTestReports() {
+        deleteReports();
+        // Suites are finalized when collected, so they are collected once for all reports
         var suites = collector.getTestSuites(test);
-        generateMarkdownReports(suites);
-        generateJsonReports(suites);
+        generateReports(createReports(settings -> true), suites);
+        files.complete(TestReportGenerator::isReportFile);
+
+        if (ndjson != null) {
+            ndjson.start();
+            ndjson.append(suites);
+            ndjson.complete();
+        }
     }
 
     /**
-     * Deletes .json and .md reports from the reports directory
+     * Registers with the collector to write the reports of each test suite as soon as it completes: the NDJSON lines of
+     * the suite, and when streaming, its non-aggregated reports. Must be called before tests are run.
+     */
+    public void streamTestReports() {
+        var streaming = extension.getStreamingReports().get();
+        if (streaming) {
+            deleteReports();
+        }
+
+        var reports = streaming
+                ? createReports(settings -> !isAggregated(settings))
+                : List.<TestReport>of();
+        if (ndjson != null) {
+            ndjson.start();
+        } else if (reports.isEmpty()) {
+            return;
+        }
+
+        // Suites are only needed after streaming by the reports generated once all tests have run
+        var release = createReports(settings -> !streaming || isAggregated(settings)).isEmpty();
+        collector.streamTestSuites(test, release, suite -> {
+            if (ndjson != null) {
+                ndjson.append(List.of(suite));
+            }
+            if (!reports.isEmpty()) {
+                TestReport.generateReports(reports, List.of(suite), 1, files);
+            }
+        });
+    }
+
+    private void generateReports(List<TestReport> reports, List<TestSuite> suites) {
+        if (!reports.isEmpty()) {
+            TestReport.generateReports(reports, suites, extension.getParallelism().get(), files);
+        }
+    }
+
+    /**
+     * Deletes .json and .md reports, compressed or not, from the reports directory. When writing incrementally, reports are kept until all
+     * reports are written, and only those not written again are deleted.
      */
     private void deleteReports() {
+        if (files.isIncremental()) {
+            return;
+        }
+
         var reportsDir = extension.getOutputLocation().getAsFile().getOrNull();
         if (null != reportsDir && reportsDir.exists()) {
-            Object[] reports = reportsDir.listFiles((dir, name) -> name.startsWith("TEST-") &&
-                    (name.endsWith(".json") || name.endsWith(".md")));
+            Object[] reports = reportsDir.listFiles((dir, name) -> isReportFile(name));
             if (reports != null && reports.length > 0) {
                 project.delete(reports);
             }
         }
     }
 
-    private void generateJsonReports(List<TestSuite> suites) {
-        var settings = extension.getJson();
-        if (Boolean.TRUE.equals(settings.getEnabled().get())) {
-            new JsonTestReport(test, settings, extension.getOutputLocation())
-                    .generateReport(suites);
+    private static boolean isReportFile(String name) {
+        return name.startsWith("TEST-") && (name.endsWith(".json") || name.endsWith(".md")
+                || name.endsWith(".json.gz") || name.endsWith(".md.gz"));
+    }
+
+    /**
+     * Creates the enabled reports matching the filter, Markdown reports first followed by JSON
+     */
+    private List<TestReport> createReports(Predicate<ReportSettings> filter) {
+        var reports = new ArrayList<TestReport>();
+
+        for (var settings : List.of(extension.getSummaryMarkdown(), extension.getDetailedMarkdown())) {
+            if (Boolean.TRUE.equals(settings.getEnabled().get()) && filter.test(settings)) {
+                reports.add(new MarkdownTestReport(instantiator, test, settings, extension.getOutputLocation(), compression));
+            }
         }
+
+        var json = extension.getJson();
+        if (Boolean.TRUE.equals(json.getEnabled().get()) && filter.test(json)) {
+            reports.add(new JsonTestReport(test, json, extension.getOutputLocation(), compression));
+        }
+
+        return reports;
     }
 
-    private void generateMarkdownReports(List<TestSuite> suites) {
-        var settings = extension.getSummaryMarkdown();
-        if (Boolean.TRUE.equals(settings.getEnabled().get())) {
-            new MarkdownTestReport(instantiator, test, settings, extension.getOutputLocation())
-                    .generateReport(suites);
+    private NdjsonTestReport createNdjsonReport() {
+        var json = extension.getJson();
+        if (Boolean.TRUE.equals(json.getEnabled().get()) && json.getNdjson().get()) {
+            return new NdjsonTestReport(test, json, extension.getOutputLocation());
         }
+        return null;
+    }
 
-        settings = extension.getDetailedMarkdown();
-        if (Boolean.TRUE.equals(settings.getEnabled().get())) {
-            new MarkdownTestReport(instantiator, test, settings, extension.getOutputLocation())
-                    .generateReport(suites);
+    private boolean isAggregated(ReportSettings settings) {
+        if (settings instanceof JsonReportSettings json) {
+            return json.getAggregateJsonReports().get();
         }
+        return settings.getAggregateReports().getOrElse(false);
     }
 }
 
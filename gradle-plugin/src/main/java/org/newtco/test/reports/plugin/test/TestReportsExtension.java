@@ -16,12 +16,14 @@
 
 package org.newtco.test.reports.plugin.test;
 
+import org.newtco.test.reports.plugin.CompressionSettings;
 import org.newtco.test.util.FilterSet;
 import org.newtco.test.util.GradleUtils;
 import groovy.lang.Closure;
 import org.gradle.api.Action;
 import org.gradle.api.Project;
 import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.Nested;
@@ -37,10 +39,17 @@ public class TestReportsExtension implements Configurable<TestReportsExtension>
     private final JsonReportSettings     json;
     private final MarkdownReportSettings summaryMarkdown;
     private final MarkdownReportSettings detailedMarkdown;
+    private final OutputCaptureSettings  outputCapture;
+    private final CompressionSettings    compression;
     private final DirectoryProperty      outputLocation;
     private final Property<String>       gitLinkRepository;
     private final Property<String>       gitLinkCommit;
     private final Property<String>       gitLinkUrlTemplate;
+    private final Property<Boolean>      streamingReports;
+    private final Property<Boolean>      incrementalReports;
+    private final Property<Integer>      parallelism;
+    private final Property<Boolean>      journal;
+    private final RegularFileProperty    journalFile;
     private final Project                project;
 
     @Inject
@@ -59,6 +68,18 @@ public class TestReportsExtension implements Configurable<TestReportsExtension>
                                 ? "gitlab.com"
                                 : "github.com"));
 
+        this.streamingReports = objects.property(Boolean.class).convention(false);
+
+        this.incrementalReports = objects.property(Boolean.class).convention(false);
+
+        this.parallelism = objects.property(Integer.class)
+                .convention(Runtime.getRuntime().availableProcessors());
+
+        this.journal = objects.property(Boolean.class).convention(true);
+
+        this.journalFile = objects.fileProperty()
+                .convention(project.getLayout().getBuildDirectory().file("test-journals/" + test.getName() + ".journal"));
+
         this.stackFilters = objects.newInstance(FilterSet.class);
         // By default, include the project group, if set
         var group = Objects.toString(project.getGroup(), null);
@@ -78,6 +99,10 @@ public class TestReportsExtension implements Configurable<TestReportsExtension>
         detailedMarkdown = objects.newInstance(MarkdownReportSettings.class, "Detailed",
                 project, junitXml);
 
+        outputCapture = objects.newInstance(OutputCaptureSettings.class);
+
+        compression = objects.newInstance(CompressionSettings.class);
+
         outputLocation = objects.directoryProperty().convention(junitXml.getOutputLocation());
         this.project = project;
     }
@@ -154,6 +179,109 @@ public class TestReportsExtension implements Configurable<TestReportsExtension>
         gitLinkUrlTemplate.set(value);
     }
 
+    /**
+     * Whether non-aggregated reports are written as soon as each test suite completes, instead of once all tests have
+     * run. When no aggregated reports are enabled, suites are released from memory once their reports are written.
+     * <p>
+     * Default value: false
+     *
+     * @return a property representing whether reports are streamed.
+     */
+    @Input
+    public Property<Boolean> getStreamingReports() {
+        return streamingReports;
+    }
+
+    // For Groovy/Kotlin DSL
+    public void setStreamingReports(boolean value) {
+        streamingReports.set(value);
+    }
+
+    public void setStreamingReports(Property<Boolean> value) {
+        streamingReports.set(value);
+    }
+
+    /**
+     * Whether only the reports whose content changed are rewritten. A manifest of the content hash of each report is
+     * kept next to the reports, reports of unchanged suites are left untouched while changed reports are written to a
+     * temporary file and moved in place, and reports of suites which no longer exist are deleted. Otherwise, all reports
+     * are deleted and written again on each run.
+     * <p>
+     * Default value: false
+     *
+     * @return a property representing whether reports are written incrementally.
+     */
+    @Input
+    public Property<Boolean> getIncrementalReports() {
+        return incrementalReports;
+    }
+
+    // For Groovy/Kotlin DSL
+    public void setIncrementalReports(boolean value) {
+        incrementalReports.set(value);
+    }
+
+    public void setIncrementalReports(Property<Boolean> value) {
+        incrementalReports.set(value);
+    }
+
+    /**
+     * Maximum number of threads used to process test suites once tests have run, such as resolving the line numbers
+     * of failures and filtering their stack traces, and to write the individual report files of suites. A value of 1
+     * processes suites on the task thread.
+     * <p>
+     * Default value: number of available processors
+     *
+     * @return a property representing the maximum number of threads.
+     */
+    @Input
+    public Property<Integer> getParallelism() {
+        return parallelism;
+    }
+
+    // For Groovy/Kotlin DSL
+    public void setParallelism(int value) {
+        parallelism.set(value);
+    }
+
+    public void setParallelism(Property<Integer> value) {
+        parallelism.set(value);
+    }
+
+    /**
+     * Whether test events are recorded to a journal as tests run. The reports can be regenerated from the journal
+     * without running the tests again, including for an interrupted run or a test task restored from the build cache.
+     * <p>
+     * Default value: true
+     *
+     * @return a property representing whether the journal is written.
+     */
+    @Input
+    public Property<Boolean> getJournal() {
+        return journal;
+    }
+
+    // For Groovy/Kotlin DSL
+    public void setJournal(boolean value) {
+        journal.set(value);
+    }
+
+    public void setJournal(Property<Boolean> value) {
+        journal.set(value);
+    }
+
+    /**
+     * Location of the test event journal, an output of the test task.
+     * <p>
+     * Default value: build/test-journals/{task name}.journal
+     *
+     * @return a property representing the journal file.
+     */
+    @Input
+    public RegularFileProperty getJournalFile() {
+        return journalFile;
+    }
+
     /**
      * Retrieves the filter set used to include or exclude specific stack elements.
      * <p>
@@ -223,6 +351,39 @@ public class TestReportsExtension implements Configurable<TestReportsExtension>
         action.execute(getDetailedMarkdown());
     }
 
+    /**
+     * Configuration for capturing test output
+     */
+    @Input
+    @Nested
+    public OutputCaptureSettings getOutputCapture() {
+        return outputCapture;
+    }
+
+    /**
+     * For closure configuration support
+     */
+    public void outputCapture(Action<? super OutputCaptureSettings> action) {
+        action.execute(getOutputCapture());
+    }
+
+    /**
+     * Configuration for the compression of the JSON and Markdown reports. The NDJSON report is never compressed, so it
+     * can be read while tests run.
+     */
+    @Input
+    @Nested
+    public CompressionSettings getCompression() {
+        return compression;
+    }
+
+    /**
+     * For closure configuration support
+     */
+    public void compression(Action<? super CompressionSettings> action) {
+        action.execute(getCompression());
+    }
+
     @Input
     public DirectoryProperty getOutputLocation() {
         return outputLocation;
@@ -0,0 +1,344 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.newtco.test.reports.plugin.test;
+
+import org.gradle.api.logging.LogLevel;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.api.tasks.testing.*;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Build service collecting the results of all test tasks of a build. Each running test task has its own partition
+ * holding its collector and report generator, while results are also added to aggregates shared by all tasks, so the
+ * build-level {@link Summary} is available at any time without going through the collected suites. The summary is
+ * logged when the build finishes, at lifecycle level if more than one test task ran.
+ * <p>
+ * Partitions of tasks which did not complete, such as when tests failed, are closed along with the service at the end
+ * of the build.
+ */
+public abstract class TestResultsService implements BuildService<BuildServiceParameters.None>, AutoCloseable {
+
+    /**
+     * Name of the shared service
+     */
+    public static final String NAME = "testReportsResults";
+
+    /**
+     * Number of slowest tests kept for the summary
+     */
+    public static final int SLOWEST_TESTS = 10;
+    /**
+     * Maximum number of failed tests kept for the summary, the failed count includes all of them
+     */
+    public static final int MAX_FAILURES  = 100;
+
+    private static final Logger LOGGER = Logging.getLogger(TestResultsService.class);
+
+    private final ConcurrentMap<String, Partition> partitions;
+    private final AtomicInteger                    tasks;
+    private final LongAdder                        total;
+    private final LongAdder                        passed;
+    private final LongAdder                        failed;
+    private final LongAdder                        skipped;
+    private final LongAdder                        duration;
+    private final PriorityQueue<SlowTest>          slowest;
+    private volatile long                          slowestThreshold;
+    private final List<FailedTest>                 failures;
+
+    public TestResultsService() {
+        this.partitions   = new ConcurrentHashMap<>();
+        this.tasks        = new AtomicInteger();
+        this.total        = new LongAdder();
+        this.passed       = new LongAdder();
+        this.failed       = new LongAdder();
+        this.skipped      = new LongAdder();
+        this.duration     = new LongAdder();
+        this.slowest      = new PriorityQueue<>(SLOWEST_TESTS + 1, Comparator.comparingLong(SlowTest::duration));
+        this.failures     = new ArrayList<>();
+    }
+
+    /**
+     * Opens the partition of a test task, replacing and closing the partition of an earlier run of the task.
+     *
+     * @param taskPath  the path of the test task
+     * @param collector the collector of the task's test suites
+     * @param generator the generator of the task's reports from the collected suites
+     * @param journal   the journal of the task's test events, if enabled
+     * @return the partition, to be registered as test and output listener of the task
+     */
+    public Partition open(
+            String taskPath,
+            TestSuiteCollector collector,
+            TestReportGenerator generator,
+            @Nullable TestEventJournal journal) {
+        var partition = new Partition(taskPath, collector, generator, journal);
+        var previous  = partitions.put(taskPath, partition);
+        if (previous != null) {
+            previous.close();
+        }
+
+        tasks.incrementAndGet();
+        return partition;
+    }
+
+    /**
+     * Removes the partition of a test task, leaving closing it to the caller
+     *
+     * @param taskPath the path of the test task
+     * @return the partition, or null if the task has no open partition
+     */
+    @Nullable
+    public Partition remove(String taskPath) {
+        return partitions.remove(taskPath);
+    }
+
+    /**
+     * Returns the summary of the results of all test tasks run so far
+     */
+    public Summary getSummary() {
+        List<SlowTest> slowestTests;
+        synchronized (slowest) {
+            slowestTests = new ArrayList<>(slowest);
+        }
+        slowestTests.sort(Comparator.comparingLong(SlowTest::duration).reversed());
+
+        List<FailedTest> failedTests;
+        synchronized (failures) {
+            failedTests = List.copyOf(failures);
+        }
+
+        return new Summary(
+                tasks.get(),
+                total.sum(),
+                passed.sum(),
+                failed.sum(),
+                skipped.sum(),
+                duration.sum(),
+                slowestTests,
+                failedTests);
+    }
+
+    @Override
+    public void close() {
+        for (var partition : partitions.values()) {
+            partition.close();
+        }
+        partitions.clear();
+
+        if (tasks.get() > 0) {
+            var summary = getSummary();
+            // Gradle reports the results of each task, only the totals across several tasks are new information
+            var level = summary.tasks() > 1 ? LogLevel.LIFECYCLE : LogLevel.INFO;
+            LOGGER.log(level, "Test results of {} test task(s): {} tests, {} passed, {} failed, {} skipped",
+                    summary.tasks(), summary.total(), summary.passed(), summary.failed(), summary.skipped());
+            for (var test : summary.slowest()) {
+                LOGGER.info("  {} ms {}.{} ({})", test.duration(), test.className(), test.name(), test.taskPath());
+            }
+        }
+    }
+
+    // meets minimum gradle version 7.6
+    @SuppressWarnings("UnstableApiUsage")
+    private void aggregate(Partition partition, TestDescriptor descriptor, TestResult result) {
+        var taskPath = partition.taskPath;
+        var key      = new TestKey(descriptor.getClassName(), descriptor.getName());
+
+        // Each attempt of a retried test has its own descriptor with the same names. The test is counted once, with
+        // the outcome of its attempts as merged by the collector: passed once any attempt passed, else the last one
+        TestResult.ResultType previous;
+        TestResult.ResultType outcome;
+        synchronized (partition.outcomes) {
+            previous = partition.outcomes.get(key);
+            outcome  = previous == TestResult.ResultType.SUCCESS ? previous : result.getResultType();
+            partition.outcomes.put(key, outcome);
+        }
+
+        if (previous == null) {
+            total.increment();
+        }
+        if (previous != outcome) {
+            if (previous != null) {
+                countOf(previous).decrement();
+            }
+            countOf(outcome).increment();
+        }
+
+        long elapsed = result.getEndTime() - result.getStartTime();
+        duration.add(elapsed);
+
+        // Most tests are faster than the slowest tests kept, checked without locking
+        if (elapsed > slowestThreshold) {
+            synchronized (slowest) {
+                slowest.add(new SlowTest(taskPath, descriptor.getClassName(), descriptor.getName(), elapsed));
+                if (slowest.size() > SLOWEST_TESTS) {
+                    slowest.poll();
+                }
+                if (slowest.size() == SLOWEST_TESTS) {
+                    slowestThreshold = slowest.peek().duration();
+                }
+            }
+        }
+
+        // The size of the failures is checked under the same lock as they are added and removed, so a failed test
+        // passing on retry frees its place for a later failure
+        if (outcome == TestResult.ResultType.FAILURE && previous != TestResult.ResultType.FAILURE) {
+            synchronized (failures) {
+                if (failures.size() < MAX_FAILURES) {
+                    var testFailures = result.getFailures();
+                    failures.add(new FailedTest(taskPath, key.className(), key.name(),
+                            testFailures.isEmpty() ? null : testFailures.get(0).getDetails().getMessage()));
+                }
+            }
+        } else if (previous == TestResult.ResultType.FAILURE && outcome != TestResult.ResultType.FAILURE) {
+            // Passed on retry
+            synchronized (failures) {
+                failures.removeIf(test -> test.taskPath().equals(taskPath)
+                        && Objects.equals(test.className(), key.className())
+                        && Objects.equals(test.name(), key.name()));
+            }
+        }
+    }
+
+    private LongAdder countOf(TestResult.ResultType outcome) {
+        return switch (outcome) {
+            case SUCCESS -> passed;
+            case FAILURE -> failed;
+            case SKIPPED -> skipped;
+        };
+    }
+
+    /**
+     * Results of a single test task, passing test events on to the task's collector and journal while adding them to
+     * the aggregates of the service.
+     */
+    public final class Partition implements TestListener, TestOutputListener, Closeable {
+
+        private final String                              taskPath;
+        private final TestSuiteCollector                  collector;
+        private final TestReportGenerator                 generator;
+        private final TestEventJournal                    journal;
+        // Outcome of each test of the task, so retries are counted once
+        private final Map<TestKey, TestResult.ResultType> outcomes;
+
+        Partition(
+                String taskPath,
+                TestSuiteCollector collector,
+                TestReportGenerator generator,
+                @Nullable TestEventJournal journal) {
+            this.taskPath  = taskPath;
+            this.collector = collector;
+            this.generator = generator;
+            this.journal   = journal;
+            this.outcomes  = new HashMap<>();
+        }
+
+        public TestSuiteCollector getCollector() {
+            return collector;
+        }
+
+        public TestReportGenerator getGenerator() {
+            return generator;
+        }
+
+        @Override
+        public void beforeSuite(TestDescriptor descriptor) {
+            collector.beforeSuite(descriptor);
+            if (journal != null) {
+                journal.beforeSuite(descriptor);
+            }
+        }
+
+        @Override
+        public void afterSuite(TestDescriptor descriptor, TestResult result) {
+            collector.afterSuite(descriptor, result);
+            if (journal != null) {
+                journal.afterSuite(descriptor, result);
+            }
+        }
+
+        @Override
+        public void beforeTest(TestDescriptor descriptor) {
+            collector.beforeTest(descriptor);
+            if (journal != null) {
+                journal.beforeTest(descriptor);
+            }
+        }
+
+        @Override
+        public void afterTest(TestDescriptor descriptor, TestResult result) {
+            aggregate(this, descriptor, result);
+            collector.afterTest(descriptor, result);
+            if (journal != null) {
+                journal.afterTest(descriptor, result);
+            }
+        }
+
+        @Override
+        public void onOutput(TestDescriptor descriptor, TestOutputEvent event) {
+            collector.onOutput(descriptor, event);
+            if (journal != null) {
+                journal.onOutput(descriptor, event);
+            }
+        }
+
+        /**
+         * Closes the journal and the collector
+         */
+        @Override
+        public void close() {
+            if (journal != null) {
+                journal.close();
+            }
+            collector.close();
+        }
+    }
+
+    /**
+     * Results of all test tasks run so far
+     *
+     * @param tasks    the number of test tasks run
+     * @param duration the sum of the durations of all tests, in milliseconds
+     * @param slowest  the slowest tests, slowest first
+     * @param failures the failed tests, up to {@link #MAX_FAILURES}
+     */
+    public record Summary(int tasks, long total, long passed, long failed, long skipped, long duration,
+                          List<SlowTest> slowest, List<FailedTest> failures) {
+    }
+
+    /**
+     * Key identifying a test within a test task
+     */
+    private record TestKey(String className, String name) {
+    }
+
+    public record SlowTest(String taskPath, String className, String name, long duration) {
+    }
+
+    public record FailedTest(String taskPath, String className, String name, String message) {
+    }
+}
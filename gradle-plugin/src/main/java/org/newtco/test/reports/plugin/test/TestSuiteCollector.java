@@ -16,14 +16,16 @@
 
 package org.newtco.test.reports.plugin.test;
 
-import com.github.javaparser.JavaParser;
-import com.github.javaparser.ParserConfiguration;
-import com.github.javaparser.ast.body.MethodDeclaration;
 import org.newtco.test.reports.api.test.model.*;
 import org.newtco.test.reports.plugin.PluginVersion;
 import org.newtco.test.util.FilterSet;
 import org.newtco.test.util.GitLinkTemplate;
+import org.newtco.test.util.Parallel;
 import org.newtco.test.util.SourceSetCollectors;
+import org.newtco.test.util.SpillBuffer;
+import org.newtco.test.util.StackTraceFilter;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
 import org.gradle.api.plugins.jvm.JvmTestSuite;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.SourceSet;
@@ -32,34 +34,53 @@ import org.gradle.testing.base.TestingExtension;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static org.newtco.test.util.GradleUtils.Extensions.extensionOf;
 
-public class TestSuiteCollector implements TestListener, TestOutputListener {
+public class TestSuiteCollector implements TestListener, TestOutputListener, Closeable {
+
+    private static final Logger LOGGER = Logging.getLogger(TestSuiteCollector.class);
 
     private final AtomicInteger                  idGenerator;
-    private final Map<String, TestSuite>         nodes;
+    private final Map<String, SuiteNode>         nodes;
+    private final Set<String>                    released;
     private final Map<TestDescriptor, StdOutput> outputs;
     private final FilterSet                      stackFilterSet;
     private final Provider<String>               repository;
     private final Provider<String>               commit;
     private final Provider<String>               urlTemplate;
+    private final SpillBuffer.Allocator          outputAllocator;
+    private final int                            parallelism;
+    private volatile Streaming                   streaming;
+    private LineNumberResolver                   lineNumberResolver;
 //    private final UrlTemplate.UrlBuilder         urlBuilder;
 
 
     public TestSuiteCollector(FilterSet stackFilterSet, Provider<String> repository, Provider<String> commit, Provider<String> urlTemplate) {
-        this.idGenerator    = new AtomicInteger(0);
-        this.nodes          = new ConcurrentHashMap<>();
-        this.outputs        = new ConcurrentHashMap<>();
-        this.stackFilterSet = stackFilterSet;
+        this(stackFilterSet, repository, commit, urlTemplate, SpillBuffer.Allocator.unbounded(), 1);
+    }
+
+    public TestSuiteCollector(FilterSet stackFilterSet, Provider<String> repository, Provider<String> commit,
+                              Provider<String> urlTemplate, SpillBuffer.Allocator outputAllocator, int parallelism) {
+        this.idGenerator     = new AtomicInteger(0);
+        this.nodes           = new ConcurrentHashMap<>();
+        this.released        = ConcurrentHashMap.newKeySet();
+        this.outputs         = new ConcurrentHashMap<>();
+        this.outputAllocator = outputAllocator;
+        this.parallelism     = parallelism;
+        this.stackFilterSet  = stackFilterSet;
         this.repository     = repository;
         this.commit         = commit;
         this.urlTemplate    = urlTemplate;
@@ -69,31 +90,56 @@ public class TestSuiteCollector implements TestListener, TestOutputListener {
     public void beforeSuite(TestDescriptor descriptor) {
         // Ignore Gradle wrapper suites
         if (!isGradleSuite(descriptor.getName())) {
-            nodes.computeIfAbsent(nodeKeyOf(descriptor), unused -> createTestSuite(descriptor));
-            outputs.computeIfAbsent(descriptor, unused -> new StdOutput());
+            var key  = nodeKeyOf(descriptor);
+            var node = nodes.computeIfAbsent(key, unused -> new SuiteNode(descriptor, createTestSuite(descriptor)));
+            if (node.completed) {
+                // The class runs again, such as when its failed tests are retried. The results of the new run are
+                // merged into the suite, which is streamed again once the new run completes
+                node.rerun(descriptor);
+            } else if (node.owner == descriptor && released.contains(key)) {
+                LOGGER.warn("Test class {} ran again after its suite was released, its reports only include the results of the last run.", key);
+            }
+            outputs.computeIfAbsent(descriptor, unused -> new StdOutput(outputAllocator));
         }
     }
 
     @Override
     public void afterSuite(TestDescriptor descriptor, TestResult result) {
-        var suite  = nodes.get(nodeKeyOf(descriptor));
+        var key    = nodeKeyOf(descriptor);
+        var node   = nodes.get(key);
         var output = outputs.remove(descriptor);
-        if (suite != null) {
-            updateTestSuite(suite, output, result);
+        if (node != null) {
+            node.retain(output);
+            updateTestSuite(node.suite, output, result);
+
+            // Other descriptors sharing the class name, such as parameterized test containers, complete before the
+            // class itself
+            if (descriptor.equals(node.owner)) {
+                node.completed = true;
+
+                var streaming = this.streaming;
+                if (streaming != null) {
+                    streamTestSuite(streaming, key, node);
+                }
+            }
         }
     }
 
     @Override
     public void beforeTest(TestDescriptor descriptor) {
-        outputs.put(descriptor, new StdOutput());
+        var previous = outputs.put(descriptor, new StdOutput(outputAllocator));
+        if (previous != null) {
+            previous.close();
+        }
     }
 
     @Override
     public void afterTest(TestDescriptor descriptor, TestResult result) {
         var output = outputs.remove(descriptor);
-        var suite  = getTestSuite(descriptor);
-        if (suite != null) {
-            addOrUpdateTestCase(suite, descriptor, result, output);
+        var node   = getSuiteNode(descriptor);
+        if (node != null) {
+            node.retain(output);
+            addOrUpdateTestCase(node, descriptor, result, output);
         }
     }
 
@@ -101,25 +147,113 @@ public class TestSuiteCollector implements TestListener, TestOutputListener {
     public void onOutput(TestDescriptor descriptor, TestOutputEvent event) {
         var output = outputs.get(descriptor);
         if (output != null) {
-            if (event.getDestination() == TestOutputEvent.Destination.StdErr) {
-                output.err.append(event.getMessage());
-            } else {
-                output.out.append(event.getMessage());
-            }
+            output.append(event.getDestination(), event.getMessage());
         }
     }
 
+    /**
+     * Releases the output captured for tests which did not complete, including any output spilled to disk.
+     */
+    @Override
+    public void close() {
+        for (var output : outputs.values()) {
+            output.close();
+        }
+        outputs.clear();
+
+        if (lineNumberResolver != null) {
+            lineNumberResolver.saveCache();
+        }
+    }
+
+    /**
+     * Streams each test suite to the given handler as soon as it completes, finalized in the same way as the suites
+     * returned by {@link #getTestSuites(Test)}. If the class of a suite runs again, such as when its failed tests are
+     * retried, the results of both runs are merged and the same suite is streamed again.
+     *
+     * @param test    the test task whose suites are collected
+     * @param release whether suites without failed tests are dropped once handled, in which case they are not returned
+     *                by {@link #getTestSuites(Test)}
+     * @param handler the handler receiving completed suites
+     */
+    public void streamTestSuites(Test test, boolean release, Consumer<TestSuite> handler) {
+        initLineNumberResolver(test);
+        streamTestSuites(
+                test.getProject().getRootDir().toPath(),
+                () -> getTestSourceFiles(className -> true, test),
+                GitLinkTemplate.createLinkBuilder(urlTemplate.get()),
+                release,
+                handler);
+    }
+
+    /**
+     * Streams each test suite to the given handler as soon as it completes, resolving the source files of the test
+     * classes with the given supplier.
+     *
+     * @see #streamTestSuites(Test, boolean, Consumer)
+     */
+    void streamTestSuites(Path rootDir, Supplier<Map<String, Path>> sourceFiles, GitLinkTemplate.GitLinkBuilder gitLinkBuilder,
+                          boolean release, Consumer<TestSuite> handler) {
+        // Line numbers are not cached unless resolved for a test task
+        initLineNumberResolver((Path) null);
+        this.streaming = new Streaming(
+                sourceFiles,
+                release,
+                handler,
+                rootDir,
+                gitLinkBuilder,
+                stackFilterSet.asStackTraceFilter());
+    }
+
     @Nonnull
     public List<TestSuite> getTestSuites(Test test) {
+        initLineNumberResolver(test);
         var urlBuilder = GitLinkTemplate.createLinkBuilder(urlTemplate.get());
 
-        var values = new ArrayList<>(nodes.values());
-        finalizeTestSuites(test, values, urlBuilder);
+        var pending   = new ArrayList<SuiteNode>(nodes.size());
+        var values    = new ArrayList<TestSuite>(nodes.size());
+        var finalized = new ArrayList<TestSuite>(nodes.size());
+        for (var node : nodes.values()) {
+            if (node.finalized) {
+                finalized.add(node.suite);
+            } else {
+                values.add(node.collectTests());
+                pending.add(node);
+            }
+        }
+        finalizeTestSuites(test, values, pending, urlBuilder);
+        values.addAll(finalized);
         values.sort(Comparator.comparing(TestSuite::getStatus));
 
         return values;
     }
 
+    private void streamTestSuite(Streaming streaming, String key, SuiteNode node) {
+        var suite = node.collectTests();
+        finalizeTestSuite(streaming.rootDir, node, streaming.getSourceFiles(), streaming.stackFilter, streaming.gitLinkBuilder);
+        node.finalized = true;
+
+        streaming.handler.accept(suite);
+
+        // Suites with failed tests are kept, as retrying them runs the class again and the suite is then streamed
+        // again with the results of all runs
+        if (streaming.release && suite.status != Status.FAILED) {
+            nodes.remove(key);
+            released.add(key);
+            outputAllocator.release(node.retained);
+        }
+    }
+
+    private void initLineNumberResolver(Test test) {
+        initLineNumberResolver(test.getTemporaryDir().toPath().resolve("line-numbers.cache"));
+    }
+
+    private synchronized void initLineNumberResolver(@Nullable Path cacheFile) {
+        if (lineNumberResolver == null) {
+            lineNumberResolver = new LineNumberResolver(cacheFile);
+        }
+    }
+
     private String nodeKeyOf(TestDescriptor descriptor) {
         // Nearly all descriptors will have a class name set, and since this collects per test task the
         // names should be unique
@@ -128,44 +262,50 @@ public class TestSuiteCollector implements TestListener, TestOutputListener {
     }
 
     @Nullable
-    private TestSuite getTestSuite(TestDescriptor descriptor) {
-        var suite = nodes.get(nodeKeyOf(descriptor));
-        while (suite == null && descriptor.getParent() != null) {
+    private SuiteNode getSuiteNode(TestDescriptor descriptor) {
+        var node = nodes.get(nodeKeyOf(descriptor));
+        while (node == null && descriptor.getParent() != null) {
             descriptor = descriptor.getParent();
-            suite      = nodes.get(nodeKeyOf(descriptor));
+            node       = nodes.get(nodeKeyOf(descriptor));
         }
-        return suite;
+        return node;
     }
 
-    @Nullable
-    private TestCase getTestCase(TestSuite suite, TestDescriptor descriptor) {
-        for (var test : suite.tests) {
-            if (Objects.equals(test.name, descriptor.getName())
-                    && Objects.equals(test.className, descriptor.getClassName())) {
-                return test;
-            }
-        }
-
-        return null;
+    private void finalizeTestSuites(Test test, Collection<TestSuite> suites, List<SuiteNode> nodes,
+                                    GitLinkTemplate.GitLinkBuilder gitLinkBuilder) {
+        var testClassNames = getTestCaseClassNames(suites);
+        var sourceFiles = testClassNames.isEmpty()
+                ? Map.<String, Path>of()
+                : getTestSourceFiles(testClassNames::contains, test);
+        var stackFilter = stackFilterSet.asStackTraceFilter();
+        var rootDir     = test.getProject().getRootDir().toPath();
+
+        // Suites are finalized independently of each other and in place, so the order of the suites is unaffected
+        Parallel.forEach(nodes, parallelism,
+                node -> finalizeTestSuite(rootDir, node, sourceFiles, stackFilter, gitLinkBuilder));
     }
 
-    private void finalizeTestSuites(Test test, Collection<TestSuite> suites, GitLinkTemplate.GitLinkBuilder gitLinkBuilder) {
-        var sourceFiles = getTestSourceFiles(suites, test);
-        var stackFilter = stackFilterSet.asPredicate();
-        for (var suite : suites) {
-            finalizeTestCases(test.getProject().getRootDir().toPath(), suite.tests, sourceFiles, stackFilter, gitLinkBuilder);
-            suite.tests.sort(Comparator.comparing(TestCase::getStatus));
-        }
+    private void finalizeTestSuite(Path rootDir, SuiteNode node, Map<String, Path> sourceFiles,
+                                   StackTraceFilter stackFilter, GitLinkTemplate.GitLinkBuilder gitLinkBuilder) {
+        var suite = node.suite;
+        joinOutput(suite);
+        finalizeTestCases(rootDir, suite.tests, node.finalizedFailures, sourceFiles, stackFilter, gitLinkBuilder);
+        suite.tests.sort(Comparator.comparing(TestCase::getStatus));
     }
 
     private void finalizeTestCases(
             Path rootDir,
             List<TestCase> testsCases,
+            Set<Failure> finalizedFailures,
             Map<String, Path> sourceFiles,
-            Predicate<String> stackFilter,
+            StackTraceFilter stackFilter,
             GitLinkTemplate.GitLinkBuilder gitLinkBuilder) {
 
+        // Matchers and buffer are reused across the failures of these test cases only, not shared between threads
+        var stackTraces = stackFilter.newState();
         for (var testcase : testsCases) {
+            joinOutput(testcase);
+
             var sourceFile = sourceFiles.get(testcase.getOuterClassName());
 
             if (sourceFile != null) {
@@ -175,38 +315,38 @@ public class TestSuiteCollector implements TestListener, TestOutputListener {
             }
 
             for (var failure : testcase.failures) {
-                failure.lineNumber = LineNumberResolver.getFailureLineNumber(
+                // Failures of an earlier run of the class were finalized when its suite was streamed
+                if (!finalizedFailures.add(failure)) {
+                    continue;
+                }
+
+                failure.lineNumber = lineNumberResolver.getFailureLineNumber(
                         testcase.className,
                         testcase.name,
                         failure.stackTrace,
                         sourceFile
                 );
 
-                failure.stackTrace = filterStackTrace(failure.stackTrace, stackFilter);
+                failure.stackTrace = stackTraces.filter(failure.stackTrace);
             }
         }
     }
 
     /**
      * Collects and returns a map of fully qualified class names associated with their respective source file paths from
-     * the provided test suites and test.
+     * the test source sets of the given test.
      *
-     * @param suites the list of TestSuite objects containing the test cases
-     * @param test   the Test object that provides additional context for retrieving source sets
+     * @param classFilter the filter of class names to include
+     * @param test        the Test object that provides additional context for retrieving source sets
      * @return a map where the key is the fully qualified class name, and the value is the relative path of the source
      * file from the project root directory.
      */
-    private Map<String, Path> getTestSourceFiles(Collection<TestSuite> suites, Test test) {
-        var testClassNames = getTestCaseClassNames(suites);
-        if (testClassNames.isEmpty()) {
-            return Map.of();
-        }
-
+    private Map<String, Path> getTestSourceFiles(Predicate<String> classFilter, Test test) {
         var sourceSets = getTestSourceSets(test);
 
         return SourceSetCollectors.sourcesMatching(
                 sourceSets,
-                (className, element) -> testClassNames.contains(className),
+                (className, element) -> classFilter.test(className),
                 (className, element) -> element.getFile(),
                 (fileMap) -> {
                     // Convert to className -> file paths
@@ -275,22 +415,45 @@ public class TestSuiteCollector implements TestListener, TestOutputListener {
         suite.name        = descriptor.getName();
         suite.displayName = descriptor.getDisplayName();
         suite.className   = descriptor.getClassName();
-        suite.stdErr      = "";
-        suite.stdOut      = "";
         suite.tests       = new ArrayList<>();
+        suite.setOutputs(new Output(), new Output());
 
         return suite;
     }
 
     private void updateTestSuite(TestSuite suite, StdOutput output, TestResult result) {
-        suite.status = getStatus(result.getResultType());
-        if (output != null) {
-            suite.stdErr += output.err.toString();
-            suite.stdOut += output.out.toString();
+        synchronized (suite) {
+            updateTestSuiteLocked(suite, output, result);
         }
+    }
+
+    private void updateTestSuiteLocked(TestSuite suite, StdOutput output, TestResult result) {
+        suite.status = getStatus(result.getResultType());
+        addOutput(suite.getStdErrOutput(), suite.getStdOutOutput(), output);
         collectMetrics(suite, result);
     }
 
+    /**
+     * Adds the output of an attempt as a separate chunk, output of earlier attempts is never copied
+     */
+    private void addOutput(Output stdErr, Output stdOut, StdOutput output) {
+        stdErr.add(output != null ? output.err.detach() : "");
+        stdOut.add(output != null ? output.out.detach() : "");
+    }
+
+    /**
+     * Assigns the combined output once all attempts are known, output of a single attempt is not copied
+     */
+    private void joinOutput(TestSuite suite) {
+        suite.stdErr = suite.getStdErrOutput().toString();
+        suite.stdOut = suite.getStdOutOutput().toString();
+    }
+
+    private void joinOutput(TestCase test) {
+        test.stdErr = test.getStdErrOutput().toString();
+        test.stdOut = test.getStdOutOutput().toString();
+    }
+
     private Status getStatus(TestResult.ResultType resultType) {
         return switch (resultType) {
             case SUCCESS -> Status.PASSED;
@@ -311,29 +474,27 @@ public class TestSuiteCollector implements TestListener, TestOutputListener {
         stats.duration  = stats.endTime - stats.startTime;
     }
 
-    private void addOrUpdateTestCase(TestSuite suite, TestDescriptor descriptor, TestResult result, StdOutput output) {
-        var existing = getTestCase(suite, descriptor);
-        if (existing != null) {
-            updateTestCase(existing, descriptor, result, output);
-        } else {
-            suite.tests.add(createTestCase(descriptor, result, output));
-        }
+    private void addOrUpdateTestCase(SuiteNode node, TestDescriptor descriptor, TestResult result, StdOutput output) {
+        // Retries of a test are reported with the same class and method names and are merged into a single test case
+        node.tests.compute(new TestKey(descriptor.getClassName(), descriptor.getName()),
+                (key, existing) -> existing != null
+                        ? updateTestCase(existing, descriptor, result, output)
+                        : createTestCase(descriptor, result, output));
     }
 
     // meets minimum gradle version 7.6
     @SuppressWarnings("UnstableApiUsage")
-    private void updateTestCase(TestCase test, TestDescriptor descriptor, TestResult result, StdOutput output) {
+    private TestCase updateTestCase(TestCase test, TestDescriptor descriptor, TestResult result, StdOutput output) {
         // Only change the outcome if the test hasn't passed yet. This occurs when retries are done. Once a test has
         // passed, the only thing collected are outputs and failures
         if (test.status != Status.PASSED) {
             test.status = getStatus(result.getResultType());
         }
-        if (output != null) {
-            test.stdErr += output.err.toString();
-            test.stdOut += output.out.toString();
-        }
+        addOutput(test.getStdErrOutput(), test.getStdOutOutput(), output);
 
         test.failures.addAll(createFailures(result.getFailures()));
+
+        return test;
     }
 
     // meets minimum gradle version 7.6
@@ -347,14 +508,9 @@ public class TestSuiteCollector implements TestListener, TestOutputListener {
         test.sourceFile  = ""; // Assigned in post-processing
         test.url         = ""; // Assigned in post-processing
         test.status      = getStatus(result.getResultType());
-        if (output != null) {
-            test.stdErr = output.err.toString();
-            test.stdOut = output.out.toString();
-        } else {
-            test.stdErr = "";
-            test.stdOut = "";
-        }
-        test.failures = createFailures(result.getFailures());
+        test.failures    = createFailures(result.getFailures());
+        test.setOutputs(new Output(), new Output());
+        addOutput(test.getStdErrOutput(), test.getStdOutOutput(), output);
 
         collectMetrics(test, result);
 
@@ -416,98 +572,6 @@ public class TestSuiteCollector implements TestListener, TestOutputListener {
         return failure;
     }
 
-    private List<String> splitStackTrace(String stackTrace) {
-        var lines = new ArrayList<String>();
-
-        var current = new StringBuilder();
-        int length  = stackTrace.length();
-
-        // Find the first \tat line
-        int i = stackTrace.indexOf(System.lineSeparator() + "\tat");
-        if (i != -1) {
-            lines.add(stackTrace.substring(0, i));
-            i += System.lineSeparator().length();
-        } else {
-            i = 0;
-        }
-
-        while (i < length) {
-            int j = i; // start of the next line
-            int k = i; // end of the next line
-
-            while (i < length) {
-                char ch = stackTrace.charAt(i);
-                if (ch == '\r') {
-                    k = i++;
-                    if (i < length && stackTrace.charAt(i) == '\n') {
-                        i++;
-                    }
-                    break;
-                } else if (ch == '\n') {
-                    k = i++;
-                    break;
-                } else {
-                    i++;
-                }
-            }
-
-            var line = stackTrace.substring(j, k);
-            if (line.startsWith("\tat")) {
-                if (!current.isEmpty()) {
-                    lines.add(current.toString());
-                    current.setLength(0);
-                }
-                lines.add(line);
-            } else {
-                current.append(line);
-            }
-        }
-
-        if (!current.isEmpty()) {
-            lines.add(current.toString());
-        }
-
-        return lines;
-    }
-
-    protected String filterStackTrace(String stackTrace, Predicate<String> stackFilter) {
-        var filtered = new StringBuilder();
-        int more     = 0;
-        int include  = 0;
-
-        for (var line : splitStackTrace(stackTrace)) {
-            if (include-- > 0) {
-                filtered.append(line).append('\n');
-            } else if (line.startsWith("\tat ")) {
-                if (stackFilter.test(line.substring(4))) {
-                    if (more > 0) {
-                        filtered.append("\t... ").append(more).append(" more").append('\n');
-                    }
-                    filtered.append(line).append('\n');
-                    more    = 0;
-                    include = 1;
-                } else {
-                    more += 1;
-                }
-            } else {
-                if (more > 0) {
-                    filtered.append("\t... ").append(more).append(" more").append('\n');
-                }
-                filtered.append(line).append('\n');
-                include = 1;
-            }
-        }
-
-        // Append any leftover
-        if (more > 0) {
-            filtered.append("\t... ").append(more).append(" more");
-        } else if (filtered.charAt(filtered.length() - 1) == '\n') {
-            filtered.setLength(filtered.length() - 1);
-        }
-
-        return filtered.toString();
-    }
-
     // meets minimum gradle version 7.6
     @SuppressWarnings("UnstableApiUsage")
     private FailureType getFailureType(TestFailureDetails details) {
@@ -532,112 +596,143 @@ public class TestSuiteCollector implements TestListener, TestOutputListener {
     }
 
 
-    private static class LineNumberResolver {
-
-        private static final JavaParser PARSER = new JavaParser(new ParserConfiguration()
-                .setLanguageLevel(ParserConfiguration.LanguageLevel.RAW));
-
-        public static int getFailureLineNumber(String className, String methodName, String stackTrace,
-                                               Path sourceFile) {
-            if (methodName.endsWith("()")) {
-                methodName = methodName.substring(0, methodName.length() - 2);
-            }
-
-            int line = -1;
-
-            if (!stackTrace.isEmpty()) {
-                line = getLineNumberFromStackTrace(className + "." + methodName, stackTrace);
-            }
+    /**
+     * Key identifying a test case within a suite
+     */
+    private record TestKey(String className, String name) {
+    }
 
-            if (line == -1 && sourceFile != null) {
-                line = getLineNumberFromSourceFile(methodName, sourceFile);
-            }
+    /**
+     * A test suite along with the index of its test cases, which are merged as test results arrive and only copied to
+     * {@link TestSuite#tests} once the suite is complete.
+     */
+    private static class SuiteNode {
+
+        final TestSuite                        suite;
+        final ConcurrentMap<TestKey, TestCase> tests;
+        final Set<Failure>                     finalizedFailures;
+        volatile TestDescriptor                owner;
+        volatile boolean                       completed;
+        volatile boolean                       finalized;
+        volatile boolean                       reran;
+        long                                   retained;
+
+        SuiteNode(TestDescriptor owner, TestSuite suite) {
+            this.owner             = owner;
+            this.suite             = suite;
+            this.tests             = new ConcurrentHashMap<>();
+            this.finalizedFailures = Collections.newSetFromMap(new IdentityHashMap<>());
+        }
 
-            return line;
+        /**
+         * Reopens the suite for another run of its class, which completes with the given descriptor
+         */
+        synchronized void rerun(TestDescriptor descriptor) {
+            owner     = descriptor;
+            completed = false;
+            finalized = false;
+            reran     = true;
         }
 
-        private static int getLineNumberFromStackTrace(String className, String stackTrace) {
-            int start = stackTrace.indexOf(className);
-            if (start != -1) {
-                // Next we have (filename.java:X)
-                start = stackTrace.indexOf(":", start);
-                if (start != -1) {
-                    int term = stackTrace.indexOf(")", start + 1);
-                    if (term != -1) {
-                        return Integer.parseInt(stackTrace, start + 1, term, 10);
-                    }
-                }
+        /**
+         * Tracks the memory reserved for output retained by the suite, released if the suite is streamed
+         */
+        synchronized void retain(StdOutput output) {
+            if (output != null) {
+                retained += output.err.getReservedSize() + output.out.getReservedSize();
             }
-            return -1;
         }
 
-        private static int getLineNumberFromSourceFile(String methodName, Path sourceFile) {
-            int line = -1;
-
-            try {
-                var source = Files.readString(sourceFile);
-
-                // Do a quick check for the method name appearing only once...
-                int offset = source.indexOf(methodName);
-                if (offset != -1 && offset == source.lastIndexOf(methodName)) {
-                    line = getLineNumberOfOffset(source, offset);
-                }
-
-                if (line == -1) {
-                    line = getLineNumberFromParser(source, methodName);
-                }
-            } catch (IOException e) {
-                // Ignore
+        TestSuite collectTests() {
+            var collected = new ArrayList<>(tests.values());
+            // Keep the order in which the test cases were first reported
+            collected.sort(Comparator.comparingInt(test -> test.id));
+            suite.tests = collected;
+            if (reran) {
+                countTests();
             }
-
-            return line;
+            return suite;
         }
 
-        private static int getLineNumberOfOffset(String source, int offset) {
-            int line = 1;
-            for (int i = 0; i < offset; i++) {
-                char currentChar = source.charAt(i);
-                if (currentChar == '\n') {
-                    line++;
-                } else if (currentChar == '\r') {
-                    line++;
-                    // Handle Windows-style "\r\n" by skipping the next '\n' if present
-                    if (i + 1 < offset && source.charAt(i + 1) == '\n') {
-                        i++; // Skip the '\n' as it's part of "\r\n"
+        /**
+         * Counts the merged test cases, as the counts reported by each run of the class include retried tests again
+         */
+        private void countTests() {
+            synchronized (suite) {
+                suite.total   = suite.tests.size();
+                suite.passed  = 0;
+                suite.skipped = 0;
+                suite.failed  = 0;
+                for (var test : suite.tests) {
+                    switch (test.status) {
+                        case PASSED -> suite.passed++;
+                        case SKIPPED -> suite.skipped++;
+                        case FAILED -> suite.failed++;
                     }
                 }
+                suite.status = suite.failed > 0 ? Status.FAILED
+                        : suite.passed > 0 ? Status.PASSED
+                        : Status.SKIPPED;
             }
-            return line;
         }
+    }
 
-        public static int getLineNumberFromParser(String source, String methodName) {
-            var compilationUnit = PARSER.parse(source).getResult().orElse(null);
-            if (null != compilationUnit) {
-                var lines = compilationUnit.findAll(MethodDeclaration.class,
-                                method -> method.getNameAsString().equals(methodName)
-                                        && method.isAnnotationPresent("Test")).stream()
-                        .map(method -> method.getBegin()
-                                .map(p -> p.line)
-                                .orElse(-1))
-                        .toList();
-
-                if (lines.size() == 1) {
-                    return lines.get(0);
-                }
-            }
+    /**
+     * State for streaming completed suites, see {@link #streamTestSuites(Test, boolean, Consumer)}
+     */
+    private static final class Streaming {
+
+        final Supplier<Map<String, Path>>    sourceFileResolver;
+        final boolean                        release;
+        final Consumer<TestSuite>            handler;
+        final Path                           rootDir;
+        final GitLinkTemplate.GitLinkBuilder gitLinkBuilder;
+        final StackTraceFilter               stackFilter;
+        private Map<String, Path>            sourceFiles;
+
+        Streaming(Supplier<Map<String, Path>> sourceFileResolver, boolean release, Consumer<TestSuite> handler, Path rootDir,
+                  GitLinkTemplate.GitLinkBuilder gitLinkBuilder, StackTraceFilter stackFilter) {
+            this.sourceFileResolver = sourceFileResolver;
+            this.release            = release;
+            this.handler            = handler;
+            this.rootDir            = rootDir;
+            this.gitLinkBuilder     = gitLinkBuilder;
+            this.stackFilter        = stackFilter;
+        }
 
-            return -1;
+        /**
+         * Suites complete one at a time, so the source files of all test classes are resolved once, on first use
+         */
+        synchronized Map<String, Path> getSourceFiles() {
+            if (sourceFiles == null) {
+                sourceFiles = sourceFileResolver.get();
+            }
+            return sourceFiles;
         }
     }
 
     private static class StdOutput {
 
-        StringBuilder err;
-        StringBuilder out;
+        final SpillBuffer err;
+        final SpillBuffer out;
+
+        StdOutput(SpillBuffer.Allocator allocator) {
+            err = allocator.allocate();
+            out = allocator.allocate();
+        }
+
+        // SpillBuffer is not thread-safe, guard against concurrently delivered output events
+        synchronized void append(TestOutputEvent.Destination destination, String message) {
+            if (destination == TestOutputEvent.Destination.StdErr) {
+                err.append(message);
+            } else {
+                out.append(message);
+            }
+        }
 
-        StdOutput() {
-            err = new StringBuilder();
-            out = new StringBuilder();
+        void close() {
+            err.close();
+            out.close();
         }
     }
 }
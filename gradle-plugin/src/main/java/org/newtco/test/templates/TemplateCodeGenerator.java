@@ -18,7 +18,9 @@ package org.newtco.test.templates;
 
 import org.newtco.test.util.CodeGen;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * TemplateCodeGenerator is responsible for generating Java source code for a class that extends a specified template
@@ -26,6 +28,11 @@ import java.util.List;
  * <p>
  * The primary method {@code generateJavaSource} takes a class name and a list of template parts and returns the
  * corresponding Java source code as a String.
+ * <p>
+ * Static text is merged across adjacent parts and written from {@code static final} constants, identical texts share
+ * one constant. Expressions are written with a single-argument {@code out(...)} call, so the compiler selects the
+ * typed overload of {@link org.newtco.test.reports.api.Template} for primitive results instead of boxing them into a
+ * varargs array.
  */
 public class TemplateCodeGenerator {
 
@@ -69,10 +76,36 @@ public class TemplateCodeGenerator {
             source.append("import ").append(name).append(";\n");
         }
 
+        // Generate code for each template part, collecting the static text constants
+        var texts  = new LinkedHashMap<String, String>();
+        var render = new StringBuilder();
+        var text   = new StringBuilder();
+        for (TemplateParser.TemplatePart part : parts) {
+            if (part.type == TemplateParser.PartType.TEXT) {
+                text.append(part.content);
+            } else if (part.type == TemplateParser.PartType.EXPRESSION) {
+                appendText(render, text, texts);
+                render.append("    out(").append(part.content.trim()).append(");\n");
+            } else if (part.type == TemplateParser.PartType.CODE) {
+                appendText(render, text, texts);
+                render.append(indent("    ", part.content)).append("\n");
+            }
+        }
+        appendText(render, text, texts);
+
         source.append("\n\n")
                 .append("public class ").append(className)
-                .append(" extends ").append(parentClass.getSimpleName()).append("<").append(className).append("> {\n")
-                .append("  ").append(signature.getSignature()).append(" {\n")
+                .append(" extends ").append(parentClass.getSimpleName()).append("<").append(className).append("> {\n");
+
+        for (var constant : texts.entrySet()) {
+            source.append("  private static final String ").append(constant.getValue())
+                    .append(" = \"").append(escapeJavaString(constant.getKey())).append("\";\n");
+        }
+        if (!texts.isEmpty()) {
+            source.append("\n");
+        }
+
+        source.append("  ").append(signature.getSignature()).append(" {\n")
                 .append("    super(").append(String.join(", ", signature.getParameterNames())).append(");\n")
                 .append("  }\n\n")
                 .append("  @Override\n")
@@ -80,20 +113,8 @@ public class TemplateCodeGenerator {
                 .append("    return this;\n")
                 .append("  }\n\n")
                 .append("  @Override\n")
-                .append("  public void render() throws Exception {\n");
-
-
-        // Generate code for each template part
-        for (TemplateParser.TemplatePart part : parts) {
-            if (part.type == TemplateParser.PartType.TEXT) {
-                var text = escapeJavaString(part.content);
-                source.append("    out(\"").append(text).append("\");\n");
-            } else if (part.type == TemplateParser.PartType.EXPRESSION) {
-                source.append("    out(").append(part.content.trim()).append(");\n");
-            } else if (part.type == TemplateParser.PartType.CODE) {
-                source.append(indent("    ", part.content)).append("\n");
-            }
-        }
+                .append("  public void render() throws Exception {\n")
+                .append(render);
 
         // Close method and class
         source.append("  }\n");
@@ -113,6 +134,20 @@ public class TemplateCodeGenerator {
         return CodeGen.Signature.of(constructors[0], className);
     }
 
+    /**
+     * Appends the output of the pending static text, if any, and clears it. The text is written from a constant, which
+     * is shared by all occurrences of the same text.
+     */
+    private void appendText(StringBuilder render, StringBuilder text, Map<String, String> texts) {
+        if (text.length() == 0) {
+            return;
+        }
+
+        var constant = texts.computeIfAbsent(text.toString(), unused -> "TEXT_" + texts.size());
+        render.append("    out(").append(constant).append(");\n");
+        text.setLength(0);
+    }
+
     private String indent(String spaces, String text) {
         var indented = new StringBuilder();
         for (var line : text.split("\n")) {
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.newtco.test.templates;
+
+import org.newtco.test.reports.api.Template;
+import org.newtco.test.util.Reflect;
+import org.gradle.api.reflect.ObjectInstantiationException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Creates instances of a template class. The constructor of the class is resolved once into a {@code MethodHandle}
+ * taking the constructor parameters as an array, so creating an instance costs about the same as calling the
+ * constructor directly. Generated templates always have a single public constructor; classes with several constructors
+ * are instantiated reflectively, matching the constructor to the parameters of each call.
+ */
+final class TemplateFactory {
+    private static final MethodType FactoryType = MethodType.methodType(Template.class, Object[].class);
+
+    private final Class<?>     templateClass;
+    private final MethodHandle constructor;
+
+    private TemplateFactory(Class<?> templateClass, MethodHandle constructor) {
+        this.templateClass = templateClass;
+        this.constructor   = constructor;
+    }
+
+    static TemplateFactory of(Class<?> templateClass) {
+        var constructors = templateClass.getConstructors();
+        if (constructors.length != 1) {
+            return new TemplateFactory(templateClass, null);
+        }
+
+        try {
+            var constructor = MethodHandles.publicLookup()
+                    .unreflectConstructor(constructors[0])
+                    .asFixedArity()
+                    .asSpreader(Object[].class, constructors[0].getParameterCount())
+                    .asType(FactoryType);
+            return new TemplateFactory(templateClass, constructor);
+        } catch (IllegalAccessException e) {
+            // Not accessible as a public member, e.g. a nested class of a non-public class
+            return new TemplateFactory(templateClass, null);
+        }
+    }
+
+    Class<?> getTemplateClass() {
+        return templateClass;
+    }
+
+    /**
+     * Creates a new instance of the template class.
+     *
+     * @param parameters the parameters to be passed to the constructor of the template class
+     * @return the new template instance
+     * @throws ObjectInstantiationException if the parameters do not match the constructor, or the constructor fails
+     */
+    Template<?> create(Object... parameters) {
+        if (constructor == null) {
+            return (Template<?>) Reflect.newInstance(templateClass, parameters);
+        }
+
+        try {
+            return (Template<?>) constructor.invokeExact(parameters);
+        } catch (Throwable e) {
+            throw new ObjectInstantiationException(templateClass, e);
+        }
+    }
+}
@@ -17,7 +17,6 @@
 package org.newtco.test.templates;
 
 import org.newtco.test.reports.api.Template;
-import org.newtco.test.util.Reflect;
 import org.gradle.api.GradleException;
 
 import java.io.File;
@@ -27,19 +26,25 @@ import java.net.URLClassLoader;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * The TemplateInstantiator class is responsible for dynamically loading classes that implement the Template interface
  * and creating instances of those classes. It maintains a classpath and class loader to manage the loading process.
+ * <p>
+ * Each template class is resolved once, and instances are created through a cached {@link TemplateFactory}.
  */
 public class TemplateInstantiator {
 
-    private final    Set<String> classpath;
-    private volatile ClassLoader classLoader;
-    private          String      packageName;
+    private final    Set<String>                           classpath;
+    private final    ConcurrentMap<String, TemplateFactory> factories;
+    private volatile ClassLoader                           classLoader;
+    private          String                                packageName;
 
     public TemplateInstantiator() {
         this.classpath = new LinkedHashSet<>();
+        this.factories = new ConcurrentHashMap<>();
     }
 
     /**
@@ -89,12 +94,28 @@ public class TemplateInstantiator {
      * @throws ClassNotFoundException if the template class cannot be found
      */
     public Template<?> createTemplate(String templateName, Object... parameters) throws ClassNotFoundException {
-        return (Template<?>) Reflect.newInstance(getTemplateClass(templateName), parameters);
+        return getTemplateFactory(templateName).create(parameters);
     }
 
-    private Class<?> getTemplateClass(String templateName) throws ClassNotFoundException {
+    /**
+     * Returns the factory of a template class, resolving the class on first use.
+     */
+    TemplateFactory getTemplateFactory(String templateName) throws ClassNotFoundException {
         var canonicalName = packageName + "." + templateName;
 
+        var factory = factories.get(canonicalName);
+        if (factory == null) {
+            factory = TemplateFactory.of(getTemplateClass(canonicalName));
+
+            var existing = factories.putIfAbsent(canonicalName, factory);
+            if (existing != null) {
+                factory = existing;
+            }
+        }
+        return factory;
+    }
+
+    private Class<?> getTemplateClass(String canonicalName) throws ClassNotFoundException {
         var clazz = getClassLoader().loadClass(canonicalName);
         if (Template.class.isAssignableFrom(clazz)) {
             return clazz;
@@ -18,76 +18,179 @@ package org.newtco.test.templates;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
 
 /**
  * The TemplateParser class is responsible for parsing template strings into structured parts, which can be either
  * static text, expressions, or code blocks.
  * <p>
- * The parts are identified using regular expressions and organized into a list, making it easier to process and
- * transform template content into executable code.
+ * The template is tokenized in a single pass. Each part records the line and column where it starts in the template,
+ * including its delimiters. Expressions and code blocks end at the first {@code %>}, so they may contain {@code %}
+ * characters, e.g. for the remainder operator.
  */
 public class TemplateParser {
 
-    private static final Pattern TOKEN_PATTERN = Pattern.compile(
-            // Matches:
-            //  expressions within <%= %>
-            //  import statements
-            //  code blocks within <% %>
-            "(<%=([^%]*?)%>)" +                         // Group 1: <%= ... %> expressions; Group 2 for the inner content
-                    "|" +
-                    "(^import\\s+([^;\\r\\n]*);[\\r\\n])" +     // Group 2: Import statements; Group 4 for the inner content
-                    "|" +
-                    "(<%([^%]*?)%>)",                           // Group 5: <% ... %> code blocks; Group 6 for the inner content
-            Pattern.MULTILINE | Pattern.DOTALL
-    );
-
     /**
      * Parses the given template content string into a list of TemplatePart objects, which represent different parts of
      * the template, including static text, expressions, and code blocks.
      *
      * @param templateContent The content of the template to be parsed.
      * @return A list of TemplatePart objects representing the parsed parts of the template.
+     * @throws IllegalArgumentException if an expression or code block is not terminated
      */
     public List<TemplatePart> parse(String templateContent) {
-        var parts   = new ArrayList<TemplatePart>();
-        var matcher = TOKEN_PATTERN.matcher(templateContent);
-
-        int lastIndex = 0;
-        while (matcher.find()) {
-            int start = matcher.start();
-            int end   = matcher.end();
-
-            // Add static text before the token
-            if (start > lastIndex) {
-                var text = templateContent.substring(lastIndex, start);
-                parts.add(new TemplatePart(PartType.TEXT, text));
+        return new Lexer(templateContent).tokenize();
+    }
+
+    /**
+     * Splits a template into parts, tracking the line and column of the current position.
+     */
+    private static final class Lexer {
+        private final String             source;
+        private final int                length;
+        private final List<TemplatePart> parts;
+
+        private int pos;
+        private int line;
+        private int lineStart;
+
+        Lexer(String source) {
+            this.source = source;
+            this.length = source.length();
+            this.parts  = new ArrayList<>();
+            this.line   = 1;
+        }
+
+        List<TemplatePart> tokenize() {
+            int textStart  = 0;
+            int textLine   = line;
+            int textColumn = column();
+
+            while (pos < length) {
+                int  start = pos;
+                char ch    = source.charAt(pos);
+                if (ch == '<' && source.startsWith("<%", pos)) {
+                    addText(textStart, start, textLine, textColumn);
+                    block();
+                } else if (ch == 'i' && isLineStart(pos) && isImportStatement()) {
+                    addText(textStart, start, textLine, textColumn);
+                    importStatement();
+                } else {
+                    advance();
+                    continue;
+                }
+
+                textStart  = pos;
+                textLine   = line;
+                textColumn = column();
             }
 
-            if (matcher.group(1) != null) {
-                // Expression output within <%= %>
-                var expression = matcher.group(2); // Do not trim to preserve formatting
-                parts.add(new TemplatePart(PartType.EXPRESSION, expression));
-            } else if (matcher.group(3) != null) {
-                // import statements
-                var expression = matcher.group(4).trim();
-                parts.add(new TemplatePart(PartType.IMPORT, expression));
-            } else if (matcher.group(5) != null) {
-                // Code block within <% %>
-                var code = matcher.group(6); // Do not trim to preserve formatting
-                parts.add(new TemplatePart(PartType.CODE, code));
+            // Add any remaining static text
+            addText(textStart, length, textLine, textColumn);
+            return parts;
+        }
+
+        /**
+         * Reads an expression within {@code <%= %>} or a code block within {@code <% %>}. The content is not trimmed to
+         * preserve formatting.
+         */
+        private void block() {
+            int     startLine    = line;
+            int     startColumn  = column();
+            boolean expression   = source.startsWith("<%=", pos);
+            int     contentStart = pos + (expression ? 3 : 2);
+            int     contentEnd   = source.indexOf("%>", contentStart);
+            if (contentEnd < 0) {
+                throw new IllegalArgumentException(String.format("Unterminated %s starting at line %d, column %d",
+                        expression ? "expression" : "code block", startLine, startColumn));
             }
 
-            lastIndex = end;
+            parts.add(new TemplatePart(expression ? PartType.EXPRESSION : PartType.CODE,
+                    source.substring(contentStart, contentEnd), startLine, startColumn));
+            advanceTo(contentEnd + 2);
+        }
+
+        /**
+         * Returns whether an import statement starts at the current position, which is the start of a line. The
+         * statement must be terminated by a semicolon directly followed by the end of the line.
+         */
+        private boolean isImportStatement() {
+            return importEnd() >= 0;
         }
 
-        // Add any remaining static text
-        if (lastIndex < templateContent.length()) {
-            var text = templateContent.substring(lastIndex);
-            parts.add(new TemplatePart(PartType.TEXT, text));
+        private void importStatement() {
+            int end     = importEnd();
+            int nameEnd = source.lastIndexOf(';', end);
+            parts.add(new TemplatePart(PartType.IMPORT,
+                    source.substring(pos + "import".length(), nameEnd).trim(), line, column()));
+            advanceTo(end);
         }
 
-        return parts;
+        /**
+         * Returns the end of the import statement at the current position including its line break, or -1 when there
+         * is none.
+         */
+        private int importEnd() {
+            if (!source.startsWith("import", pos)) {
+                return -1;
+            }
+
+            int i               = pos + "import".length();
+            int whitespaceStart = i;
+            while (i < length && isWhitespace(source.charAt(i))) {
+                i++;
+            }
+            if (i == whitespaceStart) {
+                return -1;
+            }
+
+            while (i < length && ";\r\n".indexOf(source.charAt(i)) < 0) {
+                i++;
+            }
+            if (i + 1 >= length || source.charAt(i) != ';' || !isLineBreak(source.charAt(i + 1))) {
+                return -1;
+            }
+
+            return source.startsWith("\r\n", i + 1) ? i + 3 : i + 2;
+        }
+
+        private void addText(int start, int end, int textLine, int textColumn) {
+            if (end > start) {
+                parts.add(new TemplatePart(PartType.TEXT, source.substring(start, end), textLine, textColumn));
+            }
+        }
+
+        private void advanceTo(int end) {
+            while (pos < end) {
+                advance();
+            }
+        }
+
+        /**
+         * Moves past the current character. A line ends at "\n", "\r\n" or a lone "\r".
+         */
+        private void advance() {
+            char ch = source.charAt(pos++);
+            if (ch == '\n' || (ch == '\r' && (pos == length || source.charAt(pos) != '\n'))) {
+                line++;
+                lineStart = pos;
+            }
+        }
+
+        private int column() {
+            return pos - lineStart + 1;
+        }
+
+        private boolean isLineStart(int index) {
+            return index == 0 || isLineBreak(source.charAt(index - 1));
+        }
+
+        private static boolean isLineBreak(char ch) {
+            return ch == '\n' || ch == '\r';
+        }
+
+        private static boolean isWhitespace(char ch) {
+            return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B' || ch == '\f' || ch == '\r';
+        }
     }
 
     public enum PartType {
@@ -100,10 +203,22 @@ public class TemplateParser {
     public static class TemplatePart {
         public PartType type;
         public String   content;
+        public int      line;
+        public int      column;
 
         public TemplatePart(PartType type, String content) {
+            this(type, content, 0, 0);
+        }
+
+        /**
+         * @param line   the 1-based line of the part in the template, or 0 when unknown
+         * @param column the 1-based column of the part in the template, or 0 when unknown
+         */
+        public TemplatePart(PartType type, String content, int line, int column) {
             this.type    = type;
             this.content = content;
+            this.line    = line;
+            this.column  = column;
         }
 
         public PartType getType() {
@@ -114,6 +229,14 @@ public class TemplateParser {
             return content;
         }
 
+        public int getLine() {
+            return line;
+        }
+
+        public int getColumn() {
+            return column;
+        }
+
         @Override
         public String toString() {
             return type + ": " + content;
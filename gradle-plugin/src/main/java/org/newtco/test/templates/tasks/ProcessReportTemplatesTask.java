@@ -20,29 +20,62 @@ import org.newtco.test.reports.api.coverage.CoverageTemplate;
 import org.newtco.test.reports.api.test.TestTemplate;
 import org.newtco.test.templates.TemplateCodeGenerator;
 import org.newtco.test.templates.TemplateParser;
+import org.gradle.api.GradleException;
 import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileSystemOperations;
+import org.gradle.api.file.FileTree;
+import org.gradle.api.file.FileType;
 import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.IgnoreEmptyDirectories;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
 import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.SkipWhenEmpty;
 import org.gradle.api.tasks.SourceTask;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.ChangeType;
+import org.gradle.work.Incremental;
+import org.gradle.work.InputChanges;
 
+import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 
 /**
  * The ProcessReportTemplatesTask class is responsible for processing report template files and generating Java source
  * code based on the report-templates. The generated source files are placed in the specified output directory.
+ * <p>
+ * The task is incremental: only added or modified templates are regenerated, and the sources of removed templates are
+ * deleted. Its outputs are cacheable, so unchanged templates never cause the template source set to recompile.
  */
+@CacheableTask
 public abstract class ProcessReportTemplatesTask extends SourceTask {
     public static final String TASK_NAME = "processReportTemplates";
 
     public ProcessReportTemplatesTask() {
         getTemplatePackage().convention("org.newtco.test.report.templates");
+    }
 
-        // Always regenerate source code
-        super.setOnlyIf("Do not cache", (unused) -> true);
+    /**
+     * The report template files. Paths are tracked relative to the template source directories, since the report
+     * type is derived from the parent directory of each template.
+     *
+     * @return the template files
+     */
+    @Override
+    @InputFiles
+    @SkipWhenEmpty
+    @IgnoreEmptyDirectories
+    @Incremental
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public FileTree getSource() {
+        return super.getSource();
     }
 
     /**
@@ -62,50 +95,104 @@ public abstract class ProcessReportTemplatesTask extends SourceTask {
     @Input
     public abstract Property<String> getTemplatePackage();
 
+    @Inject
+    protected abstract FileSystemOperations getFileSystemOperations();
+
 
     /**
      * Generates Java source files from template files located in the source directories. The method processes each
-     * template, derives the corresponding package name, class name, parent class, and parses the template content to
-     * generate the final source code. The generated source code is then written to the specified output directory.
+     * added or modified template, derives the corresponding package name, class name, parent class, and parses the
+     * template content to generate the final source code. The generated source code is then written to the specified
+     * output directory, and the source files of removed templates are deleted. When the changes are not known, e.g. on
+     * the first run, the output directory is cleared and all templates are processed.
      * <p>
      * Parent template classes are always one of the API template classes
      *
+     * @param inputChanges the changes to the template files since the last execution
      * @throws IOException If an I/O error occurs during template processing or file writing
      */
     @TaskAction
-    public void generate() throws IOException {
+    public void generate(InputChanges inputChanges) throws IOException {
         var logger    = getLogger();
         var outputDir = getOutputDirectory().get().getAsFile().getAbsoluteFile();
 
-        logger.lifecycle("ProcessTemplatesTask generating source files to output directory {}", outputDir);
-
-        for (var templateFile : getSource().getFiles()) {
-            logger.info("Processing template: {}", templateFile);
-
-            // For each file in the source directories, the template can be one of:
-            var packageName         = derivePackageNameFromTemplateFile(templateFile);
-            var templateClassName   = deriveClassNameFromTemplateFile(templateFile);
-            var templateParentClass = getParentTemplateClass(templateFile);
-            var templateParts       = new TemplateParser().parse(Files.readString(templateFile.toPath()));
-
-            var generatedSource = new TemplateCodeGenerator().generateTemplateClass(
-                    packageName,
-                    templateClassName,
-                    templateParentClass,
-                    templateParts);
-
-            // Write the source to the target directory
-            var outputFile = getOutputDirectory().dir(packageName.replace('.', '/'))
-                    .get()
-                    .file(templateClassName + ".java")
-                    .getAsFile()
-                    .getAbsoluteFile()
-                    .toPath();
-            Files.createDirectories(outputFile.getParent());
-            Files.writeString(outputFile, generatedSource);
-
-            logger.info("Generated template source file {}", outputFile);
+        if (inputChanges.isIncremental()) {
+            logger.lifecycle("ProcessTemplatesTask updating source files in output directory {}", outputDir);
+        } else {
+            logger.lifecycle("ProcessTemplatesTask generating source files to output directory {}", outputDir);
+            getFileSystemOperations().delete(spec -> spec.delete(getOutputDirectory().getAsFileTree()));
+        }
+
+        for (var change : inputChanges.getFileChanges(getSource())) {
+            if (change.getFileType() == FileType.DIRECTORY) {
+                continue;
+            }
+
+            var templateFile = change.getFile();
+            if (change.getChangeType() == ChangeType.REMOVED) {
+                removeTemplateSource(templateFile);
+            } else {
+                generateTemplateSource(templateFile);
+            }
+        }
+    }
+
+    private void generateTemplateSource(File templateFile) throws IOException {
+        var logger = getLogger();
+        logger.info("Processing template: {}", templateFile);
+
+        // For each file in the source directories, the template can be one of:
+        var packageName         = derivePackageNameFromTemplateFile(templateFile);
+        var templateClassName   = deriveClassNameFromTemplateFile(templateFile);
+        var templateParentClass = getParentTemplateClass(templateFile);
+        var templateParts       = parseTemplate(templateFile);
+
+        var generatedSource = new TemplateCodeGenerator().generateTemplateClass(
+                packageName,
+                templateClassName,
+                templateParentClass,
+                templateParts);
+
+        // Write the source to the target directory
+        var outputFile = getTemplateSourceFile(packageName, templateClassName);
+        Files.createDirectories(outputFile.getParent());
+        Files.writeString(outputFile, generatedSource);
+
+        logger.info("Generated template source file {}", outputFile);
+    }
+
+    private List<TemplateParser.TemplatePart> parseTemplate(File templateFile) throws IOException {
+        try {
+            return new TemplateParser().parse(Files.readString(templateFile.toPath()));
+        } catch (IllegalArgumentException ex) {
+            throw new GradleException("Invalid template \"" + templateFile.getAbsolutePath() + "\": " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Deletes the generated source file of a removed template. Removed files that were never valid templates did not
+     * generate a source file and are ignored.
+     */
+    private void removeTemplateSource(File templateFile) throws IOException {
+        if (!templateFile.getName().endsWith("MarkdownReport.jrt")) {
+            return;
         }
+
+        var outputFile = getTemplateSourceFile(
+                derivePackageNameFromTemplateFile(templateFile),
+                deriveClassNameFromTemplateFile(templateFile));
+        if (Files.deleteIfExists(outputFile)) {
+            getLogger().info("Deleted source file {} of removed template {}", outputFile, templateFile);
+        }
+    }
+
+    private Path getTemplateSourceFile(String packageName, String templateClassName) {
+        return getOutputDirectory().dir(packageName.replace('.', '/'))
+                .get()
+                .file(templateClassName + ".java")
+                .getAsFile()
+                .getAbsoluteFile()
+                .toPath();
     }
 
     /**
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.newtco.test.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of report files. When enabled, report content is compressed with GZIP as it is written, so no uncompressed
+ * copy of a report is ever written to disk, and the file name of a report gets the ".gz" extension.
+ */
+public final class Compression {
+
+    /**
+     * Reports are written uncompressed
+     */
+    public static final Compression NONE = new Compression(false, Deflater.DEFAULT_COMPRESSION, 8192);
+
+    private final boolean enabled;
+    private final int     level;
+    private final int     bufferSize;
+
+    private Compression(boolean enabled, int level, int bufferSize) {
+        this.enabled    = enabled;
+        this.level      = level;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Compresses reports with GZIP.
+     *
+     * @param level      the compression level, from 0 (no compression) to 9 (best compression), or -1 for the default
+     * @param bufferSize the size in bytes of the buffer of the compressor
+     */
+    public static Compression gzip(int level, int bufferSize) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level + ". Must be between -1 and 9");
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid compression buffer size: " + bufferSize + ". Must be positive");
+        }
+        return new Compression(true, level, bufferSize);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the extension added to the names of report files, empty if not compressed
+     */
+    public String getFileExtension() {
+        return enabled ? ".gz" : "";
+    }
+
+    /**
+     * Returns the given report file with the extension of the compression added
+     */
+    public Path resolve(Path file) {
+        return enabled ? file.resolveSibling(file.getFileName() + getFileExtension()) : file;
+    }
+
+    /**
+     * Opens a writer of UTF-8 text to a report file, compressing the text if enabled.
+     *
+     * @param file    the report file
+     * @param options the options used to open the file
+     * @return the writer, which closes the file when closed
+     */
+    public Writer newWriter(Path file, OpenOption... options) throws IOException {
+        if (!enabled) {
+            return Utf8ChannelWriter.open(file, options);
+        }
+        return newWriter(Files.newOutputStream(file, options));
+    }
+
+    /**
+     * Opens a writer of UTF-8 text to a stream, compressing the text if enabled.
+     *
+     * @param out the stream
+     * @return the writer, which closes the stream when closed
+     */
+    public Writer newWriter(OutputStream out) throws IOException {
+        if (enabled) {
+            out = new LevelGZIPOutputStream(out, bufferSize, level);
+        }
+        return new Utf8ChannelWriter(out);
+    }
+
+    /**
+     * GZIPOutputStream does not take a compression level, but exposes its deflater to subclasses
+     */
+    private static class LevelGZIPOutputStream extends GZIPOutputStream {
+
+        LevelGZIPOutputStream(OutputStream out, int size, int level) throws IOException {
+            super(out, size);
+            def.setLevel(level);
+        }
+    }
+}
@@ -88,13 +88,8 @@ public class FilterSet {
             return (unused) -> true;
         }
 
-        var includesRgx = includes.isEmpty()
-                ? null
-                : Pattern.compile(antToRegex(includes), caseSensitive ? 0 : Pattern.CASE_INSENSITIVE);
-
-        var excludesRgx = excludes.isEmpty()
-                ? null
-                : Pattern.compile(antToRegex(excludes), caseSensitive ? 0 : Pattern.CASE_INSENSITIVE);
+        var includesRgx = compile(includes);
+        var excludesRgx = compile(excludes);
 
         return (value) -> {
             // The rules are:
@@ -109,6 +104,19 @@ public class FilterSet {
         };
     }
 
+    /**
+     * Creates a filter of stack trace frames matching this filter set, see {@link StackTraceFilter}
+     */
+    public StackTraceFilter asStackTraceFilter() {
+        return new StackTraceFilter(compile(includes), compile(excludes));
+    }
+
+    private Pattern compile(Set<String> patterns) {
+        return patterns.isEmpty()
+                ? null
+                : Pattern.compile(antToRegex(patterns), caseSensitive ? 0 : Pattern.CASE_INSENSITIVE);
+    }
+
     private String antToRegex(Set<String> patterns) {
         return patterns.stream()
                 .map(pattern -> {
@@ -0,0 +1,461 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.newtco.test.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A single-pass lexical scanner locating method declarations within Java source code, along with their lines and
+ * whether they are annotated with {@code @Test}.
+ * <p>
+ * The scanner understands comments, string and character literals and text blocks, but does not otherwise parse the
+ * source. A method declaration is recognized as an identifier followed by a parameter list and a body or {@code ;},
+ * where the identifier is preceded by a type such as {@code void}, {@code List<String>} or {@code int[]}. This is
+ * considerably cheaper than a full parse, at the cost of rare misidentification in unusual code, so callers needing
+ * certainty should fall back to a parser when the results are ambiguous.
+ */
+public class JavaMethodScanner {
+
+    // Identifiers which are never method names, but may be followed by '('
+    private static final Set<String> NON_METHOD_NAMES = Set.of(
+            "if", "for", "while", "switch", "catch", "synchronized", "return", "new", "super", "this", "try",
+            "assert", "throw", "yield", "else", "case", "default");
+
+    // Identifiers which may not precede a method name, as they are not the end of a type
+    private static final Set<String> NON_TYPE_PREDECESSORS = Set.of(
+            "new", "return", "throw", "else", "case", "yield", "assert", "do", "instanceof", "record", "throws",
+            "extends", "implements", "permits", "import", "package");
+
+    private final CharSequence source;
+    private final int          length;
+    private final List<Method> methods;
+
+    private int     pos;
+    private int     line;
+    private Token   previous;
+    private String  previousIdentifier;
+    private boolean testAnnotated;
+
+    private JavaMethodScanner(CharSequence source) {
+        this.source   = source;
+        this.length   = source.length();
+        this.methods  = new ArrayList<>();
+        this.line     = 1;
+        this.previous = Token.SYMBOL;
+    }
+
+    /**
+     * Scans the source for method declarations.
+     *
+     * @param source the Java source code
+     * @return the method declarations in source order
+     */
+    public static List<Method> scan(CharSequence source) {
+        var scanner = new JavaMethodScanner(source);
+        scanner.scan();
+        return scanner.methods;
+    }
+
+    private void scan() {
+        while (skipTrivia()) {
+            char ch = source.charAt(pos);
+
+            if (ch == '"' || ch == '\'') {
+                skipLiteral();
+                previous = Token.LITERAL;
+            } else if (ch == '@') {
+                pos++;
+                scanAnnotation();
+            } else if (Character.isJavaIdentifierStart(ch)) {
+                scanIdentifier();
+            } else {
+                pos++;
+                if (ch == '-' && pos < length && source.charAt(pos) == '>') {
+                    pos++;
+                    previous = Token.ARROW;
+                } else {
+                    previous = switch (ch) {
+                        case '.' -> Token.DOT;
+                        case '>', ']' -> Token.TYPE_END;
+                        default -> Token.SYMBOL;
+                    };
+                }
+
+                if (ch == ';' || ch == '{' || ch == '}') {
+                    testAnnotated = false;
+                }
+            }
+        }
+    }
+
+    private void scanAnnotation() {
+        skipTrivia();
+        int    start = pos;
+        String name  = readIdentifier();
+        if ("interface".equals(name)) {
+            // Annotation type declaration
+            previousIdentifier = name;
+            previous           = Token.IDENTIFIER;
+            return;
+        }
+
+        // Qualified names, the last segment is the annotation's simple name
+        while (name != null) {
+            int mark = pos;
+            int markLine = line;
+            skipTrivia();
+            if (pos < length && source.charAt(pos) == '.') {
+                pos++;
+                skipTrivia();
+                var segment = readIdentifier();
+                if (segment != null) {
+                    name = segment;
+                    continue;
+                }
+            }
+            pos  = mark;
+            line = markLine;
+            break;
+        }
+
+        if ("Test".equals(name)) {
+            testAnnotated = true;
+        }
+
+        // Skip any annotation arguments
+        int mark     = pos;
+        int markLine = line;
+        if (start != pos && skipTrivia() && source.charAt(pos) == '(') {
+            skipParameters(null);
+        } else {
+            pos  = mark;
+            line = markLine;
+        }
+        previous = Token.SYMBOL;
+    }
+
+    private void scanIdentifier() {
+        int    nameLine = line;
+        String name     = readIdentifier();
+
+        if (isMethodNameCandidate(name)) {
+            int mark     = pos;
+            int markLine = line;
+
+            if (skipTrivia() && source.charAt(pos) == '(') {
+                var parameters = new StringBuilder();
+                if (skipParameters(parameters) && isDeclarationBody()) {
+                    methods.add(new Method(name, nameLine, testAnnotated, parameterTypes(parameters)));
+                    testAnnotated      = false;
+                    previous           = Token.SYMBOL;
+                    previousIdentifier = null;
+                    return;
+                }
+            }
+
+            pos  = mark;
+            line = markLine;
+        }
+
+        previous           = Token.IDENTIFIER;
+        previousIdentifier = name;
+    }
+
+    private boolean isMethodNameCandidate(String name) {
+        if (NON_METHOD_NAMES.contains(name)) {
+            return false;
+        }
+        return switch (previous) {
+            case IDENTIFIER -> !NON_TYPE_PREDECESSORS.contains(previousIdentifier);
+            case TYPE_END -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Whether a declaration body or terminator follows the parameters, allowing for a {@code throws} clause
+     */
+    private boolean isDeclarationBody() {
+        if (!skipTrivia()) {
+            return false;
+        }
+
+        char ch = source.charAt(pos);
+        if (ch == '{' || ch == ';') {
+            return true;
+        }
+
+        int mark = pos;
+        if ("throws".equals(readIdentifier())) {
+            while (skipTrivia()) {
+                ch = source.charAt(pos);
+                if (ch == '{' || ch == ';') {
+                    return true;
+                }
+                if (ch != ',' && ch != '.' && ch != '<' && ch != '>' && !Character.isJavaIdentifierPart(ch)) {
+                    return false;
+                }
+                pos++;
+            }
+        }
+        pos = mark;
+        return false;
+    }
+
+    /**
+     * Skips a balanced parenthesized list, starting at the opening parenthesis, and optionally collects its content
+     * excluding comments.
+     */
+    private boolean skipParameters(StringBuilder content) {
+        int depth = 0;
+        while (true) {
+            int trivia = pos;
+            if (!skipTrivia()) {
+                return false;
+            }
+            if (content != null && trivia != pos) {
+                // Whitespace and comments separate words
+                content.append(' ');
+            }
+
+            char ch = source.charAt(pos);
+            if (ch == '"' || ch == '\'') {
+                int start = pos;
+                skipLiteral();
+                if (content != null) {
+                    content.append(source, start, pos);
+                }
+                continue;
+            }
+
+            pos++;
+            if (ch == '(') {
+                if (depth++ == 0) {
+                    continue;
+                }
+            } else if (ch == ')') {
+                if (--depth == 0) {
+                    return true;
+                }
+            } else if (ch == ';' || ch == '{' || ch == '}') {
+                // Not a parameter list
+                return false;
+            }
+
+            if (content != null) {
+                content.append(ch);
+            }
+        }
+    }
+
+    /**
+     * Skips whitespace and comments, counting lines
+     *
+     * @return true if there are characters remaining
+     */
+    private boolean skipTrivia() {
+        while (pos < length) {
+            char ch = source.charAt(pos);
+            if (ch == '\n' || ch == '\r') {
+                newLine(ch);
+            } else if (ch == ' ' || ch == '\t' || ch == '\f') {
+                pos++;
+            } else if (ch == '/' && pos + 1 < length && source.charAt(pos + 1) == '/') {
+                pos += 2;
+                while (pos < length && source.charAt(pos) != '\n' && source.charAt(pos) != '\r') {
+                    pos++;
+                }
+            } else if (ch == '/' && pos + 1 < length && source.charAt(pos + 1) == '*') {
+                pos += 2;
+                while (pos < length && !(source.charAt(pos) == '*' && pos + 1 < length && source.charAt(pos + 1) == '/')) {
+                    skipChar();
+                }
+                pos += 2;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Skips a string or character literal or a text block, starting at its opening quote
+     */
+    private void skipLiteral() {
+        char quote = source.charAt(pos);
+        if (quote == '"' && pos + 2 < length && source.charAt(pos + 1) == '"' && source.charAt(pos + 2) == '"') {
+            pos += 3;
+            while (pos < length) {
+                char ch = source.charAt(pos);
+                if (ch == '\\') {
+                    pos++;
+                    skipChar();
+                } else if (ch == '"' && pos + 2 < length && source.charAt(pos + 1) == '"' && source.charAt(pos + 2) == '"') {
+                    pos += 3;
+                    return;
+                } else {
+                    skipChar();
+                }
+            }
+            return;
+        }
+
+        pos++;
+        while (pos < length) {
+            char ch = source.charAt(pos);
+            if (ch == '\\') {
+                pos += 2;
+            } else if (ch == quote) {
+                pos++;
+                return;
+            } else if (ch == '\n' || ch == '\r') {
+                // Unterminated literal, resume at the next line
+                return;
+            } else {
+                pos++;
+            }
+        }
+    }
+
+    private void skipChar() {
+        if (pos < length) {
+            char ch = source.charAt(pos);
+            if (ch == '\n' || ch == '\r') {
+                newLine(ch);
+            } else {
+                pos++;
+            }
+        }
+    }
+
+    private void newLine(char ch) {
+        pos++;
+        if (ch == '\r' && pos < length && source.charAt(pos) == '\n') {
+            pos++;
+        }
+        line++;
+    }
+
+    private String readIdentifier() {
+        if (pos >= length || !Character.isJavaIdentifierStart(source.charAt(pos))) {
+            return null;
+        }
+
+        int start = pos++;
+        while (pos < length && Character.isJavaIdentifierPart(source.charAt(pos))) {
+            pos++;
+        }
+        return source.subSequence(start, pos).toString();
+    }
+
+    /**
+     * Extracts the simple type names of a parameter list, for example {@code final Map<String, List<Integer>> map,
+     * String... args} results in {@code [Map, String[]]}
+     */
+    static List<String> parameterTypes(CharSequence parameters) {
+        // Remove type arguments and annotations, neither of which are part of the erased type
+        var erased = new StringBuilder(parameters.length());
+        int depth  = 0;
+        for (int i = 0, n = parameters.length(); i < n; i++) {
+            char ch = parameters.charAt(i);
+            if (ch == '<') {
+                depth++;
+            } else if (ch == '>') {
+                depth--;
+            } else if (depth > 0) {
+                continue;
+            } else if (ch == '@') {
+                i++;
+                while (i < n && (Character.isJavaIdentifierPart(parameters.charAt(i)) || parameters.charAt(i) == '.')) {
+                    i++;
+                }
+                if (i < n && parameters.charAt(i) == '(') {
+                    for (int parens = 0; i < n; i++) {
+                        char arg = parameters.charAt(i);
+                        if (arg == '(') {
+                            parens++;
+                        } else if (arg == ')' && --parens == 0) {
+                            break;
+                        }
+                    }
+                } else {
+                    i--;
+                }
+            } else {
+                erased.append(ch);
+            }
+        }
+
+        var types = new ArrayList<String>();
+        if (erased.toString().isBlank()) {
+            return types;
+        }
+
+        for (var parameter : erased.toString().split(",")) {
+            var words = parameter.replace("...", "[] ")
+                    .replaceAll("\\s+\\[", "[")
+                    .trim()
+                    .split("\\s+");
+
+            var type = new StringBuilder();
+            for (int w = 0; w < words.length; w++) {
+                var word = words[w];
+                if (word.equals("final") || word.isEmpty()) {
+                    continue;
+                }
+                if (type.isEmpty()) {
+                    // Keep the simple name and any array brackets
+                    int brackets = word.indexOf('[');
+                    var name     = brackets == -1 ? word : word.substring(0, brackets);
+                    type.append(name.substring(name.lastIndexOf('.') + 1));
+                    if (brackets != -1) {
+                        type.append(word.substring(brackets));
+                    }
+                } else if (word.indexOf('[') != -1) {
+                    // C-style array declaration, such as "int values[]"
+                    type.append(word.substring(word.indexOf('[')));
+                }
+            }
+            types.add(type.toString());
+        }
+
+        return types;
+    }
+
+    private enum Token {
+        IDENTIFIER,
+        TYPE_END,
+        DOT,
+        ARROW,
+        LITERAL,
+        SYMBOL
+    }
+
+    /**
+     * A method declaration
+     *
+     * @param name           the name of the method
+     * @param line           the line of the method name
+     * @param test           whether the method is annotated with {@code @Test}
+     * @param parameterTypes the simple names of the parameter types with type arguments removed
+     */
+    public record Method(String name, int line, boolean test, List<String> parameterTypes) {
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.newtco.test.util;
+
+/**
+ * Locates the characters of a JSON string value that need escaping. The scanner reports runs of characters that can
+ * be copied to the output unchanged: printable ASCII except the quotation mark and the reverse solidus.
+ */
+final class JsonEscaper {
+
+    // Escape sequences for ASCII characters, null for characters that are written unchanged
+    private static final String[] AsciiEscapes = new String[0x80];
+
+    static {
+        for (int ch = 0; ch < 0x20; ch++) {
+            AsciiEscapes[ch] = String.format("\\u%04X", ch);
+        }
+        AsciiEscapes['\b'] = "\\b";
+        AsciiEscapes['\f'] = "\\f";
+        AsciiEscapes['\n'] = "\\n";
+        AsciiEscapes['\r'] = "\\r";
+        AsciiEscapes['\t'] = "\\t";
+        AsciiEscapes['"']  = "\\\"";
+        AsciiEscapes['\\'] = "\\\\";
+        AsciiEscapes[0x7F] = "\\u007F";
+    }
+
+    private JsonEscaper() {
+    }
+
+    /**
+     * Returns the index of the first character in {@code chars[from, to)} that needs escaping, or {@code to} when
+     * none does.
+     */
+    static int safeRun(char[] chars, int from, int to) {
+        int i = from;
+        while (i < to && isSafe(chars[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the index of the first character of the value that needs escaping, or its length when none does.
+     */
+    static int safeRun(CharSequence value) {
+        int i = 0;
+        int length = value.length();
+        while (i < length && isSafe(value.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    static boolean isSafe(char ch) {
+        return ch >= 0x20 && ch < 0x7F && ch != '"' && ch != '\\';
+    }
+
+    /**
+     * Returns the escape sequence of an ASCII character, or null when the character is not ASCII. Characters outside
+     * ASCII are escaped as {@code \}{@code uXXXX} per UTF-16 code unit, so a surrogate pair becomes two escapes.
+     */
+    static String asciiEscape(char ch) {
+        return ch < 0x80 ? AsciiEscapes[ch] : null;
+    }
+}
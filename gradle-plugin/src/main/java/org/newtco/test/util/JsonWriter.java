@@ -16,15 +16,19 @@
 
 package org.newtco.test.util;
 
-import javax.annotation.Nonnull;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.UncheckedIOException;
 import java.io.Writer;
-import java.util.ArrayList;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
 import java.util.function.Consumer;
 
 /**
@@ -36,10 +40,32 @@ public class JsonWriter {
 
     private static final char[] HexChars = "0123456789ABCDEF".toCharArray();
 
+    // Powers of ten exactly representable as doubles
+    private static final double[] PowersOfTen = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Largest integer up to which all integers are exactly representable as doubles
+    private static final double MaxExactInteger = 0x1p53;
+
     protected Writer writer;
 
+    // Array state for writing commas lazily: per depth of open arrays whether an element was written, and whether an
+    // element of the innermost array was started without writing any content yet
+    private boolean[] hasElements;
+    private int       depth;
+    private boolean   elementPending;
+    // Scratch space for encoding numbers and timestamps without allocating strings
+    private final char[] scratch;
+    // Chunk of the string value being escaped, scanned in place for runs of characters that need no escaping
+    private final char[] chunk;
+
     public JsonWriter(Writer writer) {
-        this.writer = writer;
+        this.writer      = writer;
+        this.hasElements = new boolean[8];
+        this.scratch     = new char[32];
+        this.chunk       = new char[1024];
     }
 
     /**
@@ -62,7 +88,26 @@ public class JsonWriter {
         if (value == null) {
             return raw("null");
         }
-        return raw("\"", escapeJson(value), "\"");
+        raw('"');
+        writeEscaped(value);
+        return raw('"');
+    }
+
+    /**
+     * Adds a single JSON string value made of the given parts. Each part is escaped and written in turn, the parts are
+     * never joined into a single string.
+     *
+     * @param parts the parts of the string value to write
+     * @return the updated JsonWriter instance
+     */
+    public JsonWriter joined(Iterable<String> parts) {
+        raw('"');
+        for (var part : parts) {
+            if (part != null && !part.isEmpty()) {
+                writeEscaped(part);
+            }
+        }
+        return raw('"');
     }
 
     /**
@@ -72,7 +117,21 @@ public class JsonWriter {
      * @return the updated JsonWriter instance
      */
     public JsonWriter value(long value) {
-        return raw(Long.toString(value));
+        int start = formatLong(value, scratch, scratch.length);
+        return raw(scratch, start, scratch.length - start);
+    }
+
+    /**
+     * Adds a JSON numeric value with a fixed number of decimals to the writer, such as a duration in milliseconds
+     * written as seconds with {@code decimal(duration, 3)}.
+     *
+     * @param unscaled the value multiplied by 10 to the power of scale
+     * @param scale    the number of decimals, at most 18
+     * @return the updated JsonWriter instance
+     */
+    public JsonWriter decimal(long unscaled, int scale) {
+        int start = formatDecimal(unscaled, scale, scratch, scratch.length);
+        return raw(scratch, start, scratch.length - start);
     }
 
     /**
@@ -82,7 +141,7 @@ public class JsonWriter {
      * @return the updated JsonWriter instance
      */
     public JsonWriter value(boolean value) {
-        return raw(Boolean.toString(value));
+        return raw(value ? "true" : "false");
     }
 
     /**
@@ -92,9 +151,51 @@ public class JsonWriter {
      * @return the updated JsonWriter instance
      */
     public JsonWriter value(double value) {
+        // The plain notation of Double.toString, other values use its scientific notation
+        double magnitude = Math.abs(value);
+        if (magnitude >= 1e-3 && magnitude < 1e7) {
+            // The fewest decimals for which the decimal value converts back to the same double. The division is
+            // correctly rounded, the same as parsing the decimal, as long as both of its operands are exact.
+            for (int scale = 0; scale < PowersOfTen.length; scale++) {
+                double scaled = magnitude * PowersOfTen[scale];
+                if (scaled >= MaxExactInteger) {
+                    break;
+                }
+
+                long unscaled = Math.round(scaled);
+                if (unscaled / PowersOfTen[scale] == magnitude) {
+                    if (scale == 0) {
+                        // Always written with a decimal, such as 1.0
+                        unscaled *= 10;
+                        scale = 1;
+                    }
+                    return decimal(value < 0 ? -unscaled : unscaled, scale);
+                }
+            }
+        } else if (value == 0) {
+            return raw(Double.doubleToRawLongBits(value) < 0 ? "-0.0" : "0.0");
+        }
+
         return raw(Double.toString(value));
     }
 
+    /**
+     * Adds a timestamp to the writer as a JSON string in the ISO-8601 format of
+     * {@link java.time.format.DateTimeFormatter#ISO_OFFSET_DATE_TIME} in UTC, such as "2024-05-01T12:30:00.25Z".
+     *
+     * @param epochMillis the timestamp in milliseconds since the epoch
+     * @return the updated JsonWriter instance
+     */
+    public JsonWriter timestamp(long epochMillis) {
+        int start = formatTimestamp(epochMillis, scratch, scratch.length);
+        if (start < 0) {
+            // Years outside 0000-9999 are written with a sign by the formatter
+            return value(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(
+                    Instant.ofEpochMilli(epochMillis).atOffset(ZoneOffset.UTC)));
+        }
+        return raw(scratch, start, scratch.length - start);
+    }
+
     /**
      * Process and adds a custom value to the writer using a given context and processor.
      *
@@ -117,32 +218,7 @@ public class JsonWriter {
      * @return the updated JsonWriter instance
      */
     public <T> JsonWriter array(Iterator<T> iterator, Consumer<T> processor) {
-        raw('[');
-        if (iterator.hasNext()) {
-            var items = new ArrayList<String>();
-
-            while (iterator.hasNext()) {
-                try (var override = new OverrideWriter()) {
-                    processor.accept(iterator.next());
-
-                    var item = override.toString();
-                    if (!item.isEmpty()) {
-                        items.add(item);
-                    }
-                }
-            }
-
-            if (!items.isEmpty()) {
-                for (int i = 0; i < items.size(); i++) {
-                    if (i > 0) {
-                        comma();
-                    }
-                    raw(items.get(i));
-                }
-            }
-        }
-        raw(']');
-        return this;
+        return array(iterator, null, (context, value) -> true, (context, value) -> processor.accept(value));
     }
 
     /**
@@ -157,34 +233,7 @@ public class JsonWriter {
      * @return the updated JsonWriter instance
      */
     public <T, U> JsonWriter array(Iterator<T> iterator, U context, BiConsumer<U, T> processor) {
-        raw('[');
-
-        if (iterator.hasNext()) {
-            var items = new ArrayList<String>();
-
-            while (iterator.hasNext()) {
-                try (var override = new OverrideWriter()) {
-                    processor.accept(context, iterator.next());
-
-                    var item = override.toString();
-                    if (!item.isEmpty()) {
-                        items.add(item);
-                    }
-                }
-            }
-
-            if (!items.isEmpty()) {
-                for (int i = 0; i < items.size(); i++) {
-                    if (i > 0) {
-                        comma();
-                    }
-                    raw(items.get(i));
-                }
-            }
-        }
-
-        raw(']');
-        return this;
+        return array(iterator, context, (ctx, value) -> true, processor);
     }
 
     /**
@@ -197,7 +246,7 @@ public class JsonWriter {
      * @return the updated JsonWriter instance
      */
     public <T> JsonWriter array(Collection<T> values, Consumer<T> processor) {
-        return array(values, null, (context, value) -> processor.accept(value));
+        return array(values.iterator(), null, (context, value) -> true, (context, value) -> processor.accept(value));
     }
 
     /**
@@ -212,35 +261,50 @@ public class JsonWriter {
      * @return the updated JsonWriter instance
      */
     public <T, U> JsonWriter array(Collection<T> values, U context, BiConsumer<U, T> processor) {
-        raw('[');
+        return array(values.iterator(), context, (ctx, value) -> true, processor);
+    }
 
-        if (!values.isEmpty()) {
-            var items = new ArrayList<String>();
+    /**
+     * Adds a JSON array to the writer using an iterator, context, and processor, skipping the elements not included.
+     * <p>
+     * Elements are written straight to the writer, the comma separating an element from the previous one is only
+     * written once the element writes its first content. An element for which the processor writes nothing is
+     * therefore also left out, but skipping elements up front with {@code include} avoids calling the processor.
+     *
+     * @param <T>       the type of elements in the iterator
+     * @param <U>       the type of context
+     * @param iterator  the iterator of elements to write
+     * @param context   the context used in the filter and processor
+     * @param include   whether an element is written
+     * @param processor the processor that writes each element with the context to the writer
+     * @return the updated JsonWriter instance
+     */
+    public <T, U> JsonWriter array(
+            Iterator<T> iterator,
+            U context,
+            BiPredicate<U, T> include,
+            BiConsumer<U, T> processor) {
+        raw('[');
 
-            for (var value : values) {
-                try (var override = new OverrideWriter()) {
+        if (++depth == hasElements.length) {
+            hasElements = Arrays.copyOf(hasElements, depth * 2);
+        }
+        hasElements[depth] = false;
+        try {
+            while (iterator.hasNext()) {
+                var value = iterator.next();
+                if (include.test(context, value)) {
+                    elementPending = true;
                     processor.accept(context, value);
-
-                    var item = override.toString();
-                    if (!item.isEmpty()) {
-                        items.add(item);
-                    }
-                }
-            }
-
-            if (!items.isEmpty()) {
-                for (int i = 0; i < items.size(); i++) {
-                    if (i > 0) {
-                        comma();
-                    }
-                    raw(items.get(i));
+                    elementPending = false;
                 }
             }
+        } finally {
+            elementPending = false;
+            depth--;
         }
 
-        raw(']');
-
-        return this;
+        return raw(']');
     }
 
     /**
@@ -260,6 +324,7 @@ public class JsonWriter {
      */
     public JsonWriter raw(char ch) {
         try {
+            separate();
             writer.append(ch);
         } catch (IOException ex) {
             throw new UncheckedIOException(ex);
@@ -267,6 +332,24 @@ public class JsonWriter {
         return this;
     }
 
+    /**
+     * Adds a range of raw characters to the writer.
+     *
+     * @param chars the characters to write
+     * @param off   the offset of the first character to write
+     * @param len   the number of characters to write
+     * @return the updated JsonWriter instance
+     */
+    public JsonWriter raw(char[] chars, int off, int len) {
+        try {
+            separate();
+            writer.write(chars, off, len);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return this;
+    }
+
     /**
      * Adds raw character sequences to the writer.
      *
@@ -274,99 +357,205 @@ public class JsonWriter {
      * @return the updated JsonWriter instance
      */
     public JsonWriter raw(CharSequence... values) {
-        for (var value : values) {
-            try {
+        try {
+            separate();
+            for (var value : values) {
                 writer.append(value);
-            } catch (IOException ex) {
-                throw new UncheckedIOException(ex);
             }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
         }
         return this;
     }
 
-    String escapeJson(String value) {
-        if (value == null) {
-            return "null";
+    /**
+     * Writes the comma preceding an array element when the element writes its first content, unless it is the first
+     * element of the array
+     */
+    private void separate() throws IOException {
+        if (elementPending) {
+            elementPending = false;
+            if (hasElements[depth]) {
+                writer.append(',');
+            } else {
+                hasElements[depth] = true;
+            }
         }
+    }
+
+    /**
+     * Formats a long into the end of a buffer
+     *
+     * @return the offset of the first character
+     */
+    static int formatLong(long value, char[] buffer, int end) {
+        return formatDecimal(value, 0, buffer, end);
+    }
 
-        if (value.isEmpty()) {
-            return "";
+    /**
+     * Formats a decimal into the end of a buffer, digits being computed from the negated value so that
+     * {@link Long#MIN_VALUE} needs no special case
+     *
+     * @return the offset of the first character
+     */
+    static int formatDecimal(long unscaled, int scale, char[] buffer, int end) {
+        boolean negative = unscaled < 0;
+        long    value    = negative ? unscaled : -unscaled;
+        int     pos      = end;
+
+        for (int i = 0; i < scale; i++) {
+            buffer[--pos] = (char) ('0' - value % 10);
+            value /= 10;
+        }
+        if (scale > 0) {
+            buffer[--pos] = '.';
         }
 
-        var escaped = new StringBuilder();
-        for (int i = 0; i < value.length(); i++) {
-            int cp = value.codePointAt(i);
-            switch (cp) {
-                case '\"':
-                    escaped.append("\\\"");
-                    break;
-                case '\\':
-                    escaped.append("\\\\");
-                    break;
-                case '\b':
-                    escaped.append("\\b");
-                    break;
-                case '\f':
-                    escaped.append("\\f");
-                    break;
-                case '\n':
-                    escaped.append("\\n");
-                    break;
-                case '\r':
-                    escaped.append("\\r");
-                    break;
-                case '\t':
-                    escaped.append("\\t");
-                    break;
-                default:
-                    if (cp <= 31 || cp >= 127) {
-                        char[] seq = new char[6];
-                        seq[0] = '\\';
-                        seq[1] = 'u';
-                        seq[2] = HexChars[(cp >> 12) & 0xF];
-                        seq[3] = HexChars[(cp >> 8) & 0xF];
-                        seq[4] = HexChars[(cp >> 4) & 0xF];
-                        seq[5] = HexChars[cp & 0xF];
-                        escaped.append(new String(seq));
-                    } else {
-                        escaped.append((char) cp);
-                    }
-                    break;
+        do {
+            buffer[--pos] = (char) ('0' - value % 10);
+            value /= 10;
+        } while (value != 0);
+
+        if (negative) {
+            buffer[--pos] = '-';
+        }
+        return pos;
+    }
+
+    /**
+     * Formats a timestamp as a quoted JSON string into the end of a buffer, converting days to a civil date as
+     * described by Howard Hinnant in "chrono-Compatible Low-Level Date Algorithms".
+     *
+     * @return the offset of the first character, or -1 if the year is not within 0000-9999
+     */
+    static int formatTimestamp(long epochMillis, char[] buffer, int end) {
+        long days   = Math.floorDiv(epochMillis, 86_400_000L);
+        int  millis = (int) Math.floorMod(epochMillis, 86_400_000L);
+
+        long z     = days + 719_468;
+        long era   = Math.floorDiv(z, 146_097);
+        long doe   = z - era * 146_097;
+        long yoe   = (doe - doe / 1460 + doe / 36_524 - doe / 146_096) / 365;
+        long doy   = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp    = (5 * doy + 2) / 153;
+        int  day   = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int  month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year  = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 0 || year > 9999) {
+            return -1;
+        }
+
+        int pos = end;
+        buffer[--pos] = '"';
+        buffer[--pos] = 'Z';
+
+        int fraction = millis % 1000;
+        if (fraction != 0) {
+            // Trailing zeros are omitted
+            int digits = 3;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
             }
+            pos = formatDigits(fraction, digits, buffer, pos);
+            buffer[--pos] = '.';
         }
-        return escaped.toString();
+
+        int seconds = millis / 1000;
+        pos           = formatDigits(seconds % 60, 2, buffer, pos);
+        buffer[--pos] = ':';
+        pos           = formatDigits(seconds / 60 % 60, 2, buffer, pos);
+        buffer[--pos] = ':';
+        pos           = formatDigits(seconds / 3600, 2, buffer, pos);
+        buffer[--pos] = 'T';
+        pos           = formatDigits(day, 2, buffer, pos);
+        buffer[--pos] = '-';
+        pos           = formatDigits(month, 2, buffer, pos);
+        buffer[--pos] = '-';
+        pos           = formatDigits((int) year, 4, buffer, pos);
+        buffer[--pos] = '"';
+        return pos;
+    }
+
+    private static int formatDigits(int value, int digits, char[] buffer, int end) {
+        int pos = end;
+        for (int i = 0; i < digits; i++) {
+            buffer[--pos] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos;
     }
 
     /**
-     * Writer extension to buffer writes during collection generation which is necessary for adding commas
+     * Writes the escaped characters of a string value straight to the writer. Runs of characters that need no escaping
+     * are copied in bulk.
      */
-    private class OverrideWriter extends Writer {
-        final Writer        original;
-        final StringBuilder buffer;
-
-        public OverrideWriter() {
-            this.buffer            = new StringBuilder();
-            this.original          = JsonWriter.this.writer;
-            JsonWriter.this.writer = this;
+    private void writeEscaped(String value) {
+        try {
+            writeEscaped(value, writer);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
         }
+    }
 
-        @Override
-        public void write(@Nonnull char[] cbuf, int off, int len) {
-            buffer.append(cbuf, off, len);
+    private void writeEscaped(String value, Writer out) throws IOException {
+        int length = value.length();
+        for (int offset = 0; offset < length; offset += chunk.length) {
+            int count = Math.min(chunk.length, length - offset);
+            value.getChars(offset, offset + count, chunk, 0);
+            writeEscaped(chunk, count, out);
         }
+    }
 
-        @Override
-        public void flush() {
+    private void writeEscaped(char[] chars, int count, Writer out) throws IOException {
+        int start = 0;
+        while (start < count) {
+            int end = JsonEscaper.safeRun(chars, start, count);
+            if (end > start) {
+                out.write(chars, start, end - start);
+            }
+            if (end == count) {
+                break;
+            }
+            writeEscape(chars[end], out);
+            start = end + 1;
         }
+    }
 
-        @Override
-        public void close() {
-            JsonWriter.this.writer = original;
+    /**
+     * Writes the escape sequence of a single UTF-16 code unit. A supplementary character is written as the escapes of
+     * its two surrogates, as JSON requires.
+     */
+    private void writeEscape(char ch, Writer out) throws IOException {
+        var escape = JsonEscaper.asciiEscape(ch);
+        if (escape != null) {
+            out.write(escape);
+            return;
         }
+        scratch[0] = '\\';
+        scratch[1] = 'u';
+        scratch[2] = HexChars[(ch >> 12) & 0xF];
+        scratch[3] = HexChars[(ch >> 8) & 0xF];
+        scratch[4] = HexChars[(ch >> 4) & 0xF];
+        scratch[5] = HexChars[ch & 0xF];
+        out.write(scratch, 0, 6);
+    }
 
-        @Override
-        public String toString() {
-            return buffer.toString();
+    String escapeJson(String value) {
+        if (value == null) {
+            return "null";
+        }
+
+        if (JsonEscaper.safeRun(value) == value.length()) {
+            return value;
         }
+
+        var escaped = new StringWriter(value.length() + 16);
+        try {
+            writeEscaped(value, escaped);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return escaped.toString();
     }
 }
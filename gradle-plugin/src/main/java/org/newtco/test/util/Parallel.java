@@ -0,0 +1,143 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.newtco.test.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Utility class to process a list of items on a bounded number of threads while keeping results in the order of the
+ * items.
+ */
+public class Parallel {
+
+    private Parallel() {
+    }
+
+    /**
+     * Applies the function to each item using up to {@code parallelism} threads.
+     * <p>
+     * If the function fails for any item, the failure of the first such item in list order is rethrown once all items
+     * have been processed.
+     *
+     * @param items       the items to process
+     * @param parallelism the maximum number of threads to use, where 1 or less processes the items on the calling
+     *                    thread
+     * @param function    the function to apply to each item
+     * @param <T>         the type of the items
+     * @param <R>         the type of the results
+     * @return the results in the same order as the items
+     */
+    public static <T, R> List<R> map(List<T> items, int parallelism, Function<? super T, ? extends R> function) {
+        var results = new ArrayList<R>(items.size());
+        if (parallelism <= 1 || items.size() <= 1) {
+            RuntimeException failure = null;
+            for (var item : items) {
+                try {
+                    results.add(function.apply(item));
+                } catch (RuntimeException ex) {
+                    if (failure == null) {
+                        failure = ex;
+                    }
+                    results.add(null);
+                }
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+            return results;
+        }
+
+        var executor = Executors.newFixedThreadPool(Math.min(parallelism, items.size()), new WorkerFactory());
+        try {
+            var futures = new ArrayList<Future<? extends R>>(items.size());
+            for (var item : items) {
+                futures.add(executor.submit(() -> function.apply(item)));
+            }
+
+            RuntimeException failure = null;
+            for (var future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = unwrap(ex);
+                    }
+                    results.add(null);
+                }
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+            return results;
+
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for parallel tasks", ex);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Performs the action for each item using up to {@code parallelism} threads.
+     *
+     * @see #map(List, int, Function)
+     */
+    public static <T> void forEach(List<T> items, int parallelism, Consumer<? super T> action) {
+        map(items, parallelism, item -> {
+            action.accept(item);
+            return null;
+        });
+    }
+
+    private static RuntimeException unwrap(ExecutionException ex) {
+        var cause = ex.getCause();
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    private static class WorkerFactory implements ThreadFactory {
+
+        private static final AtomicInteger POOL = new AtomicInteger();
+
+        private final int           pool    = POOL.incrementAndGet();
+        private final AtomicInteger workers = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            var thread = new Thread(runnable, "test-reports-" + pool + "-" + workers.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.newtco.test.util;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A character buffer which holds its content in memory until either its own limit or the shared limit of its
+ * {@link Allocator} is reached, after which the content is moved to a temporary file and further appends are written
+ * straight to that file.
+ * <p>
+ * Content that stayed in memory is returned in full by {@link #toString()}. Spilled content is memory-mapped when read
+ * back, and only a head and tail window of it are returned, so the size of the resulting string is bounded regardless
+ * of how much was appended. If the temporary file cannot be created, the content is kept in memory instead. If writing
+ * to the temporary file fails, such as when the disk is full, the content written so far is kept, marked as truncated,
+ * and further appends are dropped.
+ * <p>
+ * Instances are not thread-safe; the allocator is.
+ */
+public class SpillBuffer implements Closeable {
+
+    private static final Logger LOGGER = Logging.getLogger(SpillBuffer.class);
+
+    static final String TRUNCATED_MARKER = "[output truncated: spill failed]";
+
+    private final Allocator      allocator;
+    private       StringBuilder  memory;
+    private       long           length;
+    private       Path           file;
+    private       FileChannel    channel;
+    private       boolean        spillFailed;
+    // Encodes appends into the spill file. A high surrogate ending an append is kept until the next append, so a
+    // surrogate pair split across appends is encoded as one character
+    private       CharsetEncoder encoder;
+    private       ByteBuffer     bytes;
+    private       char           pendingHighSurrogate;
+    // Content readable from the spill file when writing to it failed, appends are dropped afterwards
+    private       String         truncated;
+
+    SpillBuffer(Allocator allocator) {
+        this.allocator = allocator;
+        this.memory    = new StringBuilder();
+    }
+
+    /**
+     * Appends text to the buffer, spilling the buffer to a temporary file if the text does not fit into the memory
+     * limits.
+     *
+     * @param text the text to append
+     * @return this buffer
+     */
+    public SpillBuffer append(CharSequence text) {
+        int size = text.length();
+        if (size == 0 || truncated != null) {
+            return this;
+        }
+
+        if (channel == null && !spillFailed
+                && (memory.length() + (long) size > allocator.bufferLimit || !allocator.reserve(size))) {
+            spill();
+        }
+
+        if (channel != null) {
+            if (!write(text)) {
+                return this;
+            }
+        } else if (truncated != null) {
+            // Spilling failed while writing the content held in memory
+            return this;
+        } else {
+            memory.append(text);
+        }
+
+        length += size;
+        return this;
+    }
+
+    /**
+     * Number of characters appended to the buffer
+     */
+    public long length() {
+        return length;
+    }
+
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * Whether the buffer content has been moved to a temporary file
+     */
+    public boolean isSpilled() {
+        return channel != null;
+    }
+
+    /**
+     * Returns the full content of the buffer if it was held in memory, otherwise the head and tail windows of the
+     * spilled content with a marker for the number of bytes omitted between them.
+     */
+    @Override
+    public String toString() {
+        if (truncated != null) {
+            return truncated;
+        }
+        if (channel == null) {
+            return memory.toString();
+        }
+
+        try {
+            return window(allocator.headSize, allocator.tailSize);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Returns the content of the buffer as {@link #toString()} does and closes the buffer. Memory reserved for content
+     * held in memory stays charged against the allocator, as the returned text is retained by the caller.
+     *
+     * @return the content of the buffer
+     */
+    public String detach() {
+        var text = toString();
+        // Keep the reservation for the returned text
+        memory = null;
+        close();
+        return text;
+    }
+
+    /**
+     * Releases the memory reserved by the buffer and deletes any temporary file.
+     */
+    @Override
+    public void close() {
+        if (memory != null) {
+            allocator.release(getReservedSize());
+            memory = null;
+        }
+
+        if (channel != null) {
+            deleteFile();
+        }
+    }
+
+    private void deleteFile() {
+        try {
+            channel.close();
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            // Mapped regions may keep the file open on some platforms
+            file.toFile().deleteOnExit();
+        } finally {
+            channel = null;
+            encoder = null;
+            bytes   = null;
+        }
+    }
+
+    private void spill() {
+        try {
+            Files.createDirectories(allocator.directory);
+            file    = Files.createTempFile(allocator.directory, "output-", ".spill");
+            channel = allocator.open(file);
+        } catch (IOException ex) {
+            // Keep the content in memory rather than losing it
+            allocator.release(getReservedSize());
+            spillFailed = true;
+            return;
+        }
+
+        encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        bytes   = ByteBuffer.allocate(8192);
+
+        // Released even if writing fails, the content is then only kept as far as it was written
+        write(memory);
+        allocator.release(getReservedSize());
+        memory = null;
+    }
+
+    /**
+     * Number of characters reserved from the allocator, which are those held in memory prior to spilling
+     */
+    public long getReservedSize() {
+        return memory == null || spillFailed ? 0 : memory.length();
+    }
+
+    /**
+     * Writes text to the spill file
+     *
+     * @return false if writing failed, in which case the spill file is abandoned
+     */
+    private boolean write(CharSequence text) {
+        CharBuffer chars;
+        if (pendingHighSurrogate != 0) {
+            chars                = CharBuffer.wrap(new StringBuilder(text.length() + 1)
+                    .append(pendingHighSurrogate)
+                    .append(text));
+            pendingHighSurrogate = 0;
+        } else {
+            chars = CharBuffer.wrap(text);
+        }
+
+        try {
+            // Not the end of input, so a trailing high surrogate is left unconsumed
+            while (encoder.encode(chars, bytes, false).isOverflow()) {
+                drain();
+            }
+            drain();
+        } catch (IOException ex) {
+            truncate(ex);
+            return false;
+        }
+
+        if (chars.hasRemaining()) {
+            pendingHighSurrogate = chars.get();
+        }
+        return true;
+    }
+
+    /**
+     * Keeps the content written to the spill file so far, marked as truncated, and deletes the file. Output is not
+     * worth failing the tests for, so the failure is only logged.
+     */
+    private void truncate(IOException cause) {
+        String written;
+        try {
+            written = window(allocator.headSize, allocator.tailSize);
+        } catch (IOException | RuntimeException ex) {
+            written = "";
+        }
+        truncated = written.isEmpty() ? TRUNCATED_MARKER : written + "\n" + TRUNCATED_MARKER;
+
+        if (allocator.spillFailureLogged.compareAndSet(false, true)) {
+            LOGGER.warn("Failed to write test output to {}, output is truncated: {}", file, cause.getMessage());
+        }
+        deleteFile();
+    }
+
+    private void drain() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    /**
+     * Reads the head and tail windows of the spill file. Only the regions of the windows are mapped, so spilled content
+     * may exceed the 2 GiB limit of a single mapping.
+     */
+    private String window(int head, int tail) throws IOException {
+        long size = channel.size();
+        if (size <= (long) head + tail) {
+            return StandardCharsets.UTF_8.decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, size)).toString();
+        }
+
+        // The byte following the head window is mapped as well, to find whether the window ends within a sequence
+        MappedByteBuffer headRegion = channel.map(FileChannel.MapMode.READ_ONLY, 0, head + 1L);
+        long             tailOffset = size - tail;
+        MappedByteBuffer tailRegion = channel.map(FileChannel.MapMode.READ_ONLY, tailOffset, tail);
+
+        // Keep windows on UTF-8 sequence boundaries
+        int headEnd = head;
+        while (headEnd > 0 && isContinuation(headRegion.get(headEnd))) {
+            headEnd--;
+        }
+        int tailStart = 0;
+        while (tailStart < tail && isContinuation(tailRegion.get(tailStart))) {
+            tailStart++;
+        }
+
+        var text = new StringBuilder(head + tail + 48);
+        text.append(StandardCharsets.UTF_8.decode(headRegion.slice(0, headEnd)));
+        text.append("\n... [").append(tailOffset + tailStart - headEnd).append(" bytes omitted] ...\n");
+        text.append(StandardCharsets.UTF_8.decode(tailRegion.slice(tailStart, tail - tailStart)));
+        return text.toString();
+    }
+
+    private static boolean isContinuation(byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    /**
+     * Creates {@code SpillBuffer} instances sharing a single memory limit, for example all test outputs of a test
+     * task.
+     */
+    public static class Allocator {
+
+        private final boolean       bounded;
+        private final AtomicLong    available;
+        private final long          bufferLimit;
+        private final int           headSize;
+        private final int           tailSize;
+        private final Path          directory;
+        // Write failures are likely to repeat for all buffers, such as when the disk is full, so are logged once
+        private final AtomicBoolean spillFailureLogged;
+
+        /**
+         * @param totalLimit  the number of characters held in memory across all buffers of this allocator
+         * @param bufferLimit the number of characters a single buffer holds in memory before spilling
+         * @param headSize    the number of bytes returned from the start of spilled content
+         * @param tailSize    the number of bytes returned from the end of spilled content
+         * @param directory   the directory where spill files are created
+         */
+        public Allocator(long totalLimit, long bufferLimit, int headSize, int tailSize, Path directory) {
+            this.bounded            = totalLimit != Long.MAX_VALUE;
+            this.available          = new AtomicLong(totalLimit);
+            this.bufferLimit        = bufferLimit;
+            this.headSize           = headSize;
+            this.tailSize           = tailSize;
+            this.directory          = directory;
+            this.spillFailureLogged = new AtomicBoolean();
+        }
+
+        /**
+         * Creates an allocator whose buffers never spill
+         */
+        public static Allocator unbounded() {
+            return new Allocator(Long.MAX_VALUE, Long.MAX_VALUE, 0, 0, null);
+        }
+
+        public SpillBuffer allocate() {
+            return new SpillBuffer(this);
+        }
+
+        /**
+         * Opens a spill file for reading and writing
+         */
+        FileChannel open(Path file) throws IOException {
+            return FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        /**
+         * Number of characters which may still be held in memory by this allocator's buffers
+         */
+        public long getAvailable() {
+            return available.get();
+        }
+
+        boolean reserve(long size) {
+            if (!bounded) {
+                return true;
+            }
+
+            long current;
+            do {
+                current = available.get();
+                if (current < size) {
+                    return false;
+                }
+            } while (!available.compareAndSet(current, current - size));
+            return true;
+        }
+
+        /**
+         * Returns memory to the allocator, such as that of text returned by {@link SpillBuffer#detach()} once it is no
+         * longer retained.
+         *
+         * @param size the number of characters to return
+         */
+        public void release(long size) {
+            if (bounded && size > 0) {
+                available.addAndGet(size);
+            }
+        }
+    }
+}
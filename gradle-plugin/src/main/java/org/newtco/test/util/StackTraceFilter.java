@@ -0,0 +1,196 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.newtco.test.util;
+
+import javax.annotation.Nullable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Filters the frames of a stack trace, keeping frames matching the include and exclude patterns of a
+ * {@link FilterSet}. Runs of omitted frames are replaced with a {@code ... N more} line.
+ * <p>
+ * The stack trace is scanned in place: frames are matched as regions of the original text, so no intermediate strings
+ * are created per line. The filter itself is immutable and may be shared between threads; to filter many stack traces,
+ * such as all failures of a test suite, obtain a {@link State} with {@link #newState()} which reuses its matchers and
+ * output buffer.
+ * <p>
+ * The following lines are always kept:
+ * <ul>
+ *     <li>Lines which are not frames, such as the exception message or {@code Caused by:} lines</li>
+ *     <li>The first frame following such lines, which is where the exception was thrown</li>
+ *     <li>The frame following a matching frame, which shows the caller of matching code</li>
+ * </ul>
+ */
+public class StackTraceFilter {
+
+    // Retained buffers larger than this are released after use rather than kept for reuse
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+    private static final String FRAME_PREFIX = "\tat ";
+
+    private final Pattern includes;
+    private final Pattern excludes;
+
+    StackTraceFilter(@Nullable Pattern includes, @Nullable Pattern excludes) {
+        this.includes = includes;
+        this.excludes = excludes;
+    }
+
+    /**
+     * Filters the frames of the stack trace
+     *
+     * @param stackTrace the stack trace text
+     * @return the filtered stack trace, with lines separated by {@code '\n'}
+     */
+    public String filter(CharSequence stackTrace) {
+        return newState().filter(stackTrace);
+    }
+
+    /**
+     * Creates the matchers and output buffer for filtering a series of stack traces on a single thread
+     */
+    public State newState() {
+        return new State(includes, excludes);
+    }
+
+    private static void filter(CharSequence stackTrace, StringBuilder out, State current) {
+        int     length  = stackTrace.length();
+        int     more    = 0;
+        int     include = 0;
+        boolean group   = false;
+        int     pos     = 0;
+
+        while (pos < length) {
+            // Find the end of the line and the start of the next one
+            int end = pos;
+            while (end < length && stackTrace.charAt(end) != '\n' && stackTrace.charAt(end) != '\r') {
+                end++;
+            }
+            int next = end;
+            if (next < length && stackTrace.charAt(next++) == '\r' && next < length && stackTrace.charAt(next) == '\n') {
+                next++;
+            }
+
+            if (end == pos) {
+                // Empty lines are dropped
+                pos = next;
+                continue;
+            }
+
+            if (!isFrame(stackTrace, pos, end)) {
+                // Consecutive lines which are not frames are kept as a group, such as a multi-line message
+                if (!group) {
+                    if (include-- <= 0) {
+                        appendMore(out, more);
+                        more    = 0;
+                        include = 1;
+                    }
+                    group = true;
+                }
+                out.append(stackTrace, pos, end).append('\n');
+            } else {
+                group = false;
+                if (include-- > 0) {
+                    out.append(stackTrace, pos, end).append('\n');
+                } else if (current.matches(stackTrace, pos + FRAME_PREFIX.length(), end)) {
+                    appendMore(out, more);
+                    out.append(stackTrace, pos, end).append('\n');
+                    more    = 0;
+                    include = 1;
+                } else {
+                    more += 1;
+                }
+            }
+
+            pos = next;
+        }
+
+        // Append any leftover
+        if (more > 0) {
+            out.append("\t... ").append(more).append(" more");
+        } else if (!out.isEmpty() && out.charAt(out.length() - 1) == '\n') {
+            out.setLength(out.length() - 1);
+        }
+    }
+
+    private static boolean isFrame(CharSequence text, int start, int end) {
+        if (end - start <= FRAME_PREFIX.length()) {
+            return false;
+        }
+        for (int i = 0; i < FRAME_PREFIX.length(); i++) {
+            if (text.charAt(start + i) != FRAME_PREFIX.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void appendMore(StringBuilder out, int more) {
+        if (more > 0) {
+            out.append("\t... ").append(more).append(" more").append('\n');
+        }
+    }
+
+    /**
+     * Matchers and output buffer reused across stack traces. A state is not thread-safe and should be used by a single
+     * task, such as the finalization of one test suite, and then dropped.
+     */
+    public static final class State {
+
+        private final Matcher       includesMatcher;
+        private final Matcher       excludesMatcher;
+        private       StringBuilder buffer;
+
+        private State(@Nullable Pattern includes, @Nullable Pattern excludes) {
+            this.includesMatcher = includes != null ? includes.matcher("") : null;
+            this.excludesMatcher = excludes != null ? excludes.matcher("") : null;
+            this.buffer          = new StringBuilder();
+        }
+
+        /**
+         * Filters the frames of the stack trace
+         *
+         * @param stackTrace the stack trace text
+         * @return the filtered stack trace, with lines separated by {@code '\n'}
+         */
+        public String filter(CharSequence stackTrace) {
+            var out = buffer;
+            try {
+                StackTraceFilter.filter(stackTrace, out, this);
+                return out.toString();
+            } finally {
+                if (out.capacity() > MAX_RETAINED_CAPACITY) {
+                    buffer = new StringBuilder();
+                } else {
+                    out.setLength(0);
+                }
+            }
+        }
+
+        /**
+         * Whether the region of the text is accepted by the filter. Excludes take precedence over includes.
+         */
+        boolean matches(CharSequence text, int start, int end) {
+            if (excludesMatcher != null && excludesMatcher.reset(text).region(start, end).matches()) {
+                return false;
+            }
+            return includesMatcher == null || includesMatcher.reset(text).region(start, end).matches();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.newtco.test.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A writer encoding text as UTF-8 straight into a reusable byte buffer, which is written to a channel when full, flushed
+ * or closed.
+ * <p>
+ * Unlike an {@link java.io.OutputStreamWriter}, no intermediate char buffer or charset encoder is involved, ASCII
+ * characters are copied to the buffer directly, and no lock is taken per write. Unpaired surrogates are replaced with
+ * '?', as with the default replacement of the UTF-8 encoder.
+ */
+@NotThreadSafe
+public class Utf8ChannelWriter extends Writer {
+
+    /**
+     * Default size in bytes of the buffer
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final Set<OpenOption> DEFAULT_OPTIONS = Set.of(
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE);
+
+    private final WritableByteChannel channel;
+    private final Flushable           flushable;
+    private final byte[]              bytes;
+    private final ByteBuffer          buffer;
+    private       int                 count;
+    private       char                highSurrogate;
+    private       boolean             closed;
+
+    public Utf8ChannelWriter(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public Utf8ChannelWriter(WritableByteChannel channel, int bufferSize) {
+        this(channel, null, bufferSize);
+    }
+
+    /**
+     * Creates a writer to a stream, which is also flushed when the writer is flushed
+     */
+    public Utf8ChannelWriter(OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    public Utf8ChannelWriter(OutputStream out, int bufferSize) {
+        this(Channels.newChannel(out), out, bufferSize);
+    }
+
+    private Utf8ChannelWriter(WritableByteChannel channel, Flushable flushable, int bufferSize) {
+        if (bufferSize < 4) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize + ". Must be at least 4");
+        }
+        this.channel   = channel;
+        this.flushable = flushable;
+        this.bytes     = new byte[bufferSize];
+        this.buffer    = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Opens a file for writing, with the same default options as {@link java.nio.file.Files#newBufferedWriter}: the file
+     * is created or truncated if no options are given.
+     *
+     * @param file    the file to write
+     * @param options the options used to open the file
+     * @return the writer, which closes the file when closed
+     */
+    public static Utf8ChannelWriter open(Path file, OpenOption... options) throws IOException {
+        Set<OpenOption> openOptions = DEFAULT_OPTIONS;
+        if (options.length > 0) {
+            openOptions = new HashSet<>(List.of(options));
+            openOptions.add(StandardOpenOption.WRITE);
+        }
+        return new Utf8ChannelWriter(FileChannel.open(file, openOptions));
+    }
+
+    @Override
+    public void write(int ch) throws IOException {
+        put((char) ch);
+    }
+
+    @Override
+    public void write(@Nonnull char[] chars, int off, int len) throws IOException {
+        for (int i = off, end = off + len; i < end; i++) {
+            char ch = chars[i];
+            if (ch < 0x80 && highSurrogate == 0) {
+                if (count == bytes.length) {
+                    drain();
+                }
+                bytes[count++] = (byte) ch;
+            } else {
+                encode(ch);
+            }
+        }
+    }
+
+    @Override
+    public void write(@Nonnull String text, int off, int len) throws IOException {
+        append(text, off, off + len);
+    }
+
+    @Override
+    public Writer append(CharSequence text) throws IOException {
+        if (text == null) {
+            text = "null";
+        }
+        return append(text, 0, text.length());
+    }
+
+    @Override
+    public Writer append(CharSequence text, int start, int end) throws IOException {
+        if (text == null) {
+            text = "null";
+        }
+        for (int i = start; i < end; i++) {
+            char ch = text.charAt(i);
+            if (ch < 0x80 && highSurrogate == 0) {
+                if (count == bytes.length) {
+                    drain();
+                }
+                bytes[count++] = (byte) ch;
+            } else {
+                encode(ch);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public Writer append(char ch) throws IOException {
+        put(ch);
+        return this;
+    }
+
+    /**
+     * Writes the buffered bytes to the channel, and flushes the stream if writing to a stream. A trailing high surrogate
+     * is kept until its low surrogate is written.
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+        if (flushable != null) {
+            flushable.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try (channel) {
+            if (highSurrogate != 0) {
+                highSurrogate = 0;
+                ensure(1);
+                bytes[count++] = '?';
+            }
+            drain();
+        }
+    }
+
+    private void put(char ch) throws IOException {
+        if (ch < 0x80 && highSurrogate == 0) {
+            ensure(1);
+            bytes[count++] = (byte) ch;
+        } else {
+            encode(ch);
+        }
+    }
+
+    private void encode(char ch) throws IOException {
+        if (highSurrogate != 0) {
+            var high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(ch)) {
+                int cp = Character.toCodePoint(high, ch);
+                ensure(4);
+                bytes[count++] = (byte) (0xF0 | (cp >> 18));
+                bytes[count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                bytes[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                bytes[count++] = (byte) (0x80 | (cp & 0x3F));
+                return;
+            }
+            ensure(1);
+            bytes[count++] = '?';
+        }
+
+        if (ch < 0x80) {
+            ensure(1);
+            bytes[count++] = (byte) ch;
+        } else if (ch < 0x800) {
+            ensure(2);
+            bytes[count++] = (byte) (0xC0 | (ch >> 6));
+            bytes[count++] = (byte) (0x80 | (ch & 0x3F));
+        } else if (Character.isHighSurrogate(ch)) {
+            highSurrogate = ch;
+        } else if (Character.isLowSurrogate(ch)) {
+            ensure(1);
+            bytes[count++] = '?';
+        } else {
+            ensure(3);
+            bytes[count++] = (byte) (0xE0 | (ch >> 12));
+            bytes[count++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+            bytes[count++] = (byte) (0x80 | (ch & 0x3F));
+        }
+    }
+
+    private void ensure(int size) throws IOException {
+        if (count + size > bytes.length) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.limit(count).position(0);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        count = 0;
+    }
+}
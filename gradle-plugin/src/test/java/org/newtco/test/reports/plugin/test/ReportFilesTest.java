@@ -0,0 +1,222 @@
+package org.newtco.test.reports.plugin.test;
+
+import org.junit.jupiter.api.Test;
+import org.newtco.test.reports.api.test.model.Status;
+import org.newtco.test.reports.api.test.model.TestCase;
+import org.newtco.test.reports.api.test.model.TestSuite;
+import org.newtco.test.util.Compression;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReportFilesTest {
+
+    private static final Predicate<String> IS_REPORT = name -> name.startsWith("TEST-");
+
+    private static final FileTime EARLIER = FileTime.fromMillis(1_000_000_000_000L);
+
+    @Test
+    public void testWrite_UnchangedContentKeepsFile() throws Exception {
+        var dir    = Files.createTempDirectory("reports");
+        var report = dir.resolve("TEST-Example.md");
+        writeRun(dir, report, "content");
+        Files.setLastModifiedTime(report, EARLIER);
+
+        var files = ReportFiles.incremental(dir, Compression.NONE);
+        assertFalse(files.write(report, writer -> writer.write("content")));
+        files.complete(IS_REPORT);
+
+        assertEquals(EARLIER, Files.getLastModifiedTime(report));
+        assertEquals("content", Files.readString(report));
+        assertEquals(List.of(), tempFiles(dir));
+    }
+
+    @Test
+    public void testWrite_ChangedContentReplacesFile() throws Exception {
+        var dir    = Files.createTempDirectory("reports");
+        var report = dir.resolve("TEST-Example.md");
+        writeRun(dir, report, "before");
+        Files.setLastModifiedTime(report, EARLIER);
+        var before = Files.readAttributes(report, BasicFileAttributes.class).fileKey();
+
+        var files = ReportFiles.incremental(dir, Compression.NONE);
+        assertTrue(files.write(report, writer -> writer.write("after")));
+        files.complete(IS_REPORT);
+
+        assertEquals("after", Files.readString(report));
+        assertNotEquals(EARLIER, Files.getLastModifiedTime(report));
+        if (before != null) {
+            // Moved in place from the temporary file rather than rewritten
+            assertNotEquals(before, Files.readAttributes(report, BasicFileAttributes.class).fileKey());
+        }
+        assertEquals(List.of(), tempFiles(dir));
+    }
+
+    @Test
+    public void testWrite_WrittenAgainComparesWithLastContent() throws Exception {
+        var dir    = Files.createTempDirectory("reports");
+        var report = dir.resolve("TEST-Example.md");
+        writeRun(dir, report, "merged");
+
+        // Such as a suite streamed again once retried, the second write restores the content of the previous run
+        var files = ReportFiles.incremental(dir, Compression.NONE);
+        assertTrue(files.write(report, writer -> writer.write("first run")));
+        assertTrue(files.write(report, writer -> writer.write("merged")));
+        files.complete(IS_REPORT);
+
+        assertEquals("merged", Files.readString(report));
+    }
+
+    @Test
+    public void testWrite_SuiteWithOtherTimingsKeepsFile() throws Exception {
+        var dir    = Files.createTempDirectory("reports");
+        var report = dir.resolve("TEST-Example.json");
+
+        var first = ReportFiles.incremental(dir, Compression.NONE);
+        var run   = suite(1_000, 20);
+        assertTrue(first.write(report, writer -> render(run, writer), writer -> render(TestReport.withoutTimings(run), writer)));
+        first.complete(IS_REPORT);
+        Files.setLastModifiedTime(report, EARLIER);
+
+        // Same results, run later and slower
+        var second = ReportFiles.incremental(dir, Compression.NONE);
+        var rerun  = suite(5_000, 45);
+        assertFalse(second.write(report, writer -> render(rerun, writer), writer -> render(TestReport.withoutTimings(rerun), writer)));
+        second.complete(IS_REPORT);
+
+        assertEquals(EARLIER, Files.getLastModifiedTime(report));
+        assertTrue(Files.readString(report).contains("\"timestamp\":1000"));
+
+        // Other results replace the file
+        var third  = ReportFiles.incremental(dir, Compression.NONE);
+        var failed = suite(5_000, 45);
+        failed.tests.get(0).status = Status.FAILED;
+        assertTrue(third.write(report, writer -> render(failed, writer), writer -> render(TestReport.withoutTimings(failed), writer)));
+        third.complete(IS_REPORT);
+
+        assertTrue(Files.readString(report).contains("\"timestamp\":5000"));
+    }
+
+    @Test
+    public void testComplete_DeletesReportsOfRemovedSuites() throws Exception {
+        var dir     = Files.createTempDirectory("reports");
+        var kept    = dir.resolve("TEST-Kept.md");
+        var removed = dir.resolve("TEST-Removed.md");
+        var other   = dir.resolve("index.html");
+
+        var first = ReportFiles.incremental(dir, Compression.NONE);
+        first.write(kept, writer -> writer.write("kept"));
+        first.write(removed, writer -> writer.write("removed"));
+        first.complete(IS_REPORT);
+        Files.writeString(other, "not a report");
+
+        var second = ReportFiles.incremental(dir, Compression.NONE);
+        second.write(kept, writer -> writer.write("kept"));
+        second.complete(IS_REPORT);
+
+        assertTrue(Files.exists(kept));
+        assertFalse(Files.exists(removed));
+        assertTrue(Files.exists(other));
+        assertFalse(Files.readString(dir.resolve(ReportFiles.MANIFEST_NAME)).contains("TEST-Removed.md"));
+    }
+
+    @Test
+    public void testIncremental_UnreadableManifestRewritesAll() throws Exception {
+        var dir    = Files.createTempDirectory("reports");
+        var report = dir.resolve("TEST-Example.md");
+        writeRun(dir, report, "content");
+        Files.setLastModifiedTime(report, EARLIER);
+        // Not valid UTF-8
+        Files.write(dir.resolve(ReportFiles.MANIFEST_NAME), new byte[]{(byte) 0xff, (byte) 0xfe, (byte) 0xfd});
+
+        var files = ReportFiles.incremental(dir, Compression.NONE);
+        assertTrue(files.write(report, writer -> writer.write("content")));
+        files.complete(IS_REPORT);
+
+        assertNotEquals(EARLIER, Files.getLastModifiedTime(report));
+        assertTrue(Files.readString(dir.resolve(ReportFiles.MANIFEST_NAME)).endsWith(" TEST-Example.md\n"));
+
+        // The replaced manifest is used by the next run
+        var next = ReportFiles.incremental(dir, Compression.NONE);
+        assertFalse(next.write(report, writer -> writer.write("content")));
+    }
+
+    @Test
+    public void testWrite_FailureLeavesNoTemporaryFiles() throws Exception {
+        var dir    = Files.createTempDirectory("reports");
+        var report = dir.resolve("TEST-Example.md");
+        writeRun(dir, report, "previous");
+
+        var files = ReportFiles.incremental(dir, Compression.NONE);
+        var ex = assertThrows(IllegalStateException.class, () -> files.write(report, writer -> {
+            writer.write("partial");
+            throw new IllegalStateException("render failed");
+        }));
+
+        assertEquals("render failed", ex.getMessage());
+        assertEquals("previous", Files.readString(report));
+        assertEquals(List.of(), tempFiles(dir));
+    }
+
+    private static TestSuite suite(long startTime, long duration) {
+        var test = new TestCase();
+        test.name      = "test()";
+        test.status    = Status.PASSED;
+        test.startTime = startTime;
+        test.endTime   = startTime + duration;
+        test.duration  = duration;
+
+        var suite = new TestSuite();
+        suite.name      = "org.example.ExampleTest";
+        suite.status    = Status.PASSED;
+        suite.total     = 1;
+        suite.passed    = 1;
+        suite.startTime = startTime;
+        suite.endTime   = startTime + duration;
+        suite.duration  = duration;
+        suite.tests     = List.of(test);
+        return suite;
+    }
+
+    /**
+     * Renders the suite with its timings, like the JSON report
+     */
+    private static void render(TestSuite suite, Writer writer) throws IOException {
+        writer.write("{\"name\":\"" + suite.name + "\",\"tests\":" + suite.total
+                + ",\"timestamp\":" + suite.startTime + ",\"time\":" + suite.duration + ",\"testCases\":[");
+        for (var test : suite.tests) {
+            writer.write("{\"name\":\"" + test.name + "\",\"status\":\"" + test.status + "\",\"time\":" + test.duration + "}");
+        }
+        writer.write("]}");
+    }
+
+    /**
+     * Writes a single report incrementally and completes the run, leaving a manifest
+     */
+    private static void writeRun(Path dir, Path report, String content) throws Exception {
+        var files = ReportFiles.incremental(dir, Compression.NONE);
+        assertTrue(files.write(report, writer -> writer.write(content)));
+        files.complete(IS_REPORT);
+    }
+
+    private static List<Path> tempFiles(Path dir) throws IOException {
+        try (var files = Files.list(dir)) {
+            return files.filter(file -> {
+                var name = file.getFileName().toString();
+                return name.startsWith(".TEST-") && name.endsWith(".tmp");
+            }).toList();
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package org.newtco.test.reports.plugin.test;
+
+import org.gradle.api.tasks.testing.*;
+import org.junit.jupiter.api.Test;
+import org.newtco.testlib.gradle.MockTestDescriptor;
+import org.newtco.testlib.gradle.MockTestOutputEvent;
+import org.newtco.testlib.gradle.MockTestResult;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestEventJournalTest {
+
+    @Test
+    public void testReplay_RoundTrip() throws IOException {
+        var journal = Files.createTempDirectory("journal").resolve("events.journal");
+        var live    = new Recorder();
+
+        var root  = MockTestDescriptor.root("Gradle Test Run :test");
+        var suite = MockTestDescriptor.suite("org.example.ExampleTest", root);
+        var pass  = MockTestDescriptor.test("passes()", suite);
+        var fail  = MockTestDescriptor.test("fails()", suite);
+
+        try (var writer = new Tee(new TestEventJournal(journal), live)) {
+            writer.beforeSuite(root);
+            writer.beforeSuite(suite);
+            writer.onOutput(suite, MockTestOutputEvent.stdOut("setup\n"));
+            writer.beforeTest(pass);
+            writer.onOutput(pass, MockTestOutputEvent.stdOut("caf\u00e9 \ud83d\ude00\n"));
+            writer.onOutput(pass, MockTestOutputEvent.stdErr("warning\n"));
+            writer.afterTest(pass, MockTestResult.passed(10, 20));
+            writer.beforeTest(fail);
+            writer.afterTest(fail, MockTestResult.failed(20, 30, TestFailure.fromTestAssertionFailure(
+                    new AssertionError("expected: <1> but was: <2>"), "1", "2",
+                    List.of(TestFailure.fromTestFrameworkFailure(new IllegalStateException("cause"))))));
+            writer.afterSuite(suite, MockTestResult.of(TestResult.ResultType.FAILURE, 10, 30, 2, 1, 1, 0));
+            writer.afterSuite(root, MockTestResult.of(TestResult.ResultType.FAILURE, 10, 30, 2, 1, 1, 0));
+        }
+
+        var replayed = new Recorder();
+        assertTrue(TestEventJournal.replay(journal, replayed));
+        assertEquals(live.events, replayed.events);
+    }
+
+    @Test
+    public void testReplay_Retries() throws IOException {
+        var journal = Files.createTempDirectory("journal").resolve("events.journal");
+        var live    = new Recorder();
+
+        var root  = MockTestDescriptor.root("Gradle Test Run :test");
+        var suite = MockTestDescriptor.suite("org.example.FlakyTest", root);
+        // Each attempt of a retried test has its own descriptor with the same names
+        var first  = MockTestDescriptor.test("flaky()", suite);
+        var second = MockTestDescriptor.test("flaky()", suite);
+
+        try (var writer = new Tee(new TestEventJournal(journal), live)) {
+            writer.beforeSuite(root);
+            writer.beforeSuite(suite);
+            writer.beforeTest(first);
+            writer.onOutput(first, MockTestOutputEvent.stdOut("attempt 1\n"));
+            writer.afterTest(first, MockTestResult.failed(10, 20,
+                    TestFailure.fromTestFrameworkFailure(new IllegalStateException("flaked"))));
+            writer.beforeTest(second);
+            writer.onOutput(second, MockTestOutputEvent.stdOut("attempt 2\n"));
+            writer.afterTest(second, MockTestResult.passed(20, 30));
+            writer.afterSuite(suite, MockTestResult.of(TestResult.ResultType.SUCCESS, 10, 30, 2, 1, 1, 0));
+            writer.afterSuite(root, MockTestResult.of(TestResult.ResultType.SUCCESS, 10, 30, 2, 1, 1, 0));
+        }
+
+        var replayed = new Recorder();
+        assertTrue(TestEventJournal.replay(journal, replayed));
+        assertEquals(live.events, replayed.events);
+        assertEquals(2, replayed.events.stream()
+                .filter(event -> event.startsWith("afterTest Gradle Test Run :test > org.example.FlakyTest > flaky()"))
+                .count());
+    }
+
+    @Test
+    public void testReplay_OutputLargerThanBuffer() throws IOException {
+        var journal = Files.createTempDirectory("journal").resolve("events.journal");
+        var live    = new Recorder();
+
+        var root  = MockTestDescriptor.root("Gradle Test Run :test");
+        var suite = MockTestDescriptor.suite("org.example.LoudTest", root);
+        var test  = MockTestDescriptor.test("loud()", suite);
+        // Larger than the 64 KiB write and read buffers, with multi-byte characters
+        var large = "line \u00e9 \u20ac\n".repeat(50_000);
+
+        try (var writer = new Tee(new TestEventJournal(journal), live)) {
+            writer.beforeSuite(root);
+            writer.beforeSuite(suite);
+            writer.beforeTest(test);
+            writer.onOutput(test, MockTestOutputEvent.stdOut("small\n"));
+            writer.onOutput(test, MockTestOutputEvent.stdOut(large));
+            writer.onOutput(test, MockTestOutputEvent.stdErr("after\n"));
+            writer.afterTest(test, MockTestResult.passed(10, 20));
+            writer.afterSuite(suite, MockTestResult.of(TestResult.ResultType.SUCCESS, 10, 20, 1, 1, 0, 0));
+            writer.afterSuite(root, MockTestResult.of(TestResult.ResultType.SUCCESS, 10, 20, 1, 1, 0, 0));
+        }
+
+        var replayed = new Recorder();
+        assertTrue(TestEventJournal.replay(journal, replayed));
+        assertEquals(live.events, replayed.events);
+        assertTrue(replayed.events.contains("output Gradle Test Run :test > org.example.LoudTest > loud() (org.example.LoudTest) StdOut " + large));
+    }
+
+    @Test
+    public void testReplay_TruncatedFinalRecord() throws IOException {
+        var journal = Files.createTempDirectory("journal").resolve("events.journal");
+        var live    = new Recorder();
+
+        var root  = MockTestDescriptor.root("Gradle Test Run :test");
+        var suite = MockTestDescriptor.suite("org.example.ExampleTest", root);
+        var test  = MockTestDescriptor.test("passes()", suite);
+
+        try (var writer = new Tee(new TestEventJournal(journal), live)) {
+            writer.beforeSuite(root);
+            writer.beforeSuite(suite);
+            writer.beforeTest(test);
+            writer.afterTest(test, MockTestResult.passed(10, 20));
+            writer.afterSuite(suite, MockTestResult.of(TestResult.ResultType.SUCCESS, 10, 20, 1, 1, 0, 0));
+            writer.afterSuite(root, MockTestResult.of(TestResult.ResultType.SUCCESS, 10, 20, 1, 1, 0, 0));
+        }
+        // Cut the completion of the root suite short
+        truncate(journal, Files.size(journal) - 1);
+
+        var replayed = new Recorder();
+        assertFalse(TestEventJournal.replay(journal, replayed));
+
+        var completed = live.events.subList(0, live.events.size() - 1);
+        assertEquals(completed, replayed.events.subList(0, completed.size()));
+        assertEquals(completed.size() + 1, replayed.events.size());
+        assertTrue(replayed.events.get(completed.size()).startsWith("afterSuite Gradle Test Run :test FAILURE 10 20 1 1 0 0"),
+                replayed.events.get(completed.size()));
+    }
+
+    @Test
+    public void testReplay_TruncatedRunningTest() throws IOException {
+        var journal = Files.createTempDirectory("journal").resolve("events.journal");
+        var live    = new Recorder();
+
+        var root   = MockTestDescriptor.root("Gradle Test Run :test");
+        var first  = MockTestDescriptor.suite("org.example.FirstTest", root);
+        var passes = MockTestDescriptor.test("passes()", first);
+        var second = MockTestDescriptor.suite("org.example.SecondTest", root);
+        var hangs  = MockTestDescriptor.test("hangs()", second);
+        var large  = "x".repeat(100_000);
+
+        try (var writer = new Tee(new TestEventJournal(journal), live)) {
+            writer.beforeSuite(root);
+            writer.beforeSuite(first);
+            writer.beforeTest(passes);
+            writer.afterTest(passes, MockTestResult.passed(10, 20));
+            writer.afterSuite(first, MockTestResult.of(TestResult.ResultType.SUCCESS, 10, 20, 1, 1, 0, 0));
+            writer.beforeSuite(second);
+            writer.beforeTest(hangs);
+            writer.onOutput(hangs, MockTestOutputEvent.stdOut(large));
+            writer.afterTest(hangs, MockTestResult.passed(30, 40));
+            writer.afterSuite(second, MockTestResult.of(TestResult.ResultType.SUCCESS, 30, 40, 1, 1, 0, 0));
+            writer.afterSuite(root, MockTestResult.of(TestResult.ResultType.SUCCESS, 10, 40, 2, 2, 0, 0));
+        }
+        // Cut the journal in the middle of the output record of the running test
+        var bytes = Files.readAllBytes(journal);
+        truncate(journal, indexOf(bytes, large.substring(0, 1_000).getBytes()) + 1_000);
+
+        var replayed = new Recorder();
+        assertFalse(TestEventJournal.replay(journal, replayed));
+
+        var started = live.events.subList(0, live.events.indexOf("beforeTest Gradle Test Run :test > org.example.SecondTest > hangs() (org.example.SecondTest)") + 1);
+        assertEquals(started, replayed.events.subList(0, started.size()));
+
+        var interrupted = replayed.events.subList(started.size(), replayed.events.size());
+        assertEquals(3, interrupted.size(), interrupted.toString());
+        assertTrue(interrupted.get(0).startsWith("afterTest Gradle Test Run :test > org.example.SecondTest > hangs() (org.example.SecondTest) FAILURE 20 20 1 0 1 0 [The test did not complete"),
+                interrupted.get(0));
+        assertTrue(interrupted.get(1).startsWith("afterSuite Gradle Test Run :test > org.example.SecondTest FAILURE 20 20 1 0 1 0"),
+                interrupted.get(1));
+        assertTrue(interrupted.get(2).startsWith("afterSuite Gradle Test Run :test FAILURE 10 20 2 1 1 0"),
+                interrupted.get(2));
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= bytes.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (bytes[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        throw new AssertionError("Pattern not found");
+    }
+
+    /**
+     * Records the events received as text, so live and replayed events can be compared
+     */
+    private static class Recorder implements TestListener, TestOutputListener {
+
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void beforeSuite(TestDescriptor suite) {
+            events.add("beforeSuite " + path(suite));
+        }
+
+        @Override
+        public void afterSuite(TestDescriptor suite, TestResult result) {
+            events.add("afterSuite " + path(suite) + " " + describe(result));
+        }
+
+        @Override
+        public void beforeTest(TestDescriptor test) {
+            events.add("beforeTest " + path(test));
+        }
+
+        @Override
+        public void afterTest(TestDescriptor test, TestResult result) {
+            events.add("afterTest " + path(test) + " " + describe(result));
+        }
+
+        @Override
+        public void onOutput(TestDescriptor test, TestOutputEvent event) {
+            events.add("output " + path(test) + " " + event.getDestination() + " " + event.getMessage());
+        }
+
+        private static String path(TestDescriptor descriptor) {
+            var path = descriptor.getDisplayName();
+            for (var parent = descriptor.getParent(); parent != null; parent = parent.getParent()) {
+                path = parent.getDisplayName() + " > " + path;
+            }
+            return path + (descriptor.isComposite() ? "" : " (" + descriptor.getClassName() + ")");
+        }
+
+        private static String describe(TestResult result) {
+            return result.getResultType()
+                    + " " + result.getStartTime()
+                    + " " + result.getEndTime()
+                    + " " + result.getTestCount()
+                    + " " + result.getSuccessfulTestCount()
+                    + " " + result.getFailedTestCount()
+                    + " " + result.getSkippedTestCount()
+                    + " " + describe(result.getFailures());
+        }
+
+        private static String describe(List<TestFailure> failures) {
+            var out = new StringBuilder("[");
+            for (var failure : failures) {
+                var details = failure.getDetails();
+                out.append(details.getMessage())
+                        .append('|').append(details.getClassName())
+                        .append('|').append(details.getStacktrace())
+                        .append('|').append(details.isAssertionFailure())
+                        .append('|').append(details.getExpected())
+                        .append('|').append(details.getActual())
+                        .append('|').append(describe(failure.getCauses()))
+                        .append(';');
+            }
+            return out.append(']').toString();
+        }
+    }
+
+    /**
+     * Sends each event to both the journal and the recorder of the live events
+     */
+    private record Tee(TestEventJournal journal, Recorder recorder) implements AutoCloseable {
+
+        void beforeSuite(TestDescriptor suite) {
+            journal.beforeSuite(suite);
+            recorder.beforeSuite(suite);
+        }
+
+        void afterSuite(TestDescriptor suite, TestResult result) {
+            journal.afterSuite(suite, result);
+            recorder.afterSuite(suite, result);
+        }
+
+        void beforeTest(TestDescriptor test) {
+            journal.beforeTest(test);
+            recorder.beforeTest(test);
+        }
+
+        void afterTest(TestDescriptor test, TestResult result) {
+            journal.afterTest(test, result);
+            recorder.afterTest(test, result);
+        }
+
+        void onOutput(TestDescriptor test, TestOutputEvent event) {
+            journal.onOutput(test, event);
+            recorder.onOutput(test, event);
+        }
+
+        @Override
+        public void close() {
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.newtco.test.reports.plugin.test;
+
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.api.tasks.testing.TestFailure;
+import org.gradle.api.tasks.testing.TestResult;
+import org.junit.jupiter.api.Test;
+import org.newtco.test.util.FilterSet;
+import org.newtco.testlib.gradle.MockTestDescriptor;
+import org.newtco.testlib.gradle.MockTestResult;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestResultsServiceTest {
+
+    @Test
+    public void testSummary_CountsRetriedTestsOnce() {
+        var service   = newService();
+        var partition = service.open(":test", newCollector(), null, null);
+
+        var root  = MockTestDescriptor.root("Gradle Test Run :test");
+        var suite = MockTestDescriptor.suite("org.example.ExampleTest", root);
+        partition.beforeSuite(root);
+        partition.beforeSuite(suite);
+
+        // Passes on the second attempt
+        run(partition, MockTestDescriptor.test("flaky()", suite), failed("flaked"));
+        run(partition, MockTestDescriptor.test("flaky()", suite), MockTestResult.passed(20, 30));
+        // Fails on every attempt
+        run(partition, MockTestDescriptor.test("broken()", suite), failed("broken 1"));
+        run(partition, MockTestDescriptor.test("broken()", suite), failed("broken 2"));
+        run(partition, MockTestDescriptor.test("passes()", suite), MockTestResult.passed(30, 40));
+        run(partition, MockTestDescriptor.test("ignored()", suite), MockTestResult.skipped(40, 40));
+
+        var summary = service.getSummary();
+        assertEquals(1, summary.tasks());
+        assertEquals(4, summary.total());
+        assertEquals(2, summary.passed());
+        assertEquals(1, summary.failed());
+        assertEquals(1, summary.skipped());
+        assertEquals(List.of(new TestResultsService.FailedTest(":test", "org.example.ExampleTest", "broken()", "broken 1")),
+                summary.failures());
+    }
+
+    @Test
+    public void testSummary_CountsTestsOfEachTask() {
+        var service = newService();
+
+        for (var taskPath : List.of(":test", ":integrationTest")) {
+            var partition = service.open(taskPath, newCollector(), null, null);
+            var suite     = MockTestDescriptor.suite("org.example.SharedTest", MockTestDescriptor.root(taskPath));
+            run(partition, MockTestDescriptor.test("shared()", suite), MockTestResult.passed(10, 20));
+        }
+
+        var summary = service.getSummary();
+        assertEquals(2, summary.tasks());
+        assertEquals(2, summary.total());
+        assertEquals(2, summary.passed());
+    }
+
+    @Test
+    public void testSummary_FailurePassingOnRetryFreesItsPlace() {
+        var service   = newService();
+        var partition = service.open(":test", newCollector(), null, null);
+        var suite     = MockTestDescriptor.suite("org.example.ExampleTest", MockTestDescriptor.root(":test"));
+
+        for (int i = 0; i < TestResultsService.MAX_FAILURES; i++) {
+            run(partition, MockTestDescriptor.test("broken" + i + "()", suite), failed("broken " + i));
+        }
+        // Beyond the cap, counted but not kept
+        run(partition, MockTestDescriptor.test("dropped()", suite), failed("dropped"));
+        // Passes on retry, freeing its place
+        run(partition, MockTestDescriptor.test("broken0()", suite), MockTestResult.passed(20, 30));
+        run(partition, MockTestDescriptor.test("late()", suite), failed("late"));
+
+        var summary = service.getSummary();
+        assertEquals(TestResultsService.MAX_FAILURES + 1, summary.failed());
+        assertEquals(TestResultsService.MAX_FAILURES, summary.failures().size());
+        assertEquals(new TestResultsService.FailedTest(":test", "org.example.ExampleTest", "late()", "late"),
+                summary.failures().get(TestResultsService.MAX_FAILURES - 1));
+    }
+
+    private static void run(TestResultsService.Partition partition, MockTestDescriptor test, TestResult result) {
+        partition.beforeTest(test);
+        partition.afterTest(test, result);
+    }
+
+    private static TestResult failed(String message) {
+        return MockTestResult.failed(10, 20, TestFailure.fromTestFrameworkFailure(new IllegalStateException(message)));
+    }
+
+    private static TestSuiteCollector newCollector() {
+        return new TestSuiteCollector(new FilterSet(), null, null, null);
+    }
+
+    private static TestResultsService newService() {
+        return new TestResultsService() {
+            @Override
+            public BuildServiceParameters.None getParameters() {
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,96 @@
+package org.newtco.test.reports.plugin.test;
+
+import org.gradle.api.tasks.testing.TestFailure;
+import org.gradle.api.tasks.testing.TestResult;
+import org.junit.jupiter.api.Test;
+import org.newtco.test.reports.api.test.model.TestSuite;
+import org.newtco.test.util.FilterSet;
+import org.newtco.testlib.gradle.MockTestDescriptor;
+import org.newtco.testlib.gradle.MockTestResult;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class TestSuiteCollectorTest {
+
+    @Test
+    public void testStream_ClassRunTwiceIsMergedAndStreamedAgain() {
+        for (var release : List.of(true, false)) {
+            var collector = new TestSuiteCollector(new FilterSet(), null, null, null);
+            var streamed  = new ArrayList<String>();
+            var suites    = new ArrayList<TestSuite>();
+            collector.streamTestSuites(Path.of("."), Map::of, null, release, suite -> {
+                streamed.add(describe(suite));
+                suites.add(suite);
+            });
+
+            var root = MockTestDescriptor.root("Gradle Test Run :test");
+            collector.beforeSuite(root);
+
+            // First run, one test fails
+            var first = MockTestDescriptor.suite("org.example.FlakyTest", root);
+            collector.beforeSuite(first);
+            run(collector, MockTestDescriptor.test("flaky()", first), failed("flaked"));
+            run(collector, MockTestDescriptor.test("stable()", first), MockTestResult.passed(20, 30));
+            collector.afterSuite(first, MockTestResult.of(TestResult.ResultType.FAILURE, 10, 30, 2, 1, 1, 0));
+
+            // Retried with new descriptors, only the failed test runs again
+            var retry = MockTestDescriptor.suite("org.example.FlakyTest", root);
+            collector.beforeSuite(retry);
+            run(collector, MockTestDescriptor.test("flaky()", retry), MockTestResult.passed(40, 50));
+            collector.afterSuite(retry, MockTestResult.of(TestResult.ResultType.SUCCESS, 40, 50, 1, 1, 0, 0));
+
+            assertEquals(List.of(
+                    "FAILED 2/1/1 flaky()=FAILED stable()=PASSED",
+                    "PASSED 2/2/0 flaky()=PASSED stable()=PASSED"), streamed, "release " + release);
+            assertSame(suites.get(0), suites.get(1), "release " + release);
+
+            // The failure of the first run is kept and finalized once
+            var flaky = suites.get(1).tests.stream().filter(test -> test.name.equals("flaky()")).findFirst().orElseThrow();
+            assertEquals(1, flaky.failures.size(), "release " + release);
+            assertEquals("flaked", flaky.failures.get(0).message, "release " + release);
+        }
+    }
+
+    @Test
+    public void testStream_EachClassStreamedOnce() {
+        var collector = new TestSuiteCollector(new FilterSet(), null, null, null);
+        var streamed  = new ArrayList<String>();
+        collector.streamTestSuites(Path.of("."), Map::of, null, true, suite -> streamed.add(suite.className));
+
+        var root = MockTestDescriptor.root("Gradle Test Run :test");
+        collector.beforeSuite(root);
+        for (var className : List.of("org.example.FirstTest", "org.example.SecondTest")) {
+            var suite = MockTestDescriptor.suite(className, root);
+            collector.beforeSuite(suite);
+            run(collector, MockTestDescriptor.test("test()", suite), MockTestResult.passed(10, 20));
+            collector.afterSuite(suite, MockTestResult.of(TestResult.ResultType.SUCCESS, 10, 20, 1, 1, 0, 0));
+        }
+        collector.afterSuite(root, MockTestResult.of(TestResult.ResultType.SUCCESS, 10, 20, 2, 2, 0, 0));
+
+        assertEquals(List.of("org.example.FirstTest", "org.example.SecondTest"), streamed);
+    }
+
+    private static String describe(TestSuite suite) {
+        return suite.status + " " + suite.total + "/" + suite.passed + "/" + suite.failed + " "
+                + suite.tests.stream()
+                .sorted((left, right) -> left.name.compareTo(right.name))
+                .map(test -> test.name + "=" + test.status)
+                .collect(Collectors.joining(" "));
+    }
+
+    private static void run(TestSuiteCollector collector, MockTestDescriptor test, TestResult result) {
+        collector.beforeTest(test);
+        collector.afterTest(test, result);
+    }
+
+    private static TestResult failed(String message) {
+        return MockTestResult.failed(10, 20, TestFailure.fromTestFrameworkFailure(new IllegalStateException(message)));
+    }
+}
@@ -0,0 +1,78 @@
+package org.newtco.test.templates;
+
+import org.junit.jupiter.api.Test;
+import org.newtco.test.reports.api.MarkdownTemplate;
+
+import java.io.StringWriter;
+import java.io.Writer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class MarkdownTemplateTest {
+
+    @Test
+    public void testEscape_Markdown() {
+        var template = new TestTemplate(new StringWriter());
+
+        assertEquals("\\*a\\_b\\` \\[x\\]\\(y\\) 1\\.0\\n&#1;&#233;",
+                template.escape("*a_b` [x](y) 1.0\n\u0001\u00E9"));
+    }
+
+    @Test
+    public void testEscape_UnchangedValueIsReturned() {
+        var template = new TestTemplate(new StringWriter());
+        var value    = "plain text";
+
+        assertSame(value, template.escape(value));
+        assertSame(value, template.escapeHtml(value));
+        assertSame(value, template.escape(value, '|'));
+    }
+
+    @Test
+    public void testEscape_SupplementaryCharacter() {
+        var template = new TestTemplate(new StringWriter());
+
+        assertEquals("a&#128512;b", template.escape("a\uD83D\uDE00b"));
+        assertEquals("&lt;&#128512;&gt;", template.escapeHtml("<\uD83D\uDE00>"));
+        assertEquals("\\|\uD83D\uDE00", template.escape("|\uD83D\uDE00", '|'));
+    }
+
+    @Test
+    public void testEscaped_WritesSameAsEscape() {
+        var writer   = new StringWriter();
+        var template = new TestTemplate(writer);
+        var value    = "at a.b.C<init>(C.java:1)\n\tat \"x\" * [y] \u00E9\uD83D\uDE00 | ".repeat(1000);
+
+        template.escaped(value).out('|').escapedHtml(value).out('|').escaped(value, '|', '*').flush();
+
+        assertEquals(template.escape(value) + "|" + template.escapeHtml(value) + "|" + template.escape(value, '|', '*'),
+                writer.toString());
+    }
+
+    @Test
+    public void testCodeAndDetails() {
+        var writer   = new StringWriter();
+        var template = new TestTemplate(writer);
+
+        template.code("a_b").details("Raw", () -> template.out("<pre>").escapedHtml("<x>").out("</pre>")).flush();
+
+        assertEquals("<code>a\\_b</code><details>\n<summary>Raw</summary>  \n<pre>&lt;x&gt;</pre>  \n</details>\n",
+                writer.toString());
+    }
+
+    static class TestTemplate extends MarkdownTemplate<TestTemplate> {
+        TestTemplate(Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        protected TestTemplate self() {
+            return this;
+        }
+
+        @Override
+        public void render() {
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.google.common.truth.Truth;
 import org.newtco.test.reports.api.Template;
 import org.junit.jupiter.api.Test;
 
+import java.io.StringWriter;
 import java.io.Writer;
 import java.util.Arrays;
 import java.util.List;
@@ -24,7 +25,8 @@ public class TemplateCodeGeneratorTest {
         Truth.assertThat(result).contains("package org.newtco.generated;");
         Truth.assertThat(result).contains("import org.newtco.test.templates.TemplateCodeGeneratorTest.TestTemplate;");
         Truth.assertThat(result).contains("public class GeneratedClass extends TestTemplate<GeneratedClass> {");
-        Truth.assertThat(result).contains("out(\"Hello, World!\");");
+        Truth.assertThat(result).contains("private static final String TEXT_0 = \"Hello, World!\";");
+        Truth.assertThat(result).contains("out(TEXT_0);");
     }
 
     @Test
@@ -79,11 +81,68 @@ public class TemplateCodeGeneratorTest {
         Truth.assertThat(result).contains("package org.newtco.generated;");
         Truth.assertThat(result).contains("import org.newtco.test.templates.TemplateCodeGeneratorTest.TestTemplate;");
         Truth.assertThat(result).contains("public class GeneratedClass extends TestTemplate<GeneratedClass> {");
-        Truth.assertThat(result).contains("out(\"Hello, \");");
+        Truth.assertThat(result).contains("private static final String TEXT_0 = \"Hello, \";");
+        Truth.assertThat(result).contains("out(TEXT_0);");
         Truth.assertThat(result).contains("out(name);");
         Truth.assertThat(result).contains("if (name == null) { name = \"World\"; } out(name);");
     }
 
+    @Test
+    public void testGenerateTemplateClassWithMergedAndSharedText() {
+        TemplateCodeGenerator generator   = new TemplateCodeGenerator();
+        String                packageName = "org.newtco.generated";
+        String                className   = "GeneratedClass";
+        Class<?>              parentClass = TestTemplate.class;
+        List<TemplateParser.TemplatePart> parts = Arrays.asList(
+                new TemplateParser.TemplatePart(TemplateParser.PartType.TEXT, "<b>"),
+                new TemplateParser.TemplatePart(TemplateParser.PartType.IMPORT, "java.util.Map"),
+                new TemplateParser.TemplatePart(TemplateParser.PartType.TEXT, "Name"),
+                new TemplateParser.TemplatePart(TemplateParser.PartType.EXPRESSION, "name"),
+                new TemplateParser.TemplatePart(TemplateParser.PartType.TEXT, "</b>"),
+                new TemplateParser.TemplatePart(TemplateParser.PartType.EXPRESSION, "count"),
+                new TemplateParser.TemplatePart(TemplateParser.PartType.TEXT, "</b>")
+        );
+        String result = generator.generateTemplateClass(packageName, className, parentClass, parts);
+
+        Truth.assertThat(result).contains("import java.util.Map;");
+        Truth.assertThat(result).contains("private static final String TEXT_0 = \"<b>Name\";");
+        Truth.assertThat(result).contains("private static final String TEXT_1 = \"</b>\";");
+        Truth.assertThat(result).doesNotContain("TEXT_2");
+        Truth.assertThat(result).contains("out(TEXT_0);\n    out(name);\n    out(TEXT_1);\n    out(count);\n    out(TEXT_1);");
+    }
+
+    @Test
+    public void testTemplateTypedOut() {
+        var writer   = new StringWriter();
+        var template = new TestTemplate(writer);
+
+        template.out(0).out(' ').out(-42).out(' ').out(Long.MIN_VALUE).out(' ').out(2.5).out(' ').out(0.1f)
+                .out(' ').out(true).out(' ').out((Object) null).out(' ').out(List.of(1)).flush();
+
+        Truth.assertThat(writer.toString()).isEqualTo("0 -42 -9223372036854775808 2.5 0.1 true null [1]");
+    }
+
+    @Test
+    public void testTemplateBufferedOutput() {
+        var writer   = new StringWriter();
+        var template = new TestTemplate(writer);
+        var large    = "x".repeat(10_000);
+
+        template.out("a").write("<abc>", 1, 4).write(new char[]{'d', 'e'}, 0, 2).out(new StringBuilder("f"));
+        Truth.assertThat(writer.toString()).isEmpty();
+
+        template.getWriter();
+        Truth.assertThat(writer.toString()).isEqualTo("aabcdef");
+        Truth.assertThat(template.getWritten()).isEqualTo(7L);
+
+        template.out("g").out(large).write(large, 0, 3).out('h').flush();
+        Truth.assertThat(writer.toString()).isEqualTo("aabcdefg" + large + "xxxh");
+
+        // Ranges longer than the buffer bypass it and are counted as well
+        template.out(new StringBuilder(large)).write(large.toCharArray(), 0, large.length()).flush();
+        Truth.assertThat(template.getWritten()).isEqualTo((long) writer.toString().length());
+    }
+
 
     // Mock Template class to be used in tests
     public static class TestTemplate extends Template<TestTemplate> {
@@ -100,5 +159,9 @@ public class TemplateCodeGeneratorTest {
         public void render() throws Exception {
 
         }
+
+        long getWritten() {
+            return written;
+        }
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package org.newtco.test.templates;
 
 import org.newtco.test.reports.api.Template;
+import org.gradle.api.reflect.ObjectInstantiationException;
 import org.junit.jupiter.api.Test;
 
 import javax.annotation.Nonnull;
@@ -89,6 +90,37 @@ public class TemplateInstantiatorTest {
         assertEquals(writerMock, template.getWriter());
     }
 
+    @Test
+    public void testCreateTemplateResolvesTemplateClassOnce() throws Exception {
+        TemplateInstantiator instantiator = new TemplateInstantiator();
+        instantiator.setPackageName("org.newtco.test.templates");
+        instantiator.addClasspath(getTemplateInstantiatorTestClasspath());
+
+        Writer writerMock = mock(Writer.class);
+
+        Template<?> first  = instantiator.createTemplate("TemplateInstantiatorTest$TestTemplate", writerMock);
+        Template<?> second = instantiator.createTemplate("TemplateInstantiatorTest$TestTemplate", writerMock);
+
+        assertNotSame(first, second);
+        assertInstanceOf(TestTemplate.class, second);
+        assertSame(instantiator.getTemplateFactory("TemplateInstantiatorTest$TestTemplate"),
+                instantiator.getTemplateFactory("TemplateInstantiatorTest$TestTemplate"));
+    }
+
+    @Test
+    public void testCreateTemplateWithMismatchedParametersThrowsException() throws Exception {
+        TemplateInstantiator instantiator = new TemplateInstantiator();
+        instantiator.setPackageName("org.newtco.test.templates");
+        instantiator.addClasspath(getTemplateInstantiatorTestClasspath());
+
+        assertThrows(ObjectInstantiationException.class, () -> {
+            instantiator.createTemplate("TemplateInstantiatorTest$TestTemplate", "not a writer");
+        });
+        assertThrows(ObjectInstantiationException.class, () -> {
+            instantiator.createTemplate("TemplateInstantiatorTest$TestTemplate");
+        });
+    }
+
     @Test
     public void testCreateTemplateWithInvalidTemplateNameThrowsException() throws Exception {
         TemplateInstantiator instantiator = new TemplateInstantiator();
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class TemplateParserTest {
 
@@ -80,4 +81,51 @@ public class TemplateParserTest {
         assertEquals(TemplateParser.PartType.TEXT, parts.get(4).getType());
         assertEquals(".", parts.get(4).getContent());
     }
+
+    @Test
+    public void testParse_percentInExpressionAndCode() {
+        TemplateParser                    parser          = new TemplateParser();
+        String                            templateContent = "<% if (i % 2 == 0) { %><%= i % 10 %><% } %>";
+        List<TemplateParser.TemplatePart> parts           = parser.parse(templateContent);
+
+        assertEquals(3, parts.size());
+        assertEquals(TemplateParser.PartType.CODE, parts.get(0).getType());
+        assertEquals(" if (i % 2 == 0) { ", parts.get(0).getContent());
+        assertEquals(TemplateParser.PartType.EXPRESSION, parts.get(1).getType());
+        assertEquals(" i % 10 ", parts.get(1).getContent());
+        assertEquals(TemplateParser.PartType.CODE, parts.get(2).getType());
+        assertEquals(" } ", parts.get(2).getContent());
+    }
+
+    @Test
+    public void testParse_lineAndColumn() {
+        TemplateParser                    parser          = new TemplateParser();
+        String                            templateContent = "import java.util.List;\r\nTitle\n  <%= name %>\n<%\n code %>";
+        List<TemplateParser.TemplatePart> parts           = parser.parse(templateContent);
+
+        assertEquals(5, parts.size());
+        assertEquals(TemplateParser.PartType.IMPORT, parts.get(0).getType());
+        assertEquals(1, parts.get(0).getLine());
+        assertEquals(1, parts.get(0).getColumn());
+        assertEquals("Title\n  ", parts.get(1).getContent());
+        assertEquals(2, parts.get(1).getLine());
+        assertEquals(1, parts.get(1).getColumn());
+        assertEquals(TemplateParser.PartType.EXPRESSION, parts.get(2).getType());
+        assertEquals(3, parts.get(2).getLine());
+        assertEquals(3, parts.get(2).getColumn());
+        assertEquals("\n", parts.get(3).getContent());
+        assertEquals(3, parts.get(3).getLine());
+        assertEquals(14, parts.get(3).getColumn());
+        assertEquals(TemplateParser.PartType.CODE, parts.get(4).getType());
+        assertEquals(4, parts.get(4).getLine());
+        assertEquals(1, parts.get(4).getColumn());
+    }
+
+    @Test
+    public void testParse_unterminatedCode() {
+        TemplateParser parser = new TemplateParser();
+
+        var ex = assertThrows(IllegalArgumentException.class, () -> parser.parse("Text\n  <% code"));
+        assertEquals("Unterminated code block starting at line 2, column 3", ex.getMessage());
+    }
 }
\ No newline at end of file
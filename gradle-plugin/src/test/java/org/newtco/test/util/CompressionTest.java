@@ -0,0 +1,54 @@
+package org.newtco.test.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CompressionTest {
+
+    @Test
+    public void testNewWriter_None() throws IOException {
+        var file = Files.createTempDirectory("compression").resolve("TEST.json");
+
+        try (var writer = Compression.NONE.newWriter(file)) {
+            writer.write("{\"tests\":1}");
+        }
+
+        assertEquals(file, Compression.NONE.resolve(file));
+        assertEquals("{\"tests\":1}", Files.readString(file));
+    }
+
+    @Test
+    public void testNewWriter_Gzip() throws IOException {
+        var compression = Compression.gzip(9, 512);
+        var file        = compression.resolve(Files.createTempDirectory("compression").resolve("TEST.json"));
+        var content     = "{\"name\":\"caf\u00e9\"}\n".repeat(1000);
+
+        try (var writer = compression.newWriter(file)) {
+            writer.write(content);
+        }
+
+        assertEquals("TEST.json.gz", file.getFileName().toString());
+        assertArrayEquals(content.getBytes(StandardCharsets.UTF_8), decompress(file));
+    }
+
+    @Test
+    public void testGzip_InvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> Compression.gzip(10, 512));
+        assertThrows(IllegalArgumentException.class, () -> Compression.gzip(6, 0));
+    }
+
+    private static byte[] decompress(Path file) throws IOException {
+        try (var in = new GZIPInputStream(Files.newInputStream(file))) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.newtco.test.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JavaMethodScannerTest {
+
+    @Test
+    public void testScan_AnnotatedMethods() {
+        var source = """
+                package example;
+
+                import org.junit.jupiter.api.Test;
+
+                public class ExampleTest {
+
+                    @Test
+                    public void first() {
+                        helper(1);
+                    }
+
+                    @org.junit.jupiter.api.Test
+                    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+                    void second() throws Exception, IOException {
+                    }
+
+                    private int helper(int value) {
+                        return value;
+                    }
+                }
+                """;
+
+        var methods = JavaMethodScanner.scan(source);
+
+        assertEquals(List.of(
+                new JavaMethodScanner.Method("first", 8, true, List.of()),
+                new JavaMethodScanner.Method("second", 14, true, List.of()),
+                new JavaMethodScanner.Method("helper", 17, false, List.of("int"))
+        ), methods);
+    }
+
+    @Test
+    public void testScan_IgnoresCommentsAndLiterals() {
+        var source = """
+                class ExampleTest {
+                    // void commented() {}
+                    /*
+                     * void blockCommented() {}
+                     */
+                    String text = "void inString() {}";
+                    String block = \"""
+                        void inTextBlock() {}
+                        \""";
+                    char quote = '"';
+
+                    @Test void actual() {}
+                }
+                """;
+
+        var methods = JavaMethodScanner.scan(source);
+
+        assertEquals(1, methods.size());
+        assertEquals("actual", methods.get(0).name());
+        assertEquals(12, methods.get(0).line());
+    }
+
+    @Test
+    public void testScan_IgnoresStatements() {
+        var source = """
+                class ExampleTest {
+                    @Test
+                    void statements() {
+                        var value = compute(1);
+                        if (value > 0) {
+                            run(() -> call(value));
+                        }
+                        return;
+                    }
+
+                    List<String> generic(Map<String, List<Integer>> map, final String... args) {
+                        return new ArrayList<>(map.keySet());
+                    }
+                }
+                """;
+
+        var methods = JavaMethodScanner.scan(source);
+
+        assertEquals(2, methods.size());
+        assertEquals("statements", methods.get(0).name());
+        assertTrue(methods.get(0).test());
+        assertEquals("generic", methods.get(1).name());
+        assertFalse(methods.get(1).test());
+        assertEquals(List.of("Map", "String[]"), methods.get(1).parameterTypes());
+    }
+
+    @Test
+    public void testScan_Overloads() {
+        var source = """
+                class ExampleTest {
+                    @Test
+                    void overloaded() {}
+
+                    @ParameterizedTest
+                    void overloaded(java.lang.String value, @TempDir Path dir, int[] values, long counts[]) {}
+                }
+                """;
+
+        var methods = JavaMethodScanner.scan(source);
+
+        assertEquals(2, methods.size());
+        assertEquals(List.of(), methods.get(0).parameterTypes());
+        assertEquals(List.of("String", "Path", "int[]", "long[]"), methods.get(1).parameterTypes());
+        assertEquals(6, methods.get(1).line());
+    }
+}
@@ -20,6 +20,16 @@ public class JsonWriterTest {
         assertEquals("\"hello\"", writer.toString());
     }
 
+    @Test
+    public void testJoined_Parts() {
+        StringWriter writer     = new StringWriter();
+        JsonWriter   jsonWriter = new JsonWriter(writer);
+
+        jsonWriter.joined(List.of("first\n", "", "\"second\""));
+
+        assertEquals("\"first\\n\\\"second\\\"\"", writer.toString());
+    }
+
     @Test
     public void testValue_Long() {
         StringWriter writer     = new StringWriter();
@@ -191,6 +201,63 @@ public class JsonWriterTest {
         assertEquals("[\"prefixone\",\"prefixtwo\",\"prefixthree\"]", writer.toString());
     }
 
+    @Test
+    public void testArray_NestedWithNonWritingConsumer() {
+        StringWriter       writer     = new StringWriter();
+        JsonWriter         jsonWriter = new JsonWriter(writer);
+        List<List<String>> items      = List.of(List.of(), List.of("one", "two"), List.of("three"));
+
+        jsonWriter.array(items, inner -> {
+            if (!inner.isEmpty()) {
+                jsonWriter.array(inner, v -> {
+                    if (!"one".equals(v)) {
+                        jsonWriter.value(v);
+                    }
+                });
+            }
+        });
+
+        assertEquals("[[\"two\"],[\"three\"]]", writer.toString());
+    }
+
+    @Test
+    public void testArray_IteratorWithFilter() {
+        StringWriter writer     = new StringWriter();
+        JsonWriter   jsonWriter = new JsonWriter(writer);
+        List<String> items      = Arrays.asList("one", "two", "three");
+
+        jsonWriter.array(items.iterator(), "t", (prefix, item) -> item.startsWith(prefix), (prefix, item) -> {
+            jsonWriter.raw('{').field("name").value(item).comma().field("empty").array(List.<String>of(), jsonWriter::value);
+            jsonWriter.raw('}');
+        });
+
+        assertEquals("[{\"name\":\"two\",\"empty\":[]},{\"name\":\"three\",\"empty\":[]}]", writer.toString());
+    }
+
+    @Test
+    public void testValue_Numbers() {
+        StringWriter writer     = new StringWriter();
+        JsonWriter   jsonWriter = new JsonWriter(writer);
+
+        jsonWriter.value(0).comma().value(-42).comma().value(Long.MIN_VALUE).comma()
+                .value(1.0).comma().value(33.33).comma().value(-0.001).comma().value(1e7).comma()
+                .decimal(12, 3).comma().decimal(-1234, 3);
+
+        assertEquals("0,-42,-9223372036854775808,1.0,33.33,-0.001,1.0E7,0.012,-1.234", writer.toString());
+    }
+
+    @Test
+    public void testTimestamp() {
+        StringWriter writer     = new StringWriter();
+        JsonWriter   jsonWriter = new JsonWriter(writer);
+
+        jsonWriter.timestamp(0).comma().timestamp(1714566600250L).comma().timestamp(951782400123L).comma()
+                .timestamp(253402300800000L);
+
+        assertEquals("\"1970-01-01T00:00:00Z\",\"2024-05-01T12:30:00.25Z\",\"2000-02-29T00:00:00.123Z\","
+                + "\"+10000-01-01T00:00:00Z\"", writer.toString());
+    }
+
     @Test
     public void testEscapeJson_String() {
         JsonWriter jsonWriter = new JsonWriter(new StringWriter());
@@ -232,4 +299,53 @@ public class JsonWriterTest {
         String     result     = jsonWriter.escapeJson(null);
         assertEquals("null", result);
     }
+
+    @Test
+    public void testEscapeJson_SurrogatePair() {
+        JsonWriter jsonWriter = new JsonWriter(new StringWriter());
+        String     result     = jsonWriter.escapeJson("a\uD83D\uDE00b"); // Grinning Face
+        assertEquals("a\\uD83D\\uDE00b", result);
+    }
+
+    @Test
+    public void testValue_LongStringEscapedAcrossChunks() {
+        var text     = new StringBuilder();
+        var expected = new StringBuilder("\"");
+        for (int i = 0; i < 3000; i++) {
+            char ch = "abc\"\\\n\u00E9\u001F".charAt(i % 8);
+            text.append(ch);
+            expected.append(switch (ch) {
+                case '"' -> "\\\"";
+                case '\\' -> "\\\\";
+                case '\n' -> "\\n";
+                case '\u00E9' -> "\\u00E9";
+                case '\u001F' -> "\\u001F";
+                default -> String.valueOf(ch);
+            });
+            if (i % 500 == 0) {
+                text.append("x".repeat(200));
+                expected.append("x".repeat(200));
+            }
+        }
+        expected.append('"');
+
+        var writer = new StringWriter();
+        new JsonWriter(writer).value(text.toString());
+
+        assertEquals(expected.toString(), writer.toString());
+    }
+
+    @Test
+    public void testSafeRun_StopsAtUnsafeCharacter() {
+        var chars = "x".repeat(300).toCharArray();
+        for (char unsafe : new char[]{'"', '\\', '\u0000', '\u001F', '\u007F', '\u0080', '\uD83D', '\uFFFF'}) {
+            for (int at : new int[]{0, 1, 63, 64, 150, 299}) {
+                chars[at] = unsafe;
+                assertEquals(at, JsonEscaper.safeRun(chars, 0, chars.length));
+                assertEquals(at, JsonEscaper.safeRun(new String(chars)));
+                chars[at] = 'x';
+            }
+        }
+        assertEquals(chars.length, JsonEscaper.safeRun(chars, 0, chars.length));
+    }
 }
\ No newline at end of file
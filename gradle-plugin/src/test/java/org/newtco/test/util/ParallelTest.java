@@ -0,0 +1,85 @@
+package org.newtco.test.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ParallelTest {
+
+    @Test
+    public void testMap_KeepsOrder() {
+        var items = IntStream.range(0, 100).boxed().toList();
+
+        var results = Parallel.map(items, 4, item -> {
+            // Finish later items first
+            if (item < 10) {
+                Thread.onSpinWait();
+            }
+            return item * 2;
+        });
+
+        assertEquals(IntStream.range(0, 100).map(item -> item * 2).boxed().toList(), results);
+    }
+
+    @Test
+    public void testMap_Sequential() {
+        var thread = Thread.currentThread();
+
+        var results = Parallel.map(List.of("a", "b"), 1, item -> item + (Thread.currentThread() == thread));
+
+        assertEquals(List.of("atrue", "btrue"), results);
+    }
+
+    @Test
+    public void testMap_RethrowsFirstFailure() {
+        var items = List.of(1, 2, 3, 4);
+
+        var ex = assertThrows(IllegalArgumentException.class, () -> Parallel.map(items, 4, item -> {
+            if (item % 2 == 0) {
+                throw new IllegalArgumentException("item " + item);
+            }
+            return item;
+        }));
+
+        assertEquals("item 2", ex.getMessage());
+    }
+
+    @Test
+    public void testForEach_ContinuesAfterFailure() {
+        for (var parallelism : List.of(1, 4)) {
+            var processed = new ArrayList<Integer>();
+
+            var ex = assertThrows(IllegalArgumentException.class, () -> Parallel.forEach(List.of(1, 2, 3, 4), parallelism, item -> {
+                synchronized (processed) {
+                    processed.add(item);
+                }
+                if (item % 2 == 0) {
+                    throw new IllegalArgumentException("item " + item);
+                }
+            }));
+
+            processed.sort(Integer::compareTo);
+            assertEquals(List.of(1, 2, 3, 4), processed, "parallelism " + parallelism);
+            assertEquals("item 2", ex.getMessage(), "parallelism " + parallelism);
+        }
+    }
+
+    @Test
+    public void testForEach_ProcessesAllItems() {
+        var processed = new ArrayList<Integer>();
+
+        Parallel.forEach(List.of(1, 2, 3), 2, item -> {
+            synchronized (processed) {
+                processed.add(item);
+            }
+        });
+
+        processed.sort(Integer::compareTo);
+        assertEquals(List.of(1, 2, 3), processed);
+    }
+}
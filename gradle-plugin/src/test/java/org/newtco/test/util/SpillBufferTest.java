@@ -0,0 +1,310 @@
+package org.newtco.test.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpillBufferTest {
+
+    @Test
+    public void testAppend_WithinLimits() throws IOException {
+        var directory = Files.createTempDirectory("spill");
+        var allocator = new SpillBuffer.Allocator(100, 50, 4, 4, directory);
+
+        try (var buffer = allocator.allocate()) {
+            buffer.append("Hello, ").append("World!");
+
+            assertFalse(buffer.isSpilled());
+            assertEquals("Hello, World!", buffer.toString());
+            assertEquals(87, allocator.getAvailable());
+        }
+
+        assertEquals(100, allocator.getAvailable());
+        assertEquals(0, countFiles(directory));
+    }
+
+    @Test
+    public void testAppend_ExceedsBufferLimit() throws IOException {
+        var directory = Files.createTempDirectory("spill");
+        var allocator = new SpillBuffer.Allocator(100, 10, 4, 4, directory);
+
+        try (var buffer = allocator.allocate()) {
+            buffer.append("0123456789").append("abcdefghij");
+
+            assertTrue(buffer.isSpilled());
+            assertEquals(20, buffer.length());
+            assertEquals("0123\n... [12 bytes omitted] ...\nghij", buffer.toString());
+            assertEquals(100, allocator.getAvailable());
+            assertEquals(1, countFiles(directory));
+        }
+
+        assertEquals(0, countFiles(directory));
+    }
+
+    @Test
+    public void testAppend_ExceedsTotalLimit() throws IOException {
+        var directory = Files.createTempDirectory("spill");
+        var allocator = new SpillBuffer.Allocator(10, 10, 2, 2, directory);
+
+        try (var first = allocator.allocate(); var second = allocator.allocate()) {
+            first.append("01234567");
+            second.append("abcdef");
+
+            assertFalse(first.isSpilled());
+            assertTrue(second.isSpilled());
+            assertEquals("ab\n... [2 bytes omitted] ...\nef", second.toString());
+        }
+    }
+
+    @Test
+    public void testToString_SpilledSmallerThanWindows() throws IOException {
+        var directory = Files.createTempDirectory("spill");
+        var allocator = new SpillBuffer.Allocator(100, 2, 16, 16, directory);
+
+        try (var buffer = allocator.allocate()) {
+            buffer.append("abc").append("def");
+
+            assertTrue(buffer.isSpilled());
+            assertEquals("abcdef", buffer.toString());
+        }
+    }
+
+    @Test
+    public void testToString_WindowsOnCharacterBoundaries() throws IOException {
+        var directory = Files.createTempDirectory("spill");
+        var allocator = new SpillBuffer.Allocator(100, 1, 3, 3, directory);
+
+        try (var buffer = allocator.allocate()) {
+            // Each character is encoded as 2 bytes
+            buffer.append("\u00e9\u00e9\u00e9\u00e9\u00e9");
+
+            assertEquals("\u00e9\n... [6 bytes omitted] ...\n\u00e9", buffer.toString());
+        }
+    }
+
+    @Test
+    public void testDetach_KeepsReservation() throws IOException {
+        var directory = Files.createTempDirectory("spill");
+        var allocator = new SpillBuffer.Allocator(100, 50, 4, 4, directory);
+
+        var buffer = allocator.allocate().append("retained");
+
+        assertEquals("retained", buffer.detach());
+        assertEquals(92, allocator.getAvailable());
+    }
+
+    @Test
+    public void testUnbounded_NeverSpills() {
+        var allocator = SpillBuffer.Allocator.unbounded();
+
+        try (var buffer = allocator.allocate()) {
+            buffer.append("x".repeat(10_000));
+
+            assertFalse(buffer.isSpilled());
+            assertEquals(10_000, buffer.toString().length());
+        }
+    }
+
+    private static long countFiles(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void testAppend_SurrogatePairSplitAcrossAppends() throws IOException {
+        var directory = Files.createTempDirectory("spill");
+        var allocator = new SpillBuffer.Allocator(100, 1, 16, 16, directory);
+
+        try (var buffer = allocator.allocate()) {
+            buffer.append("a\uD83D").append("\uDE00b");
+
+            assertTrue(buffer.isSpilled());
+            assertEquals("a\uD83D\uDE00b", buffer.toString());
+        }
+    }
+
+    @Test
+    public void testToString_WindowsOfLargeSpill() throws IOException {
+        var directory = Files.createTempDirectory("spill");
+        var allocator = new SpillBuffer.Allocator(100, 1, 5, 5, directory);
+
+        try (var buffer = allocator.allocate()) {
+            buffer.append("head-");
+            var chunk = "x".repeat(64 * 1024);
+            for (int i = 0; i < 32; i++) {
+                buffer.append(chunk);
+            }
+            buffer.append("-tail");
+
+            assertEquals("head-\n... [" + 32 * 64 * 1024 + " bytes omitted] ...\n-tail", buffer.toString());
+        }
+    }
+
+    @Test
+    public void testAppend_SpillWriteFails() throws IOException {
+        var directory = Files.createTempDirectory("spill");
+        var allocator = new FullDiskAllocator(100, 10, 4, 4, directory, 12);
+
+        try (var buffer = allocator.allocate()) {
+            buffer.append("0123456789").append("abcdefghij");
+            // Dropped without failing
+            buffer.append("more");
+
+            assertFalse(buffer.isSpilled());
+            assertEquals(10, buffer.length());
+            assertEquals("0123\n... [2 bytes omitted] ...\n6789\n" + SpillBuffer.TRUNCATED_MARKER, buffer.toString());
+            assertEquals(100, allocator.getAvailable());
+            assertEquals(0, countFiles(directory));
+        }
+
+        assertEquals(100, allocator.getAvailable());
+    }
+
+    @Test
+    public void testSpill_WriteOfMemoryFails() throws IOException {
+        var directory = Files.createTempDirectory("spill");
+        var allocator = new FullDiskAllocator(100, 10, 4, 4, directory, 0);
+
+        try (var buffer = allocator.allocate()) {
+            buffer.append("0123456789").append("abcdefghij");
+
+            assertEquals(SpillBuffer.TRUNCATED_MARKER, buffer.toString());
+            // The reservation of the content held in memory before spilling is returned
+            assertEquals(100, allocator.getAvailable());
+            assertEquals(0, countFiles(directory));
+        }
+    }
+
+    /**
+     * Allocator whose spill files fail to be written past a number of bytes, as when the disk is full
+     */
+    private static class FullDiskAllocator extends SpillBuffer.Allocator {
+
+        private final long capacity;
+
+        FullDiskAllocator(long totalLimit, long bufferLimit, int headSize, int tailSize, Path directory, long capacity) {
+            super(totalLimit, bufferLimit, headSize, tailSize, directory);
+            this.capacity = capacity;
+        }
+
+        @Override
+        FileChannel open(Path file) throws IOException {
+            return new FullDiskChannel(FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE), capacity);
+        }
+    }
+
+    private static class FullDiskChannel extends FileChannel {
+
+        private final FileChannel channel;
+        private final long        capacity;
+
+        FullDiskChannel(FileChannel channel, long capacity) {
+            this.channel  = channel;
+            this.capacity = capacity;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (channel.size() + src.remaining() > capacity) {
+                throw new IOException("No space left on device");
+            }
+            return channel.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return channel.read(dsts, offset, length);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            channel.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return channel.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+}
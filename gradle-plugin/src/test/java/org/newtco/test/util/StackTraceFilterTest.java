@@ -0,0 +1,104 @@
+package org.newtco.test.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StackTraceFilterTest {
+
+    private static final String STACK_TRACE = """
+            java.lang.IllegalStateException: Failed
+            \tat org.junit.Assertions.fail(Assertions.java:10)
+            \tat com.example.FooTest.testFoo(FooTest.java:20)
+            \tat jdk.internal.reflect.Method.invoke(Method.java:30)
+            \tat org.junit.Runner.run(Runner.java:40)
+            \tat org.junit.Runner.run(Runner.java:41)
+            Caused by: java.io.IOException: Broken
+            \tat java.io.File.read(File.java:50)
+            \tat java.io.File.read(File.java:51)
+            \tat com.example.Foo.read(Foo.java:60)
+            \t... 4 more""";
+
+    @Test
+    public void testFilter_IncludesMatchingFrames() {
+        var filterSet = new FilterSet();
+        filterSet.include("com.example.**");
+
+        var filtered = filterSet.asStackTraceFilter().filter(STACK_TRACE);
+
+        assertEquals("""
+                java.lang.IllegalStateException: Failed
+                \tat org.junit.Assertions.fail(Assertions.java:10)
+                \tat com.example.FooTest.testFoo(FooTest.java:20)
+                \tat jdk.internal.reflect.Method.invoke(Method.java:30)
+                \t... 2 more
+                Caused by: java.io.IOException: Broken
+                \tat java.io.File.read(File.java:50)
+                \t... 1 more
+                \tat com.example.Foo.read(Foo.java:60)
+                \t... 4 more""", filtered);
+    }
+
+    @Test
+    public void testFilter_ExcludesTakePrecedence() {
+        var filterSet = new FilterSet();
+        filterSet.include("**");
+        filterSet.exclude("org.junit.**");
+
+        var filtered = filterSet.asStackTraceFilter().filter("""
+                java.lang.AssertionError
+                \tat org.junit.Assertions.fail(Assertions.java:10)
+                \tat org.junit.Assertions.assertTrue(Assertions.java:11)
+                \tat com.example.FooTest.testFoo(FooTest.java:20)
+                \tat org.junit.Runner.run(Runner.java:40)""");
+
+        assertEquals("""
+                java.lang.AssertionError
+                \tat org.junit.Assertions.fail(Assertions.java:10)
+                \t... 1 more
+                \tat com.example.FooTest.testFoo(FooTest.java:20)
+                \tat org.junit.Runner.run(Runner.java:40)""", filtered);
+    }
+
+    @Test
+    public void testFilter_NoFilters() {
+        var filtered = new FilterSet().asStackTraceFilter().filter(STACK_TRACE);
+
+        assertEquals(STACK_TRACE, filtered);
+    }
+
+    @Test
+    public void testFilter_WindowsLineEndings() {
+        var filterSet = new FilterSet();
+        filterSet.include("com.example.**");
+
+        var filtered = filterSet.asStackTraceFilter().filter(
+                "java.lang.AssertionError\r\n\tat org.junit.A.a(A.java:1)\r\n\tat org.junit.B.b(B.java:2)\r\n");
+
+        assertEquals("java.lang.AssertionError\n\tat org.junit.A.a(A.java:1)\n\t... 1 more", filtered);
+    }
+
+    @Test
+    public void testFilter_Empty() {
+        assertEquals("", new FilterSet().asStackTraceFilter().filter(""));
+    }
+
+    @Test
+    public void testFilter_LargeStackTrace() {
+        var filterSet = new FilterSet();
+        filterSet.include("com.example.**");
+        var filter = filterSet.asStackTraceFilter().newState();
+
+        var stackTrace = new StringBuilder("java.lang.StackOverflowError");
+        for (int i = 0; i < 100_000; i++) {
+            stackTrace.append("\n\tat org.framework.Proxy.invoke(Proxy.java:").append(i).append(')');
+        }
+
+        var filtered = filter.filter(stackTrace);
+
+        assertEquals("java.lang.StackOverflowError\n\tat org.framework.Proxy.invoke(Proxy.java:0)\n\t... 99999 more",
+                filtered);
+        // The reused buffer is still usable afterwards
+        assertEquals("java.lang.Error", filter.filter("java.lang.Error"));
+    }
+}
@@ -0,0 +1,81 @@
+package org.newtco.test.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class Utf8ChannelWriterTest {
+
+    @Test
+    public void testWrite_AsciiAndMultiByte() throws IOException {
+        var text = "ascii \u00e9 \u20ac \ud83d\ude00 end";
+        var out  = new ByteArrayOutputStream();
+
+        // A buffer smaller than the text drains while writing
+        try (var writer = new Utf8ChannelWriter(Channels.newChannel(out), 4)) {
+            writer.write(text);
+        }
+
+        assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), out.toByteArray());
+    }
+
+    @Test
+    public void testWrite_SurrogatePairAcrossWrites() throws IOException {
+        var out = new ByteArrayOutputStream();
+
+        try (var writer = new Utf8ChannelWriter(Channels.newChannel(out))) {
+            writer.append('\ud83d');
+            writer.flush();
+            writer.append("\ude00");
+        }
+
+        assertEquals("\ud83d\ude00", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testFlush_FlushesStream() throws IOException {
+        var out = new ByteArrayOutputStream();
+
+        try (var writer = new Utf8ChannelWriter(new BufferedOutputStream(out))) {
+            writer.write("flushed");
+            writer.flush();
+
+            assertEquals("flushed", out.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testWrite_UnpairedSurrogates() throws IOException {
+        var out = new ByteArrayOutputStream();
+
+        try (var writer = new Utf8ChannelWriter(Channels.newChannel(out))) {
+            writer.write("a\ude00b\ud83dc\ud83d".toCharArray());
+        }
+
+        assertEquals("a?b?c?", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testOpen_DefaultOptionsTruncate() throws IOException {
+        var file = Files.createTempFile("utf8", ".json");
+        Files.writeString(file, "previous content");
+
+        try (var writer = Utf8ChannelWriter.open(file)) {
+            writer.write("new");
+        }
+        try (var writer = Utf8ChannelWriter.open(file, StandardOpenOption.APPEND)) {
+            writer.write(" appended");
+        }
+
+        assertEquals("new appended", Files.readString(file));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.newtco.testlib.gradle;
+
+import org.gradle.api.tasks.testing.TestDescriptor;
+
+/**
+ * Descriptor of a test or suite. Descriptors are only equal to themselves, like the descriptors of Gradle, so each
+ * attempt of a retried test is a distinct descriptor with the same names.
+ */
+public class MockTestDescriptor implements TestDescriptor {
+
+    private final String         name;
+    private final String         className;
+    private final boolean        composite;
+    private final TestDescriptor parent;
+
+    private MockTestDescriptor(String name, String className, boolean composite, TestDescriptor parent) {
+        this.name      = name;
+        this.className = className;
+        this.composite = composite;
+        this.parent    = parent;
+    }
+
+    /**
+     * Creates the root suite of a test task
+     */
+    public static MockTestDescriptor root(String name) {
+        return new MockTestDescriptor(name, null, true, null);
+    }
+
+    /**
+     * Creates the suite of a test class
+     */
+    public static MockTestDescriptor suite(String className, TestDescriptor parent) {
+        return new MockTestDescriptor(className, className, true, parent);
+    }
+
+    /**
+     * Creates a test of the class of its parent suite
+     */
+    public static MockTestDescriptor test(String name, TestDescriptor parent) {
+        return new MockTestDescriptor(name, parent.getClassName(), false, parent);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return name;
+    }
+
+    @Override
+    public String getClassName() {
+        return className;
+    }
+
+    @Override
+    public boolean isComposite() {
+        return composite;
+    }
+
+    @Override
+    public TestDescriptor getParent() {
+        return parent;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.newtco.testlib.gradle;
+
+import org.gradle.api.tasks.testing.TestOutputEvent;
+
+public record MockTestOutputEvent(Destination destination, String message) implements TestOutputEvent {
+
+    public static MockTestOutputEvent stdOut(String message) {
+        return new MockTestOutputEvent(Destination.StdOut, message);
+    }
+
+    public static MockTestOutputEvent stdErr(String message) {
+        return new MockTestOutputEvent(Destination.StdErr, message);
+    }
+
+    @Override
+    public Destination getDestination() {
+        return destination;
+    }
+
+    @Override
+    public String getMessage() {
+        return message;
+    }
+
+    // Not available in all supported Gradle versions
+    public long getLogTime() {
+        return 0;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2024 newty.coffee
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.newtco.testlib.gradle;
+
+import org.gradle.api.tasks.testing.TestFailure;
+import org.gradle.api.tasks.testing.TestResult;
+
+import java.util.List;
+
+public record MockTestResult(ResultType resultType, long startTime, long endTime, long testCount,
+                             long successfulTestCount, long failedTestCount, long skippedTestCount,
+                             List<TestFailure> failures) implements TestResult {
+
+    public static MockTestResult of(ResultType resultType, long startTime, long endTime, long testCount,
+                                    long successfulTestCount, long failedTestCount, long skippedTestCount) {
+        return new MockTestResult(resultType, startTime, endTime, testCount, successfulTestCount, failedTestCount,
+                skippedTestCount, List.of());
+    }
+
+    public static MockTestResult passed(long startTime, long endTime) {
+        return of(ResultType.SUCCESS, startTime, endTime, 1, 1, 0, 0);
+    }
+
+    public static MockTestResult skipped(long startTime, long endTime) {
+        return of(ResultType.SKIPPED, startTime, endTime, 1, 0, 0, 1);
+    }
+
+    public static MockTestResult failed(long startTime, long endTime, TestFailure failure) {
+        return new MockTestResult(ResultType.FAILURE, startTime, endTime, 1, 0, 1, 0, List.of(failure));
+    }
+
+    @Override
+    public ResultType getResultType() {
+        return resultType;
+    }
+
+    @Override
+    public Throwable getException() {
+        return null;
+    }
+
+    @Override
+    public List<Throwable> getExceptions() {
+        return List.of();
+    }
+
+    @Override
+    public List<TestFailure> getFailures() {
+        return failures;
+    }
+
+    // Not available in all supported Gradle versions
+    public TestFailure getAssumptionFailure() {
+        return null;
+    }
+
+    @Override
+    public long getStartTime() {
+        return startTime;
+    }
+
+    @Override
+    public long getEndTime() {
+        return endTime;
+    }
+
+    @Override
+    public long getTestCount() {
+        return testCount;
+    }
+
+    @Override
+    public long getSuccessfulTestCount() {
+        return successfulTestCount;
+    }
+
+    @Override
+    public long getFailedTestCount() {
+        return failedTestCount;
+    }
+
+    @Override
+    public long getSkippedTestCount() {
+        return skippedTestCount;
+    }
+}